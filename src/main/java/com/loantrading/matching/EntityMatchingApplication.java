@@ -3,6 +3,8 @@ package com.loantrading.matching;
 import com.loantrading.matching.entity.ProcessingResult;
 import com.loantrading.matching.orchestrator.DocumentPair;
 import com.loantrading.matching.orchestrator.EntityMatchingOrchestrator;
+import com.loantrading.matching.repository.DuplicateClusters;
+import com.loantrading.matching.repository.RepositoryConfig;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -15,8 +17,8 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -46,16 +48,22 @@ public class EntityMatchingApplication {
         config.setMaximumPoolSize(10);
         config.setMinimumIdle(2);
         config.setPoolName("EntityMatchingPool");
+        configureStatementCaching(config, dataSourceClassName);
 
-        this.dataSource = new HikariDataSource(config);
+        // Repository options come from -Dloaniq.* system properties
+        RepositoryConfig repositoryConfig = RepositoryConfig.fromSystemProperties();
+        this.dataSource = openDataSource(config, repositoryConfig);
 
-        // The orchestrator and its components expect a single long-lived connection.
-        // We'll get one connection from the pool and use it for the application's lifetime.
-        // The LoanIQRepository will close this connection when the app shuts down.
-        Connection dbConnection = dataSource.getConnection();
+        // The repository borrows a pooled connection per lookup, so concurrent
+        // documents in a batch run their queries on separate connections.
+        // Without a data source it matches offline against the snapshot file.
+        this.orchestrator = new EntityMatchingOrchestrator(dataSource, repositoryConfig);
         
-        // Initialize orchestrator
-        this.orchestrator = new EntityMatchingOrchestrator(dbConnection);
+        // Single submissions can be held to a latency bound with -Dmatching.interactive.budget.ms
+        Long interactiveBudgetMillis = Long.getLong("matching.interactive.budget.ms");
+        if (interactiveBudgetMillis != null) {
+            orchestrator.setInteractiveTimeBudget(Duration.ofMillis(interactiveBudgetMillis));
+        }
         
         // Configure JSON mapper
         this.jsonMapper = new ObjectMapper();
@@ -66,6 +74,49 @@ public class EntityMatchingApplication {
         logger.info("Application initialized successfully");
     }
     
+    /**
+     * Open the connection pool, or return null to run offline when -Dloaniq.offline is set
+     * or LoanIQ is unreachable and a snapshot file is available
+     */
+    private static HikariDataSource openDataSource(HikariConfig config, RepositoryConfig repositoryConfig) {
+        boolean snapshotAvailable = repositoryConfig.getSnapshotFile() != null &&
+            Files.isRegularFile(repositoryConfig.getSnapshotFile());
+        if (Boolean.getBoolean("loaniq.offline")) {
+            if (!snapshotAvailable) {
+                throw new IllegalStateException("Offline mode requires -Dloaniq.snapshot.file pointing to a snapshot");
+            }
+            logger.info("Running offline from snapshot file {}", repositoryConfig.getSnapshotFile());
+            return null;
+        }
+        
+        try {
+            return new HikariDataSource(config);
+        } catch (RuntimeException e) {
+            if (!snapshotAvailable) {
+                throw e;
+            }
+            logger.warn("LoanIQ database unavailable, running offline from snapshot file {}",
+                repositoryConfig.getSnapshotFile(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Enable the driver's per-connection prepared statement cache, since connections
+     * are borrowed per operation and every lookup re-prepares its query
+     */
+    private static void configureStatementCaching(HikariConfig config, String dataSourceClassName) {
+        String className = dataSourceClassName.toLowerCase();
+        if (className.contains("oracle")) {
+            config.addDataSourceProperty("implicitCachingEnabled", "true");
+            config.addDataSourceProperty("maxStatements", "50");
+        } else if (className.contains("mysql") || className.contains("mariadb")) {
+            config.addDataSourceProperty("cachePrepStmts", "true");
+            config.addDataSourceProperty("prepStmtCacheSize", "50");
+        }
+        // PostgreSQL and H2 cache server-side plans per connection by default
+    }
+    
     /**
      * Process Admin Details Form with Tax Form
      */
@@ -204,11 +255,34 @@ public class EntityMatchingApplication {
             matches, noMatches, reviews, errors);
     }
     
+    /**
+     * Write the duplicate clusters found across LoanIQ as a data quality report.
+     * Needs the entity snapshot, from -Dloaniq.snapshot.enabled or a snapshot file.
+     */
+    public void generateDuplicateReport(String reportPath) throws Exception {
+        DuplicateClusters clusters = orchestrator.getDuplicateClusters();
+        
+        DuplicateReport report = new DuplicateReport();
+        report.setGeneratedAt(LocalDateTime.now());
+        report.setEntityCount(clusters.getEntityCount());
+        report.setDuplicatedEntityCount(clusters.getDuplicatedEntityCount());
+        report.setClusterCount(clusters.getClusters().size());
+        report.setClusters(clusters.getClusters());
+        
+        String json = jsonMapper.writeValueAsString(report);
+        try (FileOutputStream fos = new FileOutputStream(reportPath)) {
+            fos.write(json.getBytes());
+        }
+        
+        logger.info("Duplicate report saved to: {}", reportPath);
+        logger.info("Summary - Clusters: {}, Entities in clusters: {} of {}",
+            report.getClusterCount(), report.getDuplicatedEntityCount(), report.getEntityCount());
+    }
+    
     /**
      * Close application resources
      */
     public void close() {
-        // The orchestrator shutdown will close the connection obtained from the pool.
         orchestrator.shutdown();
 
         // Close the datasource, which will close the connection pool.
@@ -234,6 +308,7 @@ public class EntityMatchingApplication {
             System.err.println("  single <adf_file> [tax_form_file] - Process single document");
             System.err.println("  batch <directory> - Process all documents in directory");
             System.err.println("  test - Run with test data");
+            System.err.println("  duplicates - Report duplicate entity clusters (needs the entity snapshot)");
             System.exit(1);
         }
         
@@ -265,6 +340,10 @@ public class EntityMatchingApplication {
                     runTestMode(app);
                     break;
                     
+                case "duplicates":
+                    reportDuplicates(app);
+                    break;
+                    
                 default:
                     System.err.println("Unknown command: " + command);
                     System.exit(1);
@@ -327,6 +406,16 @@ public class EntityMatchingApplication {
         System.out.println("Report saved to: " + reportFile);
     }
 
+    private static void reportDuplicates(EntityMatchingApplication app) throws Exception {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        String reportFile = String.format("duplicate_report_%s.json", timestamp);
+        
+        app.generateDuplicateReport(reportFile);
+        
+        System.out.println("\n=== DUPLICATE REPORT COMPLETE ===");
+        System.out.println("Report saved to: " + reportFile);
+    }
+    
     private static void runTestMode(EntityMatchingApplication app) throws Exception {
         System.out.println("Running in test mode with sample data...");
 
@@ -377,4 +466,27 @@ public class EntityMatchingApplication {
         public double getSuccessRate() { return successRate; }
         public void setSuccessRate(double successRate) { this.successRate = successRate; }
     }
+    
+    /**
+     * Inner class for duplicate cluster reporting
+     */
+    static class DuplicateReport {
+        private LocalDateTime generatedAt;
+        private int entityCount;
+        private int duplicatedEntityCount;
+        private int clusterCount;
+        private List<DuplicateClusters.Cluster> clusters;
+        
+        // Getters and setters
+        public LocalDateTime getGeneratedAt() { return generatedAt; }
+        public void setGeneratedAt(LocalDateTime generatedAt) { this.generatedAt = generatedAt; }
+        public int getEntityCount() { return entityCount; }
+        public void setEntityCount(int entityCount) { this.entityCount = entityCount; }
+        public int getDuplicatedEntityCount() { return duplicatedEntityCount; }
+        public void setDuplicatedEntityCount(int duplicatedEntityCount) { this.duplicatedEntityCount = duplicatedEntityCount; }
+        public int getClusterCount() { return clusterCount; }
+        public void setClusterCount(int clusterCount) { this.clusterCount = clusterCount; }
+        public List<DuplicateClusters.Cluster> getClusters() { return clusters; }
+        public void setClusters(List<DuplicateClusters.Cluster> clusters) { this.clusters = clusters; }
+    }
 }
\ No newline at end of file
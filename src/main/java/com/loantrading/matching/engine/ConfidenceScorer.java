@@ -4,8 +4,6 @@ import com.loantrading.matching.entity.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
-
 /**
  * Calculates final confidence scores for matches
  */
@@ -16,53 +14,25 @@ public class ConfidenceScorer {
      * Calculate final confidence score for a match
      */
     public void calculateFinalScore(MatchResult match, ExtractedEntity extracted) {
-        double score = 0;
-        
-        // Get base scores from components
-        Map<String, Double> components = match.getScoreBreakdown();
-        
-        // Identifier-based scoring (40% weight)
-        double identifierScore = calculateIdentifierScore(components);
-        score += identifierScore;
-        
-        // Name matching scoring (30% weight)
-        double nameScore = calculateNameScore(components, match.isCompositeMatch());
-        score += nameScore;
-        
-        // Email domain scoring (20% weight)
-        Double emailBoost = components.get("email_domain_boost");
-        if (emailBoost != null) {
-            score += emailBoost;
-        }
+        double score = calculateBaseScore(match, extracted);
         
-        // Geographic consistency (10% weight)
         if (hasGeographicConsistency(extracted, match.getMatchedEntity())) {
-            score += 10;
-            match.addEvidence("Geographic data consistent");
+            match.addEvidence(EvidenceType.GEOGRAPHIC_CONSISTENT);
         }
         
         // Apply penalties for discrepancies
         double penalty = calculateDiscrepancyPenalty(match.getDiscrepancies());
         score -= penalty;
         
-        // Bonus for cross-source validation
-        Double taxFormBonus = components.get("tax_form_validation");
-        if (taxFormBonus != null) {
-            score += taxFormBonus;
-        }
-        
-        // Bonus for multiple identifier matches
-        int identifierCount = countIdentifierMatches(components);
+        int identifierCount = countIdentifierMatches(match);
         if (identifierCount > 1) {
-            score += (identifierCount - 1) * 5; // 5 points per additional identifier
-            match.addEvidence(String.format("%d identifiers matched", identifierCount));
+            match.addEvidence(EvidenceType.MULTIPLE_IDENTIFIERS, identifierCount);
         }
 
         // Penalty for potential duplicates
         if (!match.getPotentialDuplicates().isEmpty()) {
             score -= 5; // Apply a small penalty
-            match.addEvidence(String.format("Score penalized due to %d potential duplicates.",
-                match.getPotentialDuplicates().size()));
+            match.addEvidence(EvidenceType.DUPLICATES_PENALIZED, match.getPotentialDuplicates().size());
         }
         
         // Ensure score is within bounds
@@ -70,42 +40,88 @@ public class ConfidenceScorer {
         
         match.setScore(score);
         
-        logger.debug("Final score for match: {} (identifier: {}, name: {}, penalty: {})",
-            score, identifierScore, nameScore, penalty);
+        logger.debug("Final score for match: {} (base: {}, penalty: {})", score, score + penalty, penalty);
+    }
+    
+    /**
+     * Highest final score the match can still reach. Discrepancies and potential duplicates
+     * found later only lower the score, so this is the score it would get now.
+     * Unlike {@link #calculateFinalScore} the match is left untouched.
+     */
+    public double calculateUpperBound(MatchResult match, ExtractedEntity extracted) {
+        double score = calculateBaseScore(match, extracted) - calculateDiscrepancyPenalty(match.getDiscrepancies());
+        if (!match.getPotentialDuplicates().isEmpty()) {
+            score -= 5;
+        }
+        return Math.max(0, Math.min(100, score));
+    }
+    
+    /**
+     * Score from the match's components before discrepancy and duplicate penalties
+     */
+    private double calculateBaseScore(MatchResult match, ExtractedEntity extracted) {
+        double score = 0;
+        
+        // Identifier-based scoring (40% weight)
+        score += calculateIdentifierScore(match);
+        
+        // Name matching scoring (30% weight)
+        score += calculateNameScore(match);
+        
+        // Email domain scoring (20% weight); absent components are 0
+        score += match.getScoreComponent(ScoreComponent.EMAIL_DOMAIN_BOOST);
+        
+        // Geographic consistency (10% weight)
+        if (hasGeographicConsistency(extracted, match.getMatchedEntity())) {
+            score += 10;
+        }
+        
+        // Bonus for cross-source validation
+        score += match.getScoreComponent(ScoreComponent.TAX_FORM_VALIDATION);
+        
+        // Bonus for multiple identifier matches
+        int identifierCount = countIdentifierMatches(match);
+        if (identifierCount > 1) {
+            score += (identifierCount - 1) * 5; // 5 points per additional identifier
+        }
+        
+        return score;
     }
     
-    private double calculateIdentifierScore(Map<String, Double> components) {
+    private double calculateIdentifierScore(MatchResult match) {
         double score = 0;
         
         // MEI is most reliable
-        if (components.containsKey("mei_match")) {
+        if (match.hasScoreComponent(ScoreComponent.MEI_MATCH)) {
             score = 40;
-        } else if (components.containsKey("lei_match")) {
+        } else if (match.hasScoreComponent(ScoreComponent.LEI_MATCH)) {
             score = 35;
-        } else if (components.containsKey("ein_match")) {
+        } else if (match.hasScoreComponent(ScoreComponent.EIN_MATCH)) {
             score = 30;
-        } else if (components.containsKey("debt_domain_id_match")) {
+        } else if (match.hasScoreComponent(ScoreComponent.DEBT_DOMAIN_ID_MATCH)) {
             score = 25;
         }
         
         // Add any identifier boosts
-        score += components.getOrDefault("mei_boost", 0.0);
-        score += components.getOrDefault("lei_boost", 0.0);
-        score += components.getOrDefault("ein_boost", 0.0);
-        score += components.getOrDefault("debt_domain_id_boost", 0.0);
+        score += match.getScoreComponent(ScoreComponent.MEI_BOOST);
+        score += match.getScoreComponent(ScoreComponent.LEI_BOOST);
+        score += match.getScoreComponent(ScoreComponent.EIN_BOOST);
+        score += match.getScoreComponent(ScoreComponent.DEBT_DOMAIN_ID_BOOST);
         
         return score;
     }
     
-    private double calculateNameScore(Map<String, Double> components, boolean isComposite) {
+    private double calculateNameScore(MatchResult match) {
         double score = 0;
         
-        Double legalNameScore = components.get("legal_name_fuzzy");
-        Double fundManagerScore = components.get("fund_manager_fuzzy");
+        boolean hasLegalName = match.hasScoreComponent(ScoreComponent.LEGAL_NAME_FUZZY);
+        boolean hasFundManager = match.hasScoreComponent(ScoreComponent.FUND_MANAGER_FUZZY);
+        double legalNameScore = match.getScoreComponent(ScoreComponent.LEGAL_NAME_FUZZY);
+        double fundManagerScore = match.getScoreComponent(ScoreComponent.FUND_MANAGER_FUZZY);
         
-        if (isComposite) {
+        if (match.isCompositeMatch()) {
             // Both components must match well for composite entities
-            if (legalNameScore != null && fundManagerScore != null) {
+            if (hasLegalName && hasFundManager) {
                 if (legalNameScore > 60 && fundManagerScore > 20) {
                     // Good match on both
                     score = (legalNameScore * 0.7) + (fundManagerScore * 0.3);
@@ -113,13 +129,13 @@ public class ConfidenceScorer {
                     // Poor match on either component
                     score = Math.min(legalNameScore, fundManagerScore) * 0.5;
                 }
-            } else if (legalNameScore != null) {
+            } else if (hasLegalName) {
                 // Only legal name available
                 score = legalNameScore * 0.5; // Reduced weight
             }
         } else {
             // Standalone entity - only legal name matters
-            if (legalNameScore != null) {
+            if (hasLegalName) {
                 score = legalNameScore;
             }
         }
@@ -130,8 +146,9 @@ public class ConfidenceScorer {
     private double calculateDiscrepancyPenalty(java.util.List<Discrepancy> discrepancies) {
         double penalty = 0;
         
+        // Severities carry their penalty as a negative score adjustment
         for (Discrepancy disc : discrepancies) {
-            penalty += disc.getSeverity().getScorePenalty();
+            penalty -= disc.getSeverity().getScorePenalty();
         }
         
         // Cap penalty at 50 points
@@ -154,19 +171,20 @@ public class ConfidenceScorer {
         return extracted.getCountryCode().equals(matched.getCountryCode());
     }
     
-    private int countIdentifierMatches(Map<String, Double> components) {
+    private int countIdentifierMatches(MatchResult match) {
         int count = 0;
         
-        if (components.containsKey("mei_match") || components.containsKey("mei_boost")) {
+        if (match.hasScoreComponent(ScoreComponent.MEI_MATCH) || match.hasScoreComponent(ScoreComponent.MEI_BOOST)) {
             count++;
         }
-        if (components.containsKey("lei_match") || components.containsKey("lei_boost")) {
+        if (match.hasScoreComponent(ScoreComponent.LEI_MATCH) || match.hasScoreComponent(ScoreComponent.LEI_BOOST)) {
             count++;
         }
-        if (components.containsKey("ein_match") || components.containsKey("ein_boost")) {
+        if (match.hasScoreComponent(ScoreComponent.EIN_MATCH) || match.hasScoreComponent(ScoreComponent.EIN_BOOST)) {
             count++;
         }
-        if (components.containsKey("debt_domain_id_match") || components.containsKey("debt_domain_id_boost")) {
+        if (match.hasScoreComponent(ScoreComponent.DEBT_DOMAIN_ID_MATCH) ||
+            match.hasScoreComponent(ScoreComponent.DEBT_DOMAIN_ID_BOOST)) {
             count++;
         }
         
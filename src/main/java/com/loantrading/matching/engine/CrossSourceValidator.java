@@ -1,7 +1,6 @@
 package com.loantrading.matching.engine;
 
 import com.loantrading.matching.entity.*;
-import org.apache.commons.text.similarity.JaroWinklerDistance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,16 +10,22 @@ import org.slf4j.LoggerFactory;
 public class CrossSourceValidator {
     private static final Logger logger = LoggerFactory.getLogger(CrossSourceValidator.class);
     
-    private final JaroWinklerDistance jaroWinkler;
-    
     public CrossSourceValidator() {
-        this.jaroWinkler = new JaroWinklerDistance();
     }
     
     /**
      * Validate and enhance match using tax form data
      */
     public void validate(MatchResult match, ExtractedEntity adf, ExtractedEntity taxForm) {
+        validate(new MatchContext(adf, taxForm, null), match);
+    }
+    
+    /**
+     * Validate and enhance a match of the request, reusing its name similarities
+     */
+    public void validate(MatchContext context, MatchResult match) {
+        ExtractedEntity adf = context.getExtracted();
+        ExtractedEntity taxForm = context.getTaxForm();
         if (taxForm == null) {
             return;
         }
@@ -31,7 +36,7 @@ public class CrossSourceValidator {
         boost += validateEIN(match, adf, taxForm);
         
         // Check legal name consistency
-        boost += validateLegalName(match, adf, taxForm);
+        boost += validateLegalName(context, match, adf, taxForm);
         
         // Check country consistency
         boost += validateCountry(match, adf, taxForm);
@@ -43,7 +48,7 @@ public class CrossSourceValidator {
         if (boost != 0) {
             double newScore = Math.max(0, Math.min(100, match.getScore() + boost));
             match.setScore(newScore);
-            match.addScoreComponent("tax_form_validation", boost);
+            match.addScoreComponent(ScoreComponent.TAX_FORM_VALIDATION, boost);
             
             logger.debug("Cross-source validation adjusted score by {} to {}",
                 boost, newScore);
@@ -56,27 +61,27 @@ public class CrossSourceValidator {
         if (taxForm.getEin() != null && adf.getEin() != null) {
             if (taxForm.getEin().equals(adf.getEin())) {
                 boost += 10;
-                match.addEvidence("EIN consistent between ADF and tax form");
+                match.addEvidence(EvidenceType.EIN_CONSISTENT_FORMS);
                 logger.debug("EIN match between forms: {}", taxForm.getEin());
             } else {
                 boost -= 15;
                 match.addDiscrepancy(new Discrepancy(
                     "EIN_MISMATCH_FORMS",
                     DiscrepancySeverity.CRITICAL,
-                    String.format("EIN differs: ADF=%s, Tax=%s", adf.getEin(), taxForm.getEin())
+                    "EIN differs: ADF=%s, Tax=%s", adf.getEin(), taxForm.getEin()
                 ));
                 logger.warn("EIN mismatch: ADF={}, Tax={}", adf.getEin(), taxForm.getEin());
             }
         } else if (taxForm.getEin() != null && adf.getEin() == null) {
             // Use tax form EIN as more reliable
             boost += 5;
-            match.addEvidence("EIN from tax form used for validation: " + taxForm.getEin());
+            match.addEvidence(EvidenceType.TAX_FORM_EIN_USED, taxForm.getEin());
             
             // Check if tax form EIN matches LoanIQ entity
             if (match.getMatchedEntity().getEin() != null) {
                 if (match.getMatchedEntity().getEin().equals(taxForm.getEin())) {
                     boost += 10;
-                    match.addEvidence("Tax form EIN matches LoanIQ");
+                    match.addEvidence(EvidenceType.TAX_FORM_EIN_MATCHES_LOANIQ);
                 } else {
                     boost -= 10;
                     match.addDiscrepancy(new Discrepancy(
@@ -91,40 +96,43 @@ public class CrossSourceValidator {
         return boost;
     }
     
-    private double validateLegalName(MatchResult match, ExtractedEntity adf, ExtractedEntity taxForm) {
+    private double validateLegalName(MatchContext context, MatchResult match, ExtractedEntity adf,
+                                     ExtractedEntity taxForm) {
         double boost = 0;
         
         if (taxForm.getLegalName() != null && adf.getLegalName() != null) {
-            double nameSimilarity = jaroWinkler.apply(
+            // Same for every match of the request
+            double nameSimilarity = context.jaroWinkler(
                 taxForm.getLegalName(), adf.getLegalName()
             );
             
             if (nameSimilarity > 0.9) {
                 boost += 8;
-                match.addEvidence("Legal name highly consistent across forms");
+                match.addEvidence(EvidenceType.LEGAL_NAME_HIGHLY_CONSISTENT_FORMS);
             } else if (nameSimilarity > 0.8) {
                 boost += 3;
-                match.addEvidence("Legal name consistent across forms");
+                match.addEvidence(EvidenceType.LEGAL_NAME_CONSISTENT_FORMS);
             } else if (nameSimilarity < 0.7) {
                 boost -= 10;
                 match.addDiscrepancy(new Discrepancy(
                     "LEGAL_NAME_MISMATCH_FORMS",
                     DiscrepancySeverity.HIGH,
-                    String.format("Legal name similarity only %.2f", nameSimilarity)
+                    "Legal name similarity only %.2f", nameSimilarity
                 ));
                 logger.warn("Legal name mismatch between forms: similarity={}", nameSimilarity);
             }
             
             // Also check against LoanIQ
             if (match.getMatchedEntity().getFullName() != null) {
-                double loaniqSimilarity = jaroWinkler.apply(
+                double loaniqSimilarity = context.jaroWinkler(
                     taxForm.getLegalName(),
-                    match.getMatchedEntity().getFullName()
+                    match.getMatchedEntity().getFullName(),
+                    0.85
                 );
                 
                 if (loaniqSimilarity > 0.85) {
                     boost += 5;
-                    match.addEvidence("Tax form name matches LoanIQ");
+                    match.addEvidence(EvidenceType.TAX_FORM_NAME_MATCHES_LOANIQ);
                 }
             }
         }
@@ -140,21 +148,20 @@ public class CrossSourceValidator {
                 match.addDiscrepancy(new Discrepancy(
                     "COUNTRY_MISMATCH_FORMS",
                     DiscrepancySeverity.MEDIUM,
-                    String.format("Country differs: ADF=%s, Tax=%s",
-                        adf.getCountryCode(), taxForm.getCountryCode())
+                    "Country differs: ADF=%s, Tax=%s",
+                    adf.getCountryCode(), taxForm.getCountryCode()
                 ));
                 boost -= 5;
             } else {
                 boost += 2;
-                match.addEvidence("Country consistent across forms");
+                match.addEvidence(EvidenceType.COUNTRY_CONSISTENT_FORMS);
             }
         }
         
         // Check tax country if different from legal country
         if (taxForm.getTaxCountryCode() != null && 
             !taxForm.getTaxCountryCode().equals(taxForm.getCountryCode())) {
-            match.addEvidence("Tax country differs from legal country: " + 
-                taxForm.getTaxCountryCode());
+            match.addEvidence(EvidenceType.TAX_COUNTRY_DIFFERS, taxForm.getTaxCountryCode());
         }
         
         return boost;
@@ -166,25 +173,24 @@ public class CrossSourceValidator {
         
         // Check if tax form has additional identifiers not in ADF
         if (taxForm.getLei() != null && adf.getLei() == null) {
-            match.addEvidence("Additional LEI from tax form: " + taxForm.getLei());
+            match.addEvidence(EvidenceType.TAX_FORM_ADDITIONAL_LEI, taxForm.getLei());
             
             // Check against LoanIQ
             if (match.getMatchedEntity().getLei() != null &&
                 match.getMatchedEntity().getLei().equals(taxForm.getLei())) {
                 boost += 15;
-                match.addEvidence("Tax form LEI matches LoanIQ");
+                match.addEvidence(EvidenceType.TAX_FORM_LEI_MATCHES_LOANIQ);
             }
         }
         
         if (taxForm.getDebtDomainId() != null && adf.getDebtDomainId() == null) {
-            match.addEvidence("Additional Debt Domain ID from tax form: " + 
-                taxForm.getDebtDomainId());
+            match.addEvidence(EvidenceType.TAX_FORM_ADDITIONAL_DEBT_DOMAIN_ID, taxForm.getDebtDomainId());
             
             // Check against LoanIQ
             if (match.getMatchedEntity().getDebtDomainId() != null &&
                 match.getMatchedEntity().getDebtDomainId().equals(taxForm.getDebtDomainId())) {
                 boost += 10;
-                match.addEvidence("Tax form Debt Domain ID matches LoanIQ");
+                match.addEvidence(EvidenceType.TAX_FORM_DEBT_DOMAIN_ID_MATCHES_LOANIQ);
             }
         }
         
@@ -2,7 +2,6 @@ package com.loantrading.matching.engine;
 
 import com.loantrading.matching.entity.*;
 import com.loantrading.matching.repository.LoanIQRepository;
-import org.apache.commons.text.similarity.JaroWinklerDistance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,11 +15,9 @@ public class DiscrepancyDetector {
     private static final Logger logger = LoggerFactory.getLogger(DiscrepancyDetector.class);
     
     private final LoanIQRepository repository;
-    private final JaroWinklerDistance jaroWinkler;
     
     public DiscrepancyDetector(LoanIQRepository repository) {
         this.repository = repository;
-        this.jaroWinkler = new JaroWinklerDistance();
     }
     
     /**
@@ -28,20 +25,29 @@ public class DiscrepancyDetector {
      */
     public List<Discrepancy> detect(ExtractedEntity adf, ExtractedEntity taxForm,
                                    LoanIQEntity matched) {
+        return detect(new MatchContext(adf, taxForm, null), matched);
+    }
+    
+    /**
+     * Detect all discrepancies for a match of the request, reusing its name similarities
+     */
+    public List<Discrepancy> detect(MatchContext context, LoanIQEntity matched) {
+        ExtractedEntity adf = context.getExtracted();
+        ExtractedEntity taxForm = context.getTaxForm();
         List<Discrepancy> discrepancies = new ArrayList<>();
         
         // Check identifier discrepancies
-        detectIdentifierDiscrepancies(adf, matched, discrepancies);
+        detectIdentifierDiscrepancies(context, adf, matched, discrepancies);
         
         // Check geographic discrepancies
         detectGeographicDiscrepancies(adf, matched, discrepancies);
         
         // Check name discrepancies
-        detectNameDiscrepancies(adf, matched, discrepancies);
+        detectNameDiscrepancies(context, adf, matched, discrepancies);
         
         // Cross-source validation if tax form available
         if (taxForm != null) {
-            detectCrossSourceDiscrepancies(adf, taxForm, discrepancies);
+            detectCrossSourceDiscrepancies(context, adf, taxForm, discrepancies);
         }
         
         // Check for internal LoanIQ inconsistencies
@@ -53,11 +59,12 @@ public class DiscrepancyDetector {
         return discrepancies;
     }
     
-    private void detectIdentifierDiscrepancies(ExtractedEntity extracted, LoanIQEntity matched,
-                                              List<Discrepancy> discrepancies) {
-        // MEI discrepancy
+    private void detectIdentifierDiscrepancies(MatchContext context, ExtractedEntity extracted,
+                                              LoanIQEntity matched, List<Discrepancy> discrepancies) {
+        // MEI discrepancy; an OCR repair is reported by the identifier matcher instead
         if (extracted.getMei() != null && matched.getMei() != null &&
-            !extracted.getMei().equals(matched.getMei())) {
+            !extracted.getMei().equals(matched.getMei()) &&
+            !context.isRepair(extracted.getMei(), matched.getMei())) {
             Discrepancy disc = new Discrepancy(
                 "MEI_MISMATCH",
                 DiscrepancySeverity.CRITICAL,
@@ -83,7 +90,8 @@ public class DiscrepancyDetector {
         
         // LEI discrepancy
         if (extracted.getLei() != null && matched.getLei() != null &&
-            !extracted.getLei().equals(matched.getLei())) {
+            !extracted.getLei().equals(matched.getLei()) &&
+            !context.isRepair(extracted.getLei(), matched.getLei())) {
             Discrepancy disc = new Discrepancy(
                 "LEI_MISMATCH",
                 DiscrepancySeverity.HIGH,
@@ -100,7 +108,8 @@ public class DiscrepancyDetector {
             String normalizedExtractedEIN = extracted.getEin().replaceAll("-", "");
             String normalizedMatchedEIN = matched.getEin().replaceAll("-", "");
             
-            if (!normalizedExtractedEIN.equals(normalizedMatchedEIN)) {
+            if (!normalizedExtractedEIN.equals(normalizedMatchedEIN) &&
+                !context.isRepair(normalizedExtractedEIN, normalizedMatchedEIN)) {
                 Discrepancy disc = new Discrepancy(
                     "EIN_MISMATCH",
                     DiscrepancySeverity.HIGH,
@@ -175,8 +184,8 @@ public class DiscrepancyDetector {
         }
     }
     
-    private void detectNameDiscrepancies(ExtractedEntity extracted, LoanIQEntity matched,
-                                        List<Discrepancy> discrepancies) {
+    private void detectNameDiscrepancies(MatchContext context, ExtractedEntity extracted,
+                                        LoanIQEntity matched, List<Discrepancy> discrepancies) {
         // DBA handling
         if (extracted.getDba() != null && 
             !matched.getFullName().toUpperCase().contains("DBA") &&
@@ -193,7 +202,7 @@ public class DiscrepancyDetector {
         
         // Fund manager mismatch for composite entities
         if (extracted.getFundManager() != null && matched.getUltimateParent() != null) {
-            double similarity = jaroWinkler.apply(
+            double similarity = context.jaroWinkler(
                 extracted.getFundManager(), matched.getUltimateParent()
             );
             if (similarity < 0.7) {
@@ -235,8 +244,8 @@ public class DiscrepancyDetector {
         }
     }
     
-    private void detectCrossSourceDiscrepancies(ExtractedEntity adf, ExtractedEntity taxForm,
-                                               List<Discrepancy> discrepancies) {
+    private void detectCrossSourceDiscrepancies(MatchContext context, ExtractedEntity adf,
+                                               ExtractedEntity taxForm, List<Discrepancy> discrepancies) {
         // EIN mismatch between forms
         if (adf.getEin() != null && taxForm.getEin() != null &&
             !adf.getEin().equals(taxForm.getEin())) {
@@ -253,7 +262,8 @@ public class DiscrepancyDetector {
         
         // Legal name mismatch
         if (adf.getLegalName() != null && taxForm.getLegalName() != null) {
-            double similarity = jaroWinkler.apply(
+            // Same for every match of the request
+            double similarity = context.jaroWinkler(
                 adf.getLegalName(), taxForm.getLegalName()
             );
             if (similarity < 0.85) {
@@ -1,14 +1,20 @@
 package com.loantrading.matching.engine;
 
 import com.loantrading.matching.entity.LoanIQEntity;
+import com.loantrading.matching.repository.DuplicateClusters;
 import com.loantrading.matching.repository.LoanIQRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Detects potential duplicate entities in LoanIQ
@@ -26,12 +32,84 @@ public class DuplicateDetector {
      * Find potential duplicates for a given entity
      */
     public List<LoanIQEntity> findPotentialDuplicates(LoanIQEntity entity) {
+        DuplicateClusters clusters = repository.getDuplicateClusters();
+        if (clusters != null && !entity.isLocation()) {
+            return findClusteredDuplicates(clusters, entity);
+        }
+        return findPotentialDuplicates(entity, repository::findByMEI,
+            repository::findByLEI, repository::findByEIN);
+    }
+    
+    /**
+     * Find potential duplicates for several entities, resolving their MEI, LEI and EIN
+     * probes with one batched lookup per identifier type
+     *
+     * @return duplicates keyed by entity ID
+     */
+    public Map<Long, List<LoanIQEntity>> findPotentialDuplicates(Collection<LoanIQEntity> entities) {
+        // Precomputed clusters answer main entities without identifier queries
+        DuplicateClusters clusters = repository.getDuplicateClusters();
+        Map<Long, List<LoanIQEntity>> results = new LinkedHashMap<>();
+        List<LoanIQEntity> queried = new ArrayList<>();
+        for (LoanIQEntity entity : entities) {
+            if (clusters != null && !entity.isLocation()) {
+                results.put(entity.getEntityId(), findClusteredDuplicates(clusters, entity));
+            } else {
+                queried.add(entity);
+            }
+        }
+        if (queried.isEmpty()) {
+            return results;
+        }
+        
+        Set<String> meis = new HashSet<>();
+        Set<String> leis = new HashSet<>();
+        Set<String> eins = new HashSet<>();
+        for (LoanIQEntity entity : queried) {
+            if (entity.getMei() != null) meis.add(entity.getMei());
+            if (entity.getLei() != null) leis.add(entity.getLei());
+            if (entity.getEin() != null) eins.add(entity.getEin());
+        }
+        
+        Map<String, List<LoanIQEntity>> byMei = repository.findByMEIs(meis);
+        Map<String, List<LoanIQEntity>> byLei = repository.findByLEIs(leis);
+        Map<String, List<LoanIQEntity>> byEin = repository.findByEINs(eins);
+        
+        for (LoanIQEntity entity : queried) {
+            results.put(entity.getEntityId(), findPotentialDuplicates(entity,
+                mei -> byMei.getOrDefault(mei, List.of()),
+                lei -> byLei.getOrDefault(lei, List.of()),
+                ein -> byEin.getOrDefault(ein, List.of())));
+        }
+        return results;
+    }
+    
+    /**
+     * Members of the entity's cluster plus similar names. Clusters only link names with the same
+     * words; containment is not transitive, so names containing each other are still searched.
+     */
+    private List<LoanIQEntity> findClusteredDuplicates(DuplicateClusters clusters, LoanIQEntity entity) {
+        Set<LoanIQEntity> duplicates = new LinkedHashSet<>(clusters.getDuplicates(entity.getEntityId()));
+        
+        try {
+            addSimilarNames(entity, duplicates);
+        } catch (Exception e) {
+            logger.error("Error detecting duplicates for entity " + entity.getEntityId(), e);
+        }
+        
+        return new ArrayList<>(duplicates);
+    }
+    
+    private List<LoanIQEntity> findPotentialDuplicates(LoanIQEntity entity,
+                                                       Function<String, List<LoanIQEntity>> meiLookup,
+                                                       Function<String, List<LoanIQEntity>> leiLookup,
+                                                       Function<String, List<LoanIQEntity>> einLookup) {
         Set<LoanIQEntity> duplicates = new HashSet<>();
         
         try {
             // Check for same identifiers
             if (entity.getMei() != null) {
-                List<LoanIQEntity> meiDupes = repository.findByMEI(entity.getMei());
+                List<LoanIQEntity> meiDupes = meiLookup.apply(entity.getMei());
                 for (LoanIQEntity dupe : meiDupes) {
                     if (!dupe.getEntityId().equals(entity.getEntityId())) {
                         duplicates.add(dupe);
@@ -43,7 +121,7 @@ public class DuplicateDetector {
             
             // Check for same LEI
             if (entity.getLei() != null) {
-                List<LoanIQEntity> leiDupes = repository.findByLEI(entity.getLei());
+                List<LoanIQEntity> leiDupes = leiLookup.apply(entity.getLei());
                 for (LoanIQEntity dupe : leiDupes) {
                     if (!dupe.getEntityId().equals(entity.getEntityId())) {
                         duplicates.add(dupe);
@@ -55,7 +133,7 @@ public class DuplicateDetector {
             
             // Check for same EIN
             if (entity.getEin() != null) {
-                List<LoanIQEntity> einDupes = repository.findByEIN(entity.getEin());
+                List<LoanIQEntity> einDupes = einLookup.apply(entity.getEin());
                 for (LoanIQEntity dupe : einDupes) {
                     if (!dupe.getEntityId().equals(entity.getEntityId())) {
                         duplicates.add(dupe);
@@ -83,25 +161,7 @@ public class DuplicateDetector {
                 }
             }
             
-            // Check for very similar full names
-            if (entity.getFullName() != null) {
-                List<LoanIQEntity> nameCandidates = repository.findCandidatesByName(
-                    entity.getFullName(), entity.getUltimateParent()
-                );
-                
-                for (LoanIQEntity candidate : nameCandidates) {
-                    if (!candidate.getEntityId().equals(entity.getEntityId()) &&
-                        !duplicates.contains(candidate)) {
-                        // Check if names are very similar
-                        if (areNamesSimilar(entity.getFullName(), candidate.getFullName())) {
-                            duplicates.add(candidate);
-                            logger.debug("Found duplicate by similar name: {} vs {} (ID: {})",
-                                entity.getFullName(), candidate.getFullName(), 
-                                candidate.getEntityId());
-                        }
-                    }
-                }
-            }
+            addSimilarNames(entity, duplicates);
             
             logger.info("Found {} potential duplicates for entity {}",
                 duplicates.size(), entity.getEntityId());
@@ -113,6 +173,31 @@ public class DuplicateDetector {
         return new ArrayList<>(duplicates);
     }
     
+    /**
+     * Check for very similar full names
+     */
+    private void addSimilarNames(LoanIQEntity entity, Set<LoanIQEntity> duplicates) {
+        if (entity.getFullName() == null) {
+            return;
+        }
+        List<LoanIQEntity> nameCandidates = repository.findCandidatesByName(
+            entity.getFullName(), entity.getUltimateParent()
+        );
+        
+        for (LoanIQEntity candidate : nameCandidates) {
+            if (!candidate.getEntityId().equals(entity.getEntityId()) &&
+                !duplicates.contains(candidate)) {
+                // Check if names are very similar
+                if (areNamesSimilar(entity.getFullName(), candidate.getFullName())) {
+                    duplicates.add(candidate);
+                    logger.debug("Found duplicate by similar name: {} vs {} (ID: {})",
+                        entity.getFullName(), candidate.getFullName(), 
+                        candidate.getEntityId());
+                }
+            }
+        }
+    }
+    
     /**
      * Check if two names are similar enough to be potential duplicates
      */
@@ -2,6 +2,7 @@ package com.loantrading.matching.engine;
 
 import com.loantrading.matching.entity.LoanIQEntity;
 import com.loantrading.matching.entity.MatchResult;
+import com.loantrading.matching.entity.ScoreComponent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,7 +64,7 @@ public class EmailDomainMatcher {
         if (boost > 0) {
             double newScore = Math.min(match.getScore() + boost, 100);
             match.setScore(newScore);
-            match.addScoreComponent("email_domain_boost", boost);
+            match.addScoreComponent(ScoreComponent.EMAIL_DOMAIN_BOOST, boost);
             
             logger.debug("Enhanced match for {} with email domain {} (boost: {})",
                 entity.getFullName(), emailDomain, boost);
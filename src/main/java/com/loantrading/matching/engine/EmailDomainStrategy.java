@@ -0,0 +1,71 @@
+package com.loantrading.matching.engine;
+
+import com.loantrading.matching.entity.EvidenceType;
+import com.loantrading.matching.entity.LoanIQEntity;
+import com.loantrading.matching.entity.MatchResult;
+import com.loantrading.matching.repository.LoanIQRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Boosts matches whose names fit the email domain, and falls back to entities
+ * found by the domain itself when other strategies found little
+ */
+public class EmailDomainStrategy implements MatchingStrategy {
+    private static final double FALLBACK_SCORE = 60;
+    private static final int MAX_PRIOR_MATCHES = 3;
+
+    private final LoanIQRepository repository;
+    private final EmailDomainMatcher emailDomainMatcher;
+
+    public EmailDomainStrategy(LoanIQRepository repository, EmailDomainMatcher emailDomainMatcher) {
+        this.repository = repository;
+        this.emailDomainMatcher = emailDomainMatcher;
+    }
+
+    @Override
+    public String getName() {
+        return "EMAIL_DOMAIN";
+    }
+
+    /**
+     * The domain lookup is an unanchored LIKE scan over names
+     */
+    @Override
+    public Cost getCost() {
+        return Cost.HIGH;
+    }
+
+    @Override
+    public CompletableFuture<List<MatchResult>> start(MatchContext context) {
+        String emailDomain = context.getExtracted().getEmailDomain();
+        return repository.findByEmailDomainAsync(emailDomain).thenApply(candidates -> {
+            List<MatchResult> matches = new ArrayList<>(candidates.size());
+            for (LoanIQEntity candidate : candidates) {
+                MatchResult emailMatch = new MatchResult();
+                emailMatch.setMatchedEntity(candidate);
+                emailMatch.setScore(FALLBACK_SCORE);
+                emailMatch.addEvidence(EvidenceType.EMAIL_DOMAIN_MATCH, emailDomain);
+                matches.add(emailMatch);
+            }
+            return matches;
+        });
+    }
+
+    @Override
+    public boolean isNeeded(List<MatchResult> matches) {
+        return matches.size() < MAX_PRIOR_MATCHES;
+    }
+
+    @Override
+    public void enrich(MatchContext context, List<MatchResult> matches) {
+        String emailDomain = context.getExtracted().getEmailDomain();
+        if (emailDomain != null) {
+            for (MatchResult match : matches) {
+                emailDomainMatcher.enhance(match, emailDomain);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.loantrading.matching.engine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.loantrading.matching.entity.ExtractedEntity;
+import com.loantrading.matching.entity.LoanIQEntity;
+
+import java.util.Collection;
+
+/**
+ * Name features per entity instance over one {@link TokenDictionary}. Snapshot entities get
+ * theirs as they are loaded or refreshed; rows from database lookups on first use.
+ * LoanIQ name words are interned; extracted name words are only looked up, so words read from
+ * documents do not stay in the dictionary.
+ * Entries are weakly keyed by identity: they live as long as the entity does, and rows
+ * replaced by a snapshot refresh or cache reload get features of their own.
+ */
+public class FeatureStore {
+    private final NameNormalizer normalizer;
+    private final TokenDictionary dictionary;
+    private final Cache<LoanIQEntity, NameFeatures> entityFeatures;
+    private final Cache<ExtractedEntity, NameFeatures> extractedFeatures;
+
+    public FeatureStore(NameNormalizer normalizer) {
+        this.normalizer = normalizer;
+        this.dictionary = new TokenDictionary();
+        this.entityFeatures = Caffeine.newBuilder().weakKeys().build();
+        this.extractedFeatures = Caffeine.newBuilder().weakKeys().build();
+    }
+
+    public NameFeatures of(LoanIQEntity entity) {
+        return entityFeatures.get(entity, e ->
+            new NameFeatures(normalizer, dictionary, true, e.getFullName(), e.getUltimateParent(), null));
+    }
+
+    /**
+     * Compute the features of LoanIQ entities ahead of their first match, interning their words
+     * so extracted names find them in the dictionary
+     */
+    public void precompute(Collection<LoanIQEntity> entities) {
+        for (LoanIQEntity entity : entities) {
+            of(entity);
+        }
+    }
+
+    public int getTokenCount() {
+        return dictionary.size();
+    }
+
+    public NameFeatures of(ExtractedEntity extracted) {
+        return extractedFeatures.get(extracted, e ->
+            new NameFeatures(normalizer, dictionary, false, e.getLegalName(), e.getFundManager(), e.getDba()));
+    }
+}
@@ -1,13 +1,10 @@
 package com.loantrading.matching.engine;
 
 import com.loantrading.matching.entity.*;
-import org.apache.commons.text.similarity.JaroWinklerDistance;
-import org.apache.commons.text.similarity.LevenshteinDistance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Arrays;
-import java.util.stream.Collectors;
+import java.util.Collection;
 
 /**
  * Performs fuzzy name matching between extracted and LoanIQ entities
@@ -18,34 +15,55 @@ public class FuzzyNameMatcher {
     private static final double LEGAL_NAME_THRESHOLD = 0.85;
     private static final double FUND_MANAGER_THRESHOLD = 0.70;
     
-    private final JaroWinklerDistance jaroWinkler;
-    private final LevenshteinDistance levenshtein;
-    private final NameNormalizer normalizer;
+    // Absorbs rounding differences between the bound and the exact score
+    private static final double BOUND_EPSILON = 1e-9;
+    
+    private final FeatureStore features;
     
     public FuzzyNameMatcher() {
-        this.jaroWinkler = new JaroWinklerDistance();
-        this.levenshtein = new LevenshteinDistance();
-        this.normalizer = new NameNormalizer();
+        this.features = new FeatureStore(new NameNormalizer());
+    }
+    
+    /**
+     * Compute the name features of the given LoanIQ entities before they are matched
+     */
+    public void precompute(Collection<LoanIQEntity> entities) {
+        features.precompute(entities);
+        logger.debug("Computed name features of {} LoanIQ entities, {} distinct words", entities.size(),
+            features.getTokenCount());
     }
     
     /**
      * Match extracted entity against a LoanIQ candidate using fuzzy name matching
      */
     public MatchResult match(ExtractedEntity extracted, LoanIQEntity candidate) {
+        return match(new MatchContext(extracted, null, null), candidate);
+    }
+    
+    /**
+     * Match the request's extracted entity against a LoanIQ candidate, reusing the
+     * similarities already computed for the request
+     */
+    public MatchResult match(MatchContext context, LoanIQEntity candidate) {
+        ExtractedEntity extracted = context.getExtracted();
         MatchResult result = new MatchResult();
         result.setMatchedEntity(candidate);
         
+        // Normalized names, word lists and acronyms are computed once per entity
+        NameFeatures extractedFeatures = features.of(extracted);
+        NameFeatures candidateFeatures = features.of(candidate);
+        
         double legalNameScore = 0;
         double fundManagerScore = 0;
         
         // Match legal entity name (strict threshold)
         if (extracted.getLegalName() != null && candidate.getFullName() != null) {
-            legalNameScore = matchLegalName(extracted, candidate, result);
+            legalNameScore = matchLegalName(extracted, extractedFeatures, candidateFeatures, result);
         }
         
         // Match fund manager (lenient threshold)
         if (extracted.getFundManager() != null && candidate.getUltimateParent() != null) {
-            fundManagerScore = matchFundManager(extracted, candidate, result);
+            fundManagerScore = matchFundManager(context, extractedFeatures, candidateFeatures, result);
             result.setCompositeMatch(true);
         } else if (extracted.getFundManager() == null && candidate.getUltimateParent() == null) {
             // Both are standalone entities
@@ -67,8 +85,8 @@ public class FuzzyNameMatcher {
         );
         
         result.setScore(compositeScore * 100);
-        result.addScoreComponent("legal_name_fuzzy", legalNameScore * 70);
-        result.addScoreComponent("fund_manager_fuzzy", fundManagerScore * 30);
+        result.addScoreComponent(ScoreComponent.LEGAL_NAME_FUZZY, legalNameScore * 70);
+        result.addScoreComponent(ScoreComponent.FUND_MANAGER_FUZZY, fundManagerScore * 30);
         
         logger.debug("Fuzzy match result: {} (legal: {}, fm: {}, composite: {})",
             candidate.getFullName(), legalNameScore, fundManagerScore, compositeScore);
@@ -76,90 +94,128 @@ public class FuzzyNameMatcher {
         return result;
     }
     
-    private double matchLegalName(ExtractedEntity extracted, LoanIQEntity candidate,
-                                 MatchResult result) {
-        String normalizedExtracted = normalizer.normalize(extracted.getLegalName());
-        String normalizedCandidate = normalizer.normalize(candidate.getFullName());
+    /**
+     * Whether {@link #match} could score the candidate above {@code minScore}.
+     * Uses only precomputed features and a character-count bound on the legal name
+     * similarity, so hopeless candidates are dropped without running the comparisons.
+     */
+    public boolean canScoreAbove(ExtractedEntity extracted, LoanIQEntity candidate, double minScore) {
+        double legalBound = 0;
+        if (extracted.getLegalName() != null && candidate.getFullName() != null) {
+            legalBound = legalNameUpperBound(features.of(extracted), features.of(candidate));
+        }
+        
+        double bound = legalBound;
+        if (extracted.getFundManager() != null && candidate.getUltimateParent() != null) {
+            // Composite score with the best possible fund manager score
+            bound = legalBound >= 0.7 ? legalBound * 0.7 + 0.3 : legalBound * 0.5;
+        }
+        
+        return bound * 100 + BOUND_EPSILON > minScore;
+    }
+    
+    private double legalNameUpperBound(NameFeatures extractedFeatures, NameFeatures candidateFeatures) {
+        String normalizedExtracted = extractedFeatures.getNormalizedName();
+        String normalizedCandidate = candidateFeatures.getNormalizedName();
+        
+        // DBA, reordering and subset matches can score up to 1. Reordered names have a word
+        // Jaccard of 1; a name can only contain another with at least its character counts.
+        if (candidateFeatures.hasDbaParts() ||
+            extractedFeatures.wordJaccard(candidateFeatures) == 1.0 ||
+            (extractedFeatures.mayContain(candidateFeatures) && normalizedExtracted.contains(normalizedCandidate)) ||
+            (candidateFeatures.mayContain(extractedFeatures) && normalizedCandidate.contains(normalizedExtracted))) {
+            return 1.0;
+        }
+        
+        return extractedFeatures.jaroWinklerUpperBound(candidateFeatures);
+    }
+    
+    private double matchLegalName(ExtractedEntity extracted, NameFeatures extractedFeatures,
+                                 NameFeatures candidateFeatures, MatchResult result) {
+        String normalizedExtracted = extractedFeatures.getNormalizedName();
+        String normalizedCandidate = candidateFeatures.getNormalizedName();
         
         // Check for DBA matching first
-        double dbaScore = matchDBA(extracted, candidate);
+        double dbaScore = matchDBA(extracted, extractedFeatures, candidateFeatures);
         if (dbaScore > 0.85) {
-            result.addEvidence("DBA match detected");
+            result.addEvidence(EvidenceType.DBA_MATCH);
             return dbaScore;
         }
         
         // Use multiple similarity metrics
-        double jwScore = jaroWinkler.apply(normalizedExtracted, normalizedCandidate);
+        double jwScore = StringSimilarity.jaroWinkler(normalizedExtracted, normalizedCandidate);
         
         // Boost if normalized forms are exact match
         if (normalizedExtracted.equals(normalizedCandidate)) {
-            result.addEvidence("Legal name exact match after normalization");
+            result.addEvidence(EvidenceType.LEGAL_NAME_EXACT);
             return 1.0;
         }
         
         // Check for subset matching (one name contains the other)
         if (normalizedExtracted.contains(normalizedCandidate) ||
             normalizedCandidate.contains(normalizedExtracted)) {
-            result.addEvidence("Legal name subset match");
+            result.addEvidence(EvidenceType.LEGAL_NAME_SUBSET);
             return Math.max(jwScore, 0.85);
         }
         
         // Check for word reordering
-        if (areWordsReordered(normalizedExtracted, normalizedCandidate)) {
-            result.addEvidence("Legal name match with word reordering");
+        if (extractedFeatures.hasSameWords(candidateFeatures)) {
+            result.addEvidence(EvidenceType.LEGAL_NAME_REORDERED);
             return Math.max(jwScore, 0.80);
         }
         
         if (jwScore > LEGAL_NAME_THRESHOLD) {
-            result.addEvidence(String.format("Legal name fuzzy match (%.2f)", jwScore));
+            result.addEvidence(EvidenceType.LEGAL_NAME_FUZZY, jwScore);
         } else if (jwScore > 0.7) {
-            result.addEvidence(String.format("Legal name partial match (%.2f)", jwScore));
+            result.addEvidence(EvidenceType.LEGAL_NAME_PARTIAL, jwScore);
         }
         
         return jwScore;
     }
     
-    private double matchFundManager(ExtractedEntity extracted, LoanIQEntity candidate,
-                                   MatchResult result) {
-        String normalizedExtractedFM = normalizer.normalizeFundManager(extracted.getFundManager());
-        String normalizedCandidateFM = normalizer.normalizeFundManager(candidate.getUltimateParent());
+    private double matchFundManager(MatchContext context, NameFeatures extractedFeatures,
+                                   NameFeatures candidateFeatures, MatchResult result) {
+        String normalizedExtractedFM = extractedFeatures.getNormalizedFundManager();
+        String normalizedCandidateFM = candidateFeatures.getNormalizedFundManager();
         
-        double fmScore = jaroWinkler.apply(normalizedExtractedFM, normalizedCandidateFM);
+        // Candidates under the same fund manager share one comparison
+        double fmScore = context.jaroWinkler(normalizedExtractedFM, normalizedCandidateFM);
         
-        // Check for common abbreviations
-        if (areCommonAbbreviations(normalizedExtractedFM, normalizedCandidateFM)) {
+        // Check for common abbreviations (one is the acronym of the other)
+        if (extractedFeatures.isFundManagerAcronymOf(candidateFeatures) ||
+            candidateFeatures.isFundManagerAcronymOf(extractedFeatures)) {
             fmScore = Math.max(fmScore, 0.9);
-            result.addEvidence("Fund manager abbreviation match");
+            result.addEvidence(EvidenceType.FUND_MANAGER_ABBREVIATION);
         }
         
         // Check for subset matching
         if (normalizedExtractedFM.contains(normalizedCandidateFM) ||
             normalizedCandidateFM.contains(normalizedExtractedFM)) {
             fmScore = Math.max(fmScore, 0.85);
-            result.addEvidence("Fund manager subset match");
+            result.addEvidence(EvidenceType.FUND_MANAGER_SUBSET);
         }
         
         if (fmScore > FUND_MANAGER_THRESHOLD) {
-            result.addEvidence(String.format("Fund manager fuzzy match (%.2f)", fmScore));
+            result.addEvidence(EvidenceType.FUND_MANAGER_FUZZY, fmScore);
         }
         
         return fmScore;
     }
     
-    private double matchDBA(ExtractedEntity extracted, LoanIQEntity candidate) {
-        // Parse DBA from LoanIQ format "Legal Name DBA Trade Name"
-        String candidateName = candidate.getFullName();
-        String[] dbaParts = candidateName.split("\\s+(?:DBA|d/b/a)\\s+", 2);
-        
-        if (dbaParts.length == 2) {
-            String loanIQLegal = normalizer.normalize(dbaParts[0]);
-            String loanIQDBA = normalizer.normalize(dbaParts[1]);
+    private double matchDBA(ExtractedEntity extracted, NameFeatures extractedFeatures,
+                            NameFeatures candidateFeatures) {
+        // DBA parsed from LoanIQ format "Legal Name DBA Trade Name"
+        if (candidateFeatures.hasDbaParts()) {
+            String loanIQLegal = candidateFeatures.getDbaLegalName();
+            String loanIQDBA = candidateFeatures.getDbaTradeName();
             
             if (extracted.getDba() != null) {
                 // Check if extracted DBA matches LoanIQ DBA
-                double dbaMatch = jaroWinkler.apply(
-                    normalizer.normalize(extracted.getDba()),
-                    loanIQDBA
+                // Only whether it clears 0.85 matters, so the kernel may stop early
+                double dbaMatch = StringSimilarity.jaroWinkler(
+                    extractedFeatures.getNormalizedDba(),
+                    loanIQDBA,
+                    0.85
                 );
                 
                 if (dbaMatch > 0.85) {
@@ -169,9 +225,9 @@ public class FuzzyNameMatcher {
             
             // Check if extracted legal name matches either part
             if (extracted.getLegalName() != null) {
-                String extractedNorm = normalizer.normalize(extracted.getLegalName());
-                double legalMatch = jaroWinkler.apply(extractedNorm, loanIQLegal);
-                double dbaMatch = jaroWinkler.apply(extractedNorm, loanIQDBA);
+                String extractedNorm = extractedFeatures.getNormalizedName();
+                double legalMatch = StringSimilarity.jaroWinkler(extractedNorm, loanIQLegal);
+                double dbaMatch = StringSimilarity.jaroWinkler(extractedNorm, loanIQDBA);
                 return Math.max(legalMatch, dbaMatch);
             }
         }
@@ -195,46 +251,4 @@ public class FuzzyNameMatcher {
             return legalNameScore;
         }
     }
-    
-    private boolean areWordsReordered(String name1, String name2) {
-        String[] words1 = name1.split("\\s+");
-        String[] words2 = name2.split("\\s+");
-        
-        if (words1.length != words2.length) {
-            return false;
-        }
-        
-        Arrays.sort(words1);
-        Arrays.sort(words2);
-        
-        return Arrays.equals(words1, words2);
-    }
-    
-    private boolean areCommonAbbreviations(String name1, String name2) {
-        // Check if one is abbreviation of the other
-        String[] words1 = name1.split("\\s+");
-        String[] words2 = name2.split("\\s+");
-        
-        // Check acronym
-        if (words1.length == 1 && words2.length > 1) {
-            String acronym = Arrays.stream(words2)
-                .map(w -> w.length() > 0 ? String.valueOf(w.charAt(0)) : "")
-                .collect(Collectors.joining());
-            if (words1[0].equalsIgnoreCase(acronym)) {
-                return true;
-            }
-        }
-        
-        // Reverse check
-        if (words2.length == 1 && words1.length > 1) {
-            String acronym = Arrays.stream(words1)
-                .map(w -> w.length() > 0 ? String.valueOf(w.charAt(0)) : "")
-                .collect(Collectors.joining());
-            if (words2[0].equalsIgnoreCase(acronym)) {
-                return true;
-            }
-        }
-        
-        return false;
-    }
 }
\ No newline at end of file
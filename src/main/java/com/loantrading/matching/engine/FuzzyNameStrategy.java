@@ -0,0 +1,122 @@
+package com.loantrading.matching.engine;
+
+import com.loantrading.matching.entity.ExtractedEntity;
+import com.loantrading.matching.entity.LoanIQEntity;
+import com.loantrading.matching.entity.MatchResult;
+import com.loantrading.matching.repository.LoanIQRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Scores name candidates from LoanIQ with {@link FuzzyNameMatcher}. Candidates are blocked
+ * on two keys: the name search, and names that sound alike when the phonetic index is built.
+ * Scoring, and lookups answered from memory, run on the compute executor rather than on the
+ * caller's thread or the repository's I/O threads.
+ */
+public class FuzzyNameStrategy implements MatchingStrategy {
+    private static final Logger logger = LoggerFactory.getLogger(FuzzyNameStrategy.class);
+
+    private static final double MIN_SCORE = 50;
+    private static final int MAX_PRIOR_MATCHES = 5;
+
+    private final LoanIQRepository repository;
+    private final FuzzyNameMatcher fuzzyNameMatcher;
+    private final Executor computeExecutor;
+
+    public FuzzyNameStrategy(LoanIQRepository repository, FuzzyNameMatcher fuzzyNameMatcher,
+                             Executor computeExecutor) {
+        this.repository = repository;
+        this.fuzzyNameMatcher = fuzzyNameMatcher;
+        this.computeExecutor = computeExecutor;
+    }
+
+    @Override
+    public String getName() {
+        return "FUZZY_NAME";
+    }
+
+    @Override
+    public Cost getCost() {
+        return Cost.MEDIUM;
+    }
+
+    @Override
+    public CompletableFuture<List<MatchResult>> start(MatchContext context) {
+        ExtractedEntity extracted = context.getExtracted();
+        // The repository answers in-memory lookups synchronously, so even issuing them is handed off
+        return CompletableFuture.supplyAsync(() -> findCandidates(extracted), computeExecutor)
+            .thenCompose(Function.identity())
+            .thenApplyAsync(candidates -> score(context, candidates), computeExecutor);
+    }
+
+    private CompletableFuture<List<LoanIQEntity>> findCandidates(ExtractedEntity extracted) {
+        return repository.findCandidatesByNameAsync(extracted.getLegalName(), extracted.getFundManager())
+            .thenCombine(
+                repository.findCandidatesByPhoneticKeyAsync(extracted.getLegalName(), extracted.getFundManager()),
+                this::union);
+    }
+
+    /**
+     * Name search candidates followed by the phonetic ones it missed
+     */
+    private List<LoanIQEntity> union(List<LoanIQEntity> byName, List<LoanIQEntity> byPhoneticKey) {
+        if (byPhoneticKey.isEmpty()) {
+            return byName;
+        }
+        Map<Long, LoanIQEntity> candidates = new LinkedHashMap<>();
+        for (LoanIQEntity candidate : byName) {
+            candidates.putIfAbsent(candidate.getEntityId(), candidate);
+        }
+        for (LoanIQEntity candidate : byPhoneticKey) {
+            candidates.putIfAbsent(candidate.getEntityId(), candidate);
+        }
+        logger.debug("Phonetic index added {} name-based candidates", candidates.size() - byName.size());
+        return new ArrayList<>(candidates.values());
+    }
+
+    /**
+     * Only needed while identifiers have not already produced a full result page
+     */
+    @Override
+    public boolean isNeeded(List<MatchResult> matches) {
+        return matches.size() < MAX_PRIOR_MATCHES;
+    }
+
+    private List<MatchResult> score(MatchContext context, List<LoanIQEntity> candidates) {
+        logger.debug("Found {} name-based candidates", candidates.size());
+
+        List<MatchResult> matches = new ArrayList<>();
+        int visited = 0;
+        int pruned = 0;
+        for (LoanIQEntity candidate : candidates) {
+            if (context.isExpired()) {
+                logger.warn("Time budget ran out after {} of {} name-based candidates",
+                    visited, candidates.size());
+                context.markPartial();
+                break;
+            }
+            visited++;
+            // Skip the full comparison when even the best case cannot clear the threshold
+            if (!fuzzyNameMatcher.canScoreAbove(context.getExtracted(), candidate, MIN_SCORE)) {
+                pruned++;
+                continue;
+            }
+            MatchResult fuzzyMatch = fuzzyNameMatcher.match(context, candidate);
+            if (fuzzyMatch.getScore() > MIN_SCORE) {
+                matches.add(fuzzyMatch);
+                logger.debug("Added fuzzy match: {} (score: {})",
+                    candidate.getFullName(), fuzzyMatch.getScore());
+            }
+        }
+        logger.debug("Pruned {} name-based candidates by score bound", pruned);
+        return matches;
+    }
+}
@@ -1,17 +1,19 @@
 package com.loantrading.matching.engine;
 
 import com.loantrading.matching.entity.*;
+import com.loantrading.matching.repository.IdentifierRepairIndex;
 import com.loantrading.matching.repository.LoanIQRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Matches entities based on identifiers (MEI, LEI, EIN, Debt Domain ID)
  */
-public class IdentifierMatcher {
+public class IdentifierMatcher implements MatchingStrategy {
     private static final Logger logger = LoggerFactory.getLogger(IdentifierMatcher.class);
     
     private final LoanIQRepository repository;
@@ -20,20 +22,85 @@ public class IdentifierMatcher {
         this.repository = repository;
     }
     
+    @Override
+    public String getName() {
+        return "IDENTIFIER";
+    }
+    
+    @Override
+    public Cost getCost() {
+        return Cost.LOW;
+    }
+    
+    @Override
+    public CompletableFuture<List<MatchResult>> start(MatchContext context) {
+        return matchAsync(context);
+    }
+    
+    /**
+     * A single match found by MEI alone is unambiguous, unless the MEI had to be repaired
+     */
+    @Override
+    public boolean isConclusive(List<MatchResult> results) {
+        return results.size() == 1 && results.get(0).hasScoreComponent(ScoreComponent.MEI_MATCH) &&
+               !results.get(0).hasEvidence(EvidenceType.IDENTIFIER_REPAIRED);
+    }
+    
     /**
      * Match extracted entity against LoanIQ using identifiers
      */
     public List<MatchResult> match(ExtractedEntity extracted) {
+        return matchAsync(extracted).join();
+    }
+    
+    /**
+     * Match extracted entity against LoanIQ using identifiers without blocking the caller
+     */
+    public CompletableFuture<List<MatchResult>> matchAsync(ExtractedEntity extracted) {
+        return matchAsync(new MatchContext(extracted, null, null));
+    }
+    
+    private CompletableFuture<List<MatchResult>> matchAsync(MatchContext context) {
+        ExtractedEntity extracted = context.getExtracted();
+        // The lookups are independent, so all are in flight at once;
+        // results are still applied in priority order once all have completed
+        CompletableFuture<List<LoanIQEntity>> meiLookup = repository.findByMEIAsync(extracted.getMei());
+        CompletableFuture<List<LoanIQEntity>> leiLookup = repository.findByLEIAsync(extracted.getLei());
+        CompletableFuture<List<LoanIQEntity>> einLookup = repository.findByEINAsync(extracted.getEin());
+        CompletableFuture<List<LoanIQEntity>> ddLookup =
+            repository.findByDebtDomainIdAsync(extracted.getDebtDomainId());
+        
+        return CompletableFuture.allOf(meiLookup, leiLookup, einLookup, ddLookup)
+            .thenApply(done -> collectMatches(context, meiLookup.join(), leiLookup.join(),
+                einLookup.join(), ddLookup.join()));
+    }
+    
+    private List<MatchResult> collectMatches(MatchContext context, List<LoanIQEntity> meiMatches,
+                                             List<LoanIQEntity> leiMatches, List<LoanIQEntity> einMatches,
+                                             List<LoanIQEntity> ddMatches) {
+        ExtractedEntity extracted = context.getExtracted();
         List<MatchResult> matches = new ArrayList<>();
         
+        // Identifiers that found nothing are retried as the known identifier one OCR error away
+        IdentifierRepairIndex.Repair meiRepair = meiMatches.isEmpty() ? repository.repairMEI(extracted.getMei()) : null;
+        if (meiRepair != null) {
+            meiMatches = repository.findByMEI(meiRepair.getIdentifier());
+        }
+        IdentifierRepairIndex.Repair leiRepair = leiMatches.isEmpty() ? repository.repairLEI(extracted.getLei()) : null;
+        if (leiRepair != null) {
+            leiMatches = repository.findByLEI(leiRepair.getIdentifier());
+        }
+        IdentifierRepairIndex.Repair einRepair = einMatches.isEmpty() ? repository.repairEIN(extracted.getEin()) : null;
+        if (einRepair != null) {
+            einMatches = repository.findByEIN(einRepair.getIdentifier());
+        }
+        
         // Priority 1: MEI matching (highest weight)
         if (extracted.getMei() != null) {
             logger.debug("Searching by MEI: {}", extracted.getMei());
-            List<LoanIQEntity> meiMatches = repository.findByMEI(extracted.getMei());
-            
             for (LoanIQEntity entity : meiMatches) {
-                MatchResult result = createIdentifierMatch(entity, "MEI",
-                    extracted.getMei(), 40.0);
+                MatchResult result = createIdentifierMatch(entity, "MEI", ScoreComponent.MEI_MATCH,
+                    meiRepair != null ? meiRepair.getIdentifier() : extracted.getMei(), 40.0);
                 matches.add(result);
                 logger.debug("Found MEI match: {} (ID: {})", 
                     entity.getFullName(), entity.getEntityId());
@@ -43,20 +110,18 @@ public class IdentifierMatcher {
         // Priority 2: LEI matching
         if (extracted.getLei() != null) {
             logger.debug("Searching by LEI: {}", extracted.getLei());
-            List<LoanIQEntity> leiMatches = repository.findByLEI(extracted.getLei());
-            
             for (LoanIQEntity entity : leiMatches) {
                 // Check if already matched by MEI
                 boolean alreadyMatched = matches.stream()
                     .anyMatch(m -> m.getMatchedEntity().getEntityId().equals(entity.getEntityId()));
                 
                 if (!alreadyMatched) {
-                    MatchResult result = createIdentifierMatch(entity, "LEI",
-                        extracted.getLei(), 35.0);
+                    MatchResult result = createIdentifierMatch(entity, "LEI", ScoreComponent.LEI_MATCH,
+                        leiRepair != null ? leiRepair.getIdentifier() : extracted.getLei(), 35.0);
                     matches.add(result);
                 } else {
                     // Enhance existing match
-                    enhanceExistingMatch(matches, entity.getEntityId(), "LEI", 20.0);
+                    enhanceExistingMatch(matches, entity.getEntityId(), "LEI", ScoreComponent.LEI_BOOST, 20.0);
                 }
             }
         }
@@ -64,18 +129,16 @@ public class IdentifierMatcher {
         // Priority 3: EIN matching
         if (extracted.getEin() != null) {
             logger.debug("Searching by EIN: {}", extracted.getEin());
-            List<LoanIQEntity> einMatches = repository.findByEIN(extracted.getEin());
-            
             for (LoanIQEntity entity : einMatches) {
                 boolean alreadyMatched = matches.stream()
                     .anyMatch(m -> m.getMatchedEntity().getEntityId().equals(entity.getEntityId()));
                 
                 if (!alreadyMatched) {
-                    MatchResult result = createIdentifierMatch(entity, "EIN",
-                        extracted.getEin(), 30.0);
+                    MatchResult result = createIdentifierMatch(entity, "EIN", ScoreComponent.EIN_MATCH,
+                        einRepair != null ? einRepair.getIdentifier() : extracted.getEin(), 30.0);
                     matches.add(result);
                 } else {
-                    enhanceExistingMatch(matches, entity.getEntityId(), "EIN", 15.0);
+                    enhanceExistingMatch(matches, entity.getEntityId(), "EIN", ScoreComponent.EIN_BOOST, 15.0);
                 }
             }
         }
@@ -83,40 +146,87 @@ public class IdentifierMatcher {
         // Priority 4: Debt Domain ID matching
         if (extracted.getDebtDomainId() != null) {
             logger.debug("Searching by Debt Domain ID: {}", extracted.getDebtDomainId());
-            List<LoanIQEntity> ddMatches = repository.findByDebtDomainId(extracted.getDebtDomainId());
-            
             for (LoanIQEntity entity : ddMatches) {
                 boolean alreadyMatched = matches.stream()
                     .anyMatch(m -> m.getMatchedEntity().getEntityId().equals(entity.getEntityId()));
                 
                 if (!alreadyMatched) {
                     MatchResult result = createIdentifierMatch(entity, "Debt Domain ID",
-                        extracted.getDebtDomainId(), 25.0);
+                        ScoreComponent.DEBT_DOMAIN_ID_MATCH, extracted.getDebtDomainId(), 25.0);
                     matches.add(result);
                 } else {
-                    enhanceExistingMatch(matches, entity.getEntityId(), "Debt Domain ID", 10.0);
+                    enhanceExistingMatch(matches, entity.getEntityId(), "Debt Domain ID",
+                        ScoreComponent.DEBT_DOMAIN_ID_BOOST, 10.0);
                 }
             }
         }
         
+        flagRepair(context, matches, "MEI", extracted.getMei(), meiRepair,
+            ScoreComponent.MEI_MATCH, ScoreComponent.MEI_BOOST);
+        flagRepair(context, matches, "LEI", extracted.getLei(), leiRepair,
+            ScoreComponent.LEI_MATCH, ScoreComponent.LEI_BOOST);
+        // Repaired EINs are compared without dashes, as the discrepancy detector compares them
+        flagRepair(context, matches, "EIN", einRepair == null ? null : extracted.getEin().replace("-", ""),
+            einRepair, ScoreComponent.EIN_MATCH, ScoreComponent.EIN_BOOST);
+        
         logger.info("Identifier matching found {} results", matches.size());
         return matches;
     }
     
+    /**
+     * Mark the matches found through a repaired identifier. The repair is a discrepancy in
+     * itself, so it replaces the identifier mismatch the discrepancy detector would report.
+     */
+    private void flagRepair(MatchContext context, List<MatchResult> matches, String identifierType,
+                            String read, IdentifierRepairIndex.Repair repair,
+                            ScoreComponent matchComponent, ScoreComponent boostComponent) {
+        if (repair == null) {
+            return;
+        }
+        context.recordRepair(read, repair.getIdentifier());
+        logger.info("{} {} repaired to known {}", identifierType, read, repair.getIdentifier());
+        
+        for (MatchResult match : matches) {
+            if (!match.hasScoreComponent(matchComponent) && !match.hasScoreComponent(boostComponent)) {
+                continue;
+            }
+            match.addEvidence(EvidenceType.IDENTIFIER_REPAIRED, identifierType, repair.getIdentifier(), read);
+            Discrepancy disc = new Discrepancy(
+                "IDENTIFIER_REPAIRED",
+                // Look-alike characters are a routine OCR error; any other edit is less certain
+                repair.isConfusion() ? DiscrepancySeverity.LOW : DiscrepancySeverity.MEDIUM,
+                "%s matched only after repairing one character read from the form",
+                identifierType
+            );
+            disc.addDetail("form_value", read);
+            disc.addDetail("repaired_value", repair.getIdentifier());
+            disc.setSource("IDENTIFIER_CHECK");
+            match.addDiscrepancy(disc);
+        }
+    }
+    
     /**
      * Create a match result for an identifier match
      */
     private MatchResult createIdentifierMatch(LoanIQEntity entity, String identifierType,
-                                             String identifierValue, double baseScore) {
+                                             ScoreComponent component, String identifierValue,
+                                             double baseScore) {
         MatchResult result = new MatchResult();
         result.setMatchedEntity(entity);
         result.setScore(baseScore);
-        result.addEvidence(String.format("%s exact match: %s", identifierType, identifierValue));
-        result.addScoreComponent(identifierType.toLowerCase().replace(" ", "_") + "_match", baseScore);
+        result.addEvidence(EvidenceType.IDENTIFIER_EXACT_MATCH, identifierType, identifierValue);
+        result.addScoreComponent(component, baseScore);
         
         // Add location information if relevant
         if (entity.isLocation()) {
-            result.addEvidence("Match is a location sub-entity");
+            LoanIQEntity parent = repository.findParentCustomer(entity);
+            if (parent != null) {
+                result.addEvidence(EvidenceType.LOCATION_OF_PARENT,
+                    parent.getShortName() != null ? parent.getShortName() : parent.getFullName(),
+                    parent.getEntityId());
+            } else {
+                result.addEvidence(EvidenceType.LOCATION);
+            }
         }
         
         return result;
@@ -126,15 +236,15 @@ public class IdentifierMatcher {
      * Enhance an existing match with additional identifier evidence
      */
     private void enhanceExistingMatch(List<MatchResult> matches, Long entityId,
-                                     String identifierType, double boost) {
+                                     String identifierType, ScoreComponent component, double boost) {
         matches.stream()
             .filter(m -> m.getMatchedEntity().getEntityId().equals(entityId))
             .findFirst()
             .ifPresent(match -> {
                 double newScore = Math.min(100, match.getScore() + boost);
                 match.setScore(newScore);
-                match.addEvidence("Additional " + identifierType + " match");
-                match.addScoreComponent(identifierType.toLowerCase() + "_boost", boost);
+                match.addEvidence(EvidenceType.ADDITIONAL_IDENTIFIER_MATCH, identifierType);
+                match.addScoreComponent(component, boost);
                 logger.debug("Enhanced match for entity {} with {} (new score: {})",
                     entityId, identifierType, newScore);
             });
@@ -0,0 +1,111 @@
+package com.loantrading.matching.engine;
+
+import com.loantrading.matching.entity.ExtractedEntity;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State of one matching request shared by the strategies, validators and detectors that serve it.
+ * Name similarities are memoized per request: the same fund manager, legal name and tax form
+ * name pairs recur across candidates and across the matching, validation and discrepancy steps.
+ */
+public class MatchContext {
+    private final ExtractedEntity extracted;
+    private final ExtractedEntity taxForm;
+    private final long deadlineNanos;
+    private final boolean bounded;
+    private volatile boolean partial;
+    // Exact Jaro-Winkler scores by first, then second string
+    private final Map<String, Map<String, Double>> similarities = new ConcurrentHashMap<>();
+    // Identifiers as read from the form, by the known identifier each was repaired to
+    private final Map<String, String> repairs = new ConcurrentHashMap<>();
+
+    /**
+     * @param timeBudget time allowed for candidate generation, or null for no limit
+     */
+    public MatchContext(ExtractedEntity extracted, ExtractedEntity taxForm, Duration timeBudget) {
+        this.extracted = extracted;
+        this.taxForm = taxForm;
+        this.bounded = timeBudget != null;
+        this.deadlineNanos = bounded ? System.nanoTime() + timeBudget.toNanos() : 0;
+    }
+
+    public ExtractedEntity getExtracted() {
+        return extracted;
+    }
+
+    /**
+     * Tax form extracted alongside the entity, or null
+     */
+    public ExtractedEntity getTaxForm() {
+        return taxForm;
+    }
+
+    public boolean hasDeadline() {
+        return bounded;
+    }
+
+    /**
+     * Nanoseconds left in the time budget, never negative; Long.MAX_VALUE without a deadline
+     */
+    public long getRemainingNanos() {
+        return bounded ? Math.max(0, deadlineNanos - System.nanoTime()) : Long.MAX_VALUE;
+    }
+
+    public boolean isExpired() {
+        return bounded && deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Whether some candidates were left out because a strategy failed or ran out of time
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public void markPartial() {
+        this.partial = true;
+    }
+
+    /**
+     * Record that an identifier read from the form was repaired to a known one
+     */
+    public void recordRepair(String read, String repaired) {
+        repairs.put(repaired, read);
+    }
+
+    /**
+     * Whether {@code known} is the identifier that {@code read} was repaired to
+     */
+    public boolean isRepair(String read, String known) {
+        return read != null && known != null && read.equals(repairs.get(known));
+    }
+
+    /**
+     * Jaro-Winkler similarity of two strings, computed once per request
+     */
+    public double jaroWinkler(String first, String second) {
+        return similarities.computeIfAbsent(first, k -> new ConcurrentHashMap<>())
+            .computeIfAbsent(second, k -> StringSimilarity.jaroWinkler(first, second));
+    }
+
+    /**
+     * Jaro-Winkler similarity where only scores at or above {@code minScore} need to be exact.
+     * A memoized exact score is reused; a new one is only kept if it reaches the threshold.
+     */
+    public double jaroWinkler(String first, String second, double minScore) {
+        Map<String, Double> scores = similarities.get(first);
+        Double known = scores == null ? null : scores.get(second);
+        if (known != null) {
+            return known;
+        }
+
+        double score = StringSimilarity.jaroWinkler(first, second, minScore);
+        if (score >= minScore) {
+            similarities.computeIfAbsent(first, k -> new ConcurrentHashMap<>()).putIfAbsent(second, score);
+        }
+        return score;
+    }
+}
@@ -0,0 +1,118 @@
+package com.loantrading.matching.engine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.loantrading.matching.entity.ExtractedEntity;
+import com.loantrading.matching.entity.MatchResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole match results of earlier requests, so that a resubmitted document with the same
+ * match-relevant fields is answered without rerunning the pipeline.
+ * <p>
+ * Keys combine a fingerprint of those fields with the repository data version, so any change
+ * applied to the LoanIQ data makes earlier entries unreachable. Without delta refresh the
+ * repository cannot see changes, so entries also expire with the query caches.
+ */
+class MatchResultCache {
+    private final Cache<Key, List<MatchResult>> results;
+
+    MatchResultCache(long maximumSize, long expiryMinutes) {
+        this.results = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expiryMinutes, TimeUnit.MINUTES)
+            .build();
+    }
+
+    /**
+     * Copies of the cached results, which the caller may change freely; null on a miss
+     */
+    List<MatchResult> get(ExtractedEntity extracted, ExtractedEntity taxForm, long dataVersion) {
+        List<MatchResult> cached = results.getIfPresent(new Key(fingerprint(extracted, taxForm), dataVersion));
+        return cached == null ? null : copyOf(cached);
+    }
+
+    /**
+     * Remember complete results only. Copies are stored, so later changes to the caller's
+     * results do not reach the cache.
+     */
+    void put(ExtractedEntity extracted, ExtractedEntity taxForm, long dataVersion, List<MatchResult> matches) {
+        results.put(new Key(fingerprint(extracted, taxForm), dataVersion), copyOf(matches));
+    }
+
+    private static List<MatchResult> copyOf(List<MatchResult> matches) {
+        List<MatchResult> copies = new ArrayList<>(matches.size());
+        for (MatchResult match : matches) {
+            copies.add(new MatchResult(match));
+        }
+        return copies;
+    }
+
+    /**
+     * Every field the matching pipeline reads, in a fixed order. Names are taken as extracted
+     * rather than normalized, because database name lookups match on the raw text.
+     */
+    static String fingerprint(ExtractedEntity extracted, ExtractedEntity taxForm) {
+        StringBuilder fingerprint = new StringBuilder(256);
+        appendFields(fingerprint, extracted);
+        if (taxForm != null) {
+            appendFields(fingerprint, taxForm);
+        }
+        return fingerprint.toString();
+    }
+
+    private static void appendFields(StringBuilder fingerprint, ExtractedEntity entity) {
+        append(fingerprint, entity.getMei());
+        append(fingerprint, entity.getLei());
+        append(fingerprint, entity.getEin());
+        append(fingerprint, entity.getDebtDomainId());
+        append(fingerprint, entity.getLegalName());
+        append(fingerprint, entity.getFundManager());
+        append(fingerprint, entity.getDba());
+        append(fingerprint, entity.getEmailDomain());
+        append(fingerprint, entity.getCountryCode());
+        append(fingerprint, entity.getTaxCountryCode());
+    }
+
+    /**
+     * Length-prefixed, so no field value can run into the next
+     */
+    private static void append(StringBuilder fingerprint, String value) {
+        if (value == null) {
+            fingerprint.append('-');
+        } else {
+            fingerprint.append(value.length()).append(':').append(value);
+        }
+    }
+
+    private static final class Key {
+        private final String fingerprint;
+        private final long dataVersion;
+
+        Key(String fingerprint, long dataVersion) {
+            this.fingerprint = fingerprint;
+            this.dataVersion = dataVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return dataVersion == other.dataVersion && fingerprint.equals(other.fingerprint);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fingerprint, dataVersion);
+        }
+    }
+}
@@ -1,12 +1,24 @@
 package com.loantrading.matching.engine;
 
 import com.loantrading.matching.entity.*;
+import com.loantrading.matching.repository.DuplicateClusters;
 import com.loantrading.matching.repository.LoanIQRepository;
+import com.loantrading.matching.repository.RepositoryConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -15,150 +27,361 @@ import java.util.stream.Collectors;
 public class MatchingEngine {
     private static final Logger logger = LoggerFactory.getLogger(MatchingEngine.class);
     
+    private static final int MAX_RESULTS = 5;
+    
     private final LoanIQRepository repository;
-    private final IdentifierMatcher identifierMatcher;
-    private final FuzzyNameMatcher fuzzyNameMatcher;
-    private final EmailDomainMatcher emailDomainMatcher;
+    private volatile List<MatchingStrategy> strategies;
     private final DiscrepancyDetector discrepancyDetector;
     private final ConfidenceScorer confidenceScorer;
     private final DuplicateDetector duplicateDetector;
     private final CrossSourceValidator crossSourceValidator;
+    private final MatchResultCache resultCache;
+    // Runs CPU-bound strategy work, so it neither blocks the caller nor occupies I/O threads
+    private final ExecutorService computeExecutor;
+    private volatile Duration timeBudget;
     
     public MatchingEngine(Connection dbConnection) {
-        this.repository = new LoanIQRepository(dbConnection);
-        this.identifierMatcher = new IdentifierMatcher(repository);
-        this.fuzzyNameMatcher = new FuzzyNameMatcher();
-        this.emailDomainMatcher = new EmailDomainMatcher();
+        this(dbConnection, new RepositoryConfig());
+    }
+    
+    public MatchingEngine(Connection dbConnection, RepositoryConfig repositoryConfig) {
+        this(new LoanIQRepository(dbConnection, repositoryConfig), repositoryConfig);
+    }
+    
+    public MatchingEngine(DataSource dataSource, RepositoryConfig repositoryConfig) {
+        this(new LoanIQRepository(dataSource, repositoryConfig), repositoryConfig);
+    }
+    
+    private MatchingEngine(LoanIQRepository repository, RepositoryConfig repositoryConfig) {
+        this.repository = repository;
+        this.computeExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+            new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "matching-compute-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        FuzzyNameMatcher fuzzyNameMatcher = new FuzzyNameMatcher();
+        repository.addSnapshotListener(fuzzyNameMatcher::precompute);
+        this.strategies = List.of(
+            new IdentifierMatcher(repository),
+            new FuzzyNameStrategy(repository, fuzzyNameMatcher, computeExecutor),
+            new EmailDomainStrategy(repository, new EmailDomainMatcher())
+        );
         this.discrepancyDetector = new DiscrepancyDetector(repository);
         this.confidenceScorer = new ConfidenceScorer();
         this.duplicateDetector = new DuplicateDetector(repository);
         this.crossSourceValidator = new CrossSourceValidator();
+        this.resultCache = repositoryConfig.getResultCacheSize() > 0 ?
+            new MatchResultCache(repositoryConfig.getResultCacheSize(), repositoryConfig.getCacheExpiryMinutes()) :
+            null;
     }
     
     /**
-     * Find matches for an extracted entity
+     * Add a matching strategy. It starts together with the built-in strategies of the same cost,
+     * and its results are merged after those of cheaper strategies and of earlier added
+     * strategies of the same cost.
+     */
+    public synchronized void addStrategy(MatchingStrategy strategy) {
+        List<MatchingStrategy> updated = new ArrayList<>(strategies);
+        updated.add(strategy);
+        updated.sort(Comparator.comparing(MatchingStrategy::getCost));
+        strategies = List.copyOf(updated);
+    }
+    
+    /**
+     * Default time allowed for candidate generation per request; null, the default, means no limit
+     */
+    public Duration getTimeBudget() {
+        return timeBudget;
+    }
+    
+    public void setTimeBudget(Duration timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+    
+    /**
+     * Find matches for an extracted entity within the engine's default time budget
      */
     public List<MatchResult> findMatches(ExtractedEntity extracted, ExtractedEntity taxForm) {
+        return findMatches(extracted, taxForm, timeBudget);
+    }
+    
+    /**
+     * Find matches for an extracted entity
+     *
+     * @param timeBudget time allowed for candidate generation, or null for no limit;
+     *                   strategies still running when it ends are left out
+     */
+    public List<MatchResult> findMatches(ExtractedEntity extracted, ExtractedEntity taxForm, Duration timeBudget) {
+        // Read before matching, so results computed while data changes are filed under the older version
+        long dataVersion = repository.getDataVersion();
+        if (resultCache != null) {
+            List<MatchResult> cached = resultCache.get(extracted, taxForm, dataVersion);
+            if (cached != null) {
+                logger.info("Returning {} cached matches for resubmitted entity: {}", cached.size(),
+                    extracted.getLegalName() != null ? extracted.getLegalName() : "Unknown");
+                return cached;
+            }
+        }
+        
         List<MatchResult> allMatches = new ArrayList<>();
-        Set<Long> processedEntityIds = new HashSet<>();
+        List<MatchResult> rankedMatches = allMatches;
         
         try {
             logger.info("Starting matching process for entity: {}", 
                 extracted.getLegalName() != null ? extracted.getLegalName() : "Unknown");
             
-            // Step 1: Try identifier-based matching (highest priority)
-            List<MatchResult> identifierMatches = identifierMatcher.match(extracted);
-            for (MatchResult match : identifierMatches) {
-                if (!processedEntityIds.contains(match.getMatchedEntity().getEntityId())) {
-                    allMatches.add(match);
-                    processedEntityIds.add(match.getMatchedEntity().getEntityId());
-                    match.setMatchStrategy("IDENTIFIER");
-                    logger.debug("Added identifier match: {} (score: {})", 
-                        match.getMatchedEntity().getFullName(), match.getScore());
+            // Steps 1-3: Identifier, fuzzy name and email domain strategies
+            MatchContext context = new MatchContext(extracted, taxForm, timeBudget);
+            runStrategies(context, allMatches);
+            
+            // Step 4: Cross-validate with tax form if available
+            if (taxForm != null) {
+                logger.debug("Cross-validating with tax form data");
+                for (MatchResult match : allMatches) {
+                    crossSourceValidator.validate(context, match);
                 }
             }
             
-            // Step 2: Try fuzzy name matching if needed
-            if (allMatches.size() < 5) {
-                List<LoanIQEntity> candidates = repository.findCandidatesByName(
-                    extracted.getLegalName(), extracted.getFundManager()
-                );
-                
-                logger.debug("Found {} name-based candidates", candidates.size());
-                
-                for (LoanIQEntity candidate : candidates) {
-                    if (!processedEntityIds.contains(candidate.getEntityId())) {
-                        MatchResult fuzzyMatch = fuzzyNameMatcher.match(extracted, candidate);
-                        if (fuzzyMatch.getScore() > 50) {
-                            fuzzyMatch.setMatchStrategy("FUZZY_NAME");
-                            allMatches.add(fuzzyMatch);
-                            processedEntityIds.add(candidate.getEntityId());
-                            logger.debug("Added fuzzy match: {} (score: {})",
-                                candidate.getFullName(), fuzzyMatch.getScore());
-                        }
-                    }
-                }
+            // Steps 5 and 6: Detect discrepancies and duplicates, and score the top matches
+            rankedMatches = rankTopMatches(context, allMatches);
+            
+            logger.info("Found {} potential matches, returning top {}", allMatches.size(), rankedMatches.size());
+            
+            if (resultCache != null && !context.isPartial()) {
+                resultCache.put(extracted, taxForm, dataVersion, rankedMatches);
             }
             
-            // Step 3: Enhance with email domain evidence
-            if (extracted.getEmailDomain() != null) {
-                logger.debug("Enhancing matches with email domain: {}", extracted.getEmailDomain());
-                
-                for (MatchResult match : allMatches) {
-                    emailDomainMatcher.enhance(match, extracted.getEmailDomain());
+        } catch (Exception e) {
+            logger.error("Error during matching process", e);
+        }
+        
+        // Return top 5 matches
+        return rankedMatches.stream()
+            .limit(MAX_RESULTS)
+            .collect(Collectors.toList());
+    }
+    
+    /**
+     * Run the strategies one cost tier at a time, cheapest first. The strategies of a tier start
+     * together, once the cheaper tiers are merged, and only if they are still needed given those
+     * matches; their results are then merged in order. The MEDIUM tier starts speculatively
+     * alongside the LOW tier instead, so its lookups overlap the identifier lookups; it is
+     * cancelled if the LOW results settle the match or make it unnecessary. Once a strategy
+     * settles the match, no more expensive strategy starts and those still running are cancelled.
+     */
+    void runStrategies(MatchContext context, List<MatchResult> allMatches) {
+        List<MatchingStrategy> current = strategies;
+        List<CompletableFuture<List<MatchResult>>> started = new ArrayList<>(current.size());
+        Set<Long> processedEntityIds = new HashSet<>();
+        boolean settled = false;
+        int tierStart = 0;
+        while (tierStart < current.size()) {
+            MatchingStrategy.Cost cost = current.get(tierStart).getCost();
+            int tierEnd = tierEnd(current, tierStart);
+            int startEnd = tierEnd;
+            if (cost == MatchingStrategy.Cost.LOW && tierEnd < current.size() &&
+                current.get(tierEnd).getCost() == MatchingStrategy.Cost.MEDIUM) {
+                startEnd = tierEnd(current, tierEnd);
+            }
+            
+            // Strategies started speculatively with the previous tier are not started again
+            for (int i = started.size(); i < startEnd; i++) {
+                started.add(settled ? null : start(current.get(i), context, allMatches));
+            }
+            
+            for (int i = tierStart; i < tierEnd; i++) {
+                MatchingStrategy strategy = current.get(i);
+                CompletableFuture<List<MatchResult>> future = started.get(i);
+                strategy.enrich(context, allMatches);
+                if (future == null) {
+                    continue;
+                }
+                if (settled || !strategy.isNeeded(allMatches)) {
+                    future.cancel(false);
+                    continue;
                 }
                 
-                // Also try email-based matching if few results
-                if (allMatches.size() < 3) {
-                    List<LoanIQEntity> emailCandidates = repository.findByEmailDomain(
-                        extracted.getEmailDomain()
-                    );
-                    
-                    for (LoanIQEntity candidate : emailCandidates) {
-                        if (!processedEntityIds.contains(candidate.getEntityId())) {
-                            MatchResult emailMatch = new MatchResult();
-                            emailMatch.setMatchedEntity(candidate);
-                            emailMatch.setScore(60);
-                            emailMatch.setMatchStrategy("EMAIL_DOMAIN");
-                            emailMatch.addEvidence("Email domain match: " + extracted.getEmailDomain());
-                            allMatches.add(emailMatch);
-                            processedEntityIds.add(candidate.getEntityId());
-                        }
+                List<MatchResult> results = await(strategy, future, context);
+                for (MatchResult match : results) {
+                    if (processedEntityIds.add(match.getMatchedEntity().getEntityId())) {
+                        match.setMatchStrategy(strategy.getName());
+                        allMatches.add(match);
                     }
                 }
-            }
-            
-            // Step 4: Cross-validate with tax form if available
-            if (taxForm != null) {
-                logger.debug("Cross-validating with tax form data");
-                for (MatchResult match : allMatches) {
-                    crossSourceValidator.validate(match, extracted, taxForm);
+                if (strategy.isConclusive(results)) {
+                    logger.debug("{} results are conclusive; skipping more expensive strategies", strategy.getName());
+                    settled = true;
                 }
             }
             
-            // Step 5: Detect discrepancies for each match
-            for (MatchResult match : allMatches) {
-                List<Discrepancy> discrepancies = discrepancyDetector.detect(
-                    extracted, taxForm, match.getMatchedEntity()
-                );
-                match.getDiscrepancies().addAll(discrepancies);
-                
-                // Check for duplicates
-                List<LoanIQEntity> duplicates = duplicateDetector.findPotentialDuplicates(
-                    match.getMatchedEntity()
-                );
-                match.getPotentialDuplicates().addAll(duplicates);
-                
-                if (!duplicates.isEmpty()) {
-                    logger.warn("Found {} potential duplicates for entity {}",
-                        duplicates.size(), match.getMatchedEntity().getEntityId());
+            // Drop speculative starts the merged results settled or made unnecessary
+            for (int i = tierEnd; i < started.size(); i++) {
+                CompletableFuture<List<MatchResult>> future = started.get(i);
+                if (future != null && (settled || !current.get(i).isNeeded(allMatches))) {
+                    future.cancel(false);
+                    started.set(i, null);
                 }
             }
+            tierStart = tierEnd;
+        }
+    }
+    
+    private static int tierEnd(List<MatchingStrategy> strategies, int tierStart) {
+        MatchingStrategy.Cost cost = strategies.get(tierStart).getCost();
+        int tierEnd = tierStart;
+        while (tierEnd < strategies.size() && strategies.get(tierEnd).getCost() == cost) {
+            tierEnd++;
+        }
+        return tierEnd;
+    }
+    
+    /**
+     * Start a strategy if its results are still wanted and there is time left for them
+     *
+     * @return the running strategy, or null if it was not started
+     */
+    private CompletableFuture<List<MatchResult>> start(MatchingStrategy strategy, MatchContext context,
+                                                       List<MatchResult> matches) {
+        if (!strategy.isNeeded(matches)) {
+            logger.debug("{} strategy not needed for {} matches", strategy.getName(), matches.size());
+            return null;
+        }
+        if (context.isExpired()) {
+            context.markPartial();
+            logger.warn("{} strategy skipped; the time budget has run out", strategy.getName());
+            return null;
+        }
+        return strategy.start(context);
+    }
+    
+    /**
+     * Wait for a strategy's results for at most the rest of the time budget.
+     * A strategy that fails or runs out of time contributes nothing.
+     */
+    private List<MatchResult> await(MatchingStrategy strategy, CompletableFuture<List<MatchResult>> future,
+                                    MatchContext context) {
+        try {
+            return context.hasDeadline() ?
+                future.get(context.getRemainingNanos(), TimeUnit.NANOSECONDS) : future.get();
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            context.markPartial();
+            logger.warn("{} strategy did not finish within the time budget; continuing without it",
+                strategy.getName());
+        } catch (ExecutionException e) {
+            logger.error("{} strategy failed", strategy.getName(), e.getCause());
+            context.markPartial();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            context.markPartial();
+            Thread.currentThread().interrupt();
+        }
+        return List.of();
+    }
+    
+    /**
+     * Enrich and score matches in order of the best final score each can still reach, keeping
+     * the best ones in a bounded heap. Discrepancies and duplicates only lower a score, so
+     * enrichment stops once no remaining match can displace the current top results.
+     * Ties keep the earlier match, as a stable sort of all matches would.
+     */
+    List<MatchResult> rankTopMatches(MatchContext context, List<MatchResult> matches) {
+        ExtractedEntity extracted = context.getExtracted();
+        int count = matches.size();
+        double[] bounds = new double[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            bounds[i] = confidenceScorer.calculateUpperBound(matches.get(i), extracted);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(bounds[b], bounds[a]));
+        
+        // Head is the weakest of the current top matches
+        Comparator<Integer> weakestFirst = Comparator
+            .<Integer>comparingDouble(i -> matches.get(i).getScore())
+            .thenComparing(Comparator.reverseOrder());
+        PriorityQueue<Integer> top = new PriorityQueue<>(MAX_RESULTS + 1, weakestFirst);
+        
+        int next = 0;
+        while (next < count) {
+            // Enrich the next few matches that could still make the top results in one batch
+            List<Integer> batch = new ArrayList<>(MAX_RESULTS);
+            while (next < count && batch.size() < MAX_RESULTS && canEnterTop(top, bounds[order[next]], matches)) {
+                batch.add(order[next++]);
+            }
+            if (batch.isEmpty()) {
+                break;
+            }
             
-            // Step 6: Calculate final confidence scores
-            for (MatchResult match : allMatches) {
-                confidenceScorer.calculateFinalScore(match, extracted);
+            enrich(context, batch.stream().map(matches::get).collect(Collectors.toList()));
+            for (Integer index : batch) {
+                top.add(index);
+                if (top.size() > MAX_RESULTS) {
+                    top.poll();
+                }
             }
+        }
+        logger.debug("Enriched {} of {} matches", next, count);
+        
+        List<Integer> ranked = new ArrayList<>(top);
+        ranked.sort(weakestFirst.reversed());
+        return ranked.stream().map(matches::get).collect(Collectors.toList());
+    }
+    
+    private boolean canEnterTop(PriorityQueue<Integer> top, double bound, List<MatchResult> matches) {
+        return top.size() < MAX_RESULTS || bound >= matches.get(top.peek()).getScore();
+    }
+    
+    /**
+     * Attach discrepancies and potential duplicates to the matches and calculate their final scores
+     */
+    void enrich(MatchContext context, List<MatchResult> matches) {
+        // Duplicate identifier probes for the batch are resolved together
+        Map<Long, List<LoanIQEntity>> duplicatesById = duplicateDetector.findPotentialDuplicates(
+            matches.stream().map(MatchResult::getMatchedEntity).collect(Collectors.toList())
+        );
+        
+        for (MatchResult match : matches) {
+            List<Discrepancy> discrepancies = discrepancyDetector.detect(
+                context, match.getMatchedEntity()
+            );
+            match.getDiscrepancies().addAll(discrepancies);
             
-            // Sort by score descending
-            allMatches.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+            // Check for duplicates
+            List<LoanIQEntity> duplicates = duplicatesById.getOrDefault(
+                match.getMatchedEntity().getEntityId(), List.of()
+            );
+            match.getPotentialDuplicates().addAll(duplicates);
             
-            logger.info("Found {} potential matches, returning top 5", allMatches.size());
+            if (!duplicates.isEmpty()) {
+                logger.warn("Found {} potential duplicates for entity {}",
+                    duplicates.size(), match.getMatchedEntity().getEntityId());
+            }
             
-        } catch (Exception e) {
-            logger.error("Error during matching process", e);
+            confidenceScorer.calculateFinalScore(match, context.getExtracted());
         }
-        
-        // Return top 5 matches
-        return allMatches.stream()
-            .limit(5)
-            .collect(Collectors.toList());
+    }
+    
+    /**
+     * Duplicate clusters over all LoanIQ entities: the maintained ones if enabled,
+     * otherwise computed now from the loaded snapshot
+     */
+    public DuplicateClusters getDuplicateClusters() {
+        DuplicateClusters clusters = repository.getDuplicateClusters();
+        return clusters != null ? clusters : repository.computeDuplicateClusters();
     }
     
     /**
      * Close resources
      */
     public void close() {
+        computeExecutor.shutdown();
         repository.close();
     }
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.loantrading.matching.engine;
+
+import com.loantrading.matching.entity.MatchResult;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One way of finding candidate matches for an extracted entity.
+ * <p>
+ * {@link MatchingEngine} runs the strategies of a request one cost tier at a time: the strategies
+ * of a tier start together once the cheaper tiers are merged, and their results are merged in
+ * order; an entity found by an earlier strategy keeps that strategy's match. MEDIUM strategies
+ * start speculatively alongside the LOW ones and are cancelled if the LOW results make them
+ * unnecessary. A strategy still running when the time budget ends is left out of the result.
+ */
+public interface MatchingStrategy {
+
+    /**
+     * Relative cost of a strategy, which also sets its start and merge order
+     */
+    enum Cost {
+        /** Indexed key lookups */
+        LOW,
+        /** Bounded scans and scoring of a limited candidate list */
+        MEDIUM,
+        /** Unbounded scans */
+        HIGH
+    }
+
+    /**
+     * Recorded as the match strategy of the results
+     */
+    String getName();
+
+    Cost getCost();
+
+    /**
+     * Start looking for candidates. Called on the requesting thread, so work beyond issuing
+     * lookups belongs on another executor. The returned future may be cancelled when the time
+     * budget runs out or the results of a cheaper strategy settle the match or make it unnecessary.
+     */
+    CompletableFuture<List<MatchResult>> start(MatchContext context);
+
+    /**
+     * Whether the results are still wanted, given the matches merged from cheaper strategies.
+     * Checked before the strategy starts, possibly before the cheaper tier is merged, and again
+     * before its results are merged, so once it returns false for some matches it must stay
+     * false as more matches are added.
+     */
+    default boolean isNeeded(List<MatchResult> matches) {
+        return true;
+    }
+
+    /**
+     * Whether the results settle the match, so that more expensive strategies are skipped
+     */
+    default boolean isConclusive(List<MatchResult> results) {
+        return false;
+    }
+
+    /**
+     * Add this strategy's evidence to the matches merged from cheaper strategies.
+     * Called before the strategy's own results are merged, even when they are not needed.
+     */
+    default void enrich(MatchContext context, List<MatchResult> matches) {
+    }
+}
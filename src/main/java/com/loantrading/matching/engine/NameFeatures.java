@@ -0,0 +1,268 @@
+package com.loantrading.matching.engine;
+
+import java.util.Arrays;
+
+/**
+ * Name features of one entity, derived once from its raw names so that scoring a
+ * candidate compares precomputed values instead of re-normalizing and re-splitting them
+ */
+public final class NameFeatures {
+    // Histogram slots: a-z, 0-9, then everything else
+    private static final int HISTOGRAM_SIZE = 37;
+
+    private final String normalizedName;
+    private final byte[] histogram;
+    private final int[] tokens;
+    // Kept only while the tokens hold ids of words the dictionary did not know at lookup
+    private final TokenDictionary dictionary;
+    private final String[] words;
+    // Tokens looked up again for the dictionary size they were resolved at
+    private volatile ResolvedTokens resolved;
+    private final String dbaLegalName;
+    private final String dbaTradeName;
+    private final String normalizedDba;
+    private final String normalizedFundManager;
+    private final int fundManagerWordCount;
+    // Lowercase letters of a single-word fund manager, and initials of a longer one
+    private final char[] fundManagerWord;
+    private final char[] fundManagerInitials;
+
+    /**
+     * Features of a name, interning its words when {@code intern} is set and only looking
+     * them up otherwise
+     */
+    NameFeatures(NameNormalizer normalizer, TokenDictionary dictionary, boolean intern, String name,
+                 String fundManager, String dba) {
+        this.normalizedName = normalizer.normalize(name);
+        this.histogram = histogram(normalizedName);
+        String[] words = words(normalizedName);
+        this.tokens = intern ? dictionary.intern(words) : dictionary.lookup(words);
+        boolean unknownWords = tokens.length > 0 && tokens[0] < 0;
+        this.dictionary = unknownWords ? dictionary : null;
+        this.words = unknownWords ? words : null;
+        this.resolved = unknownWords ? new ResolvedTokens(dictionary.size(), tokens) : null;
+
+        // LoanIQ stores trade names as "Legal Name DBA Trade Name"
+        String[] dbaParts = name == null ? new String[0] : name.split("\\s+(?:DBA|d/b/a)\\s+", 2);
+        this.dbaLegalName = dbaParts.length == 2 ? normalizer.normalize(dbaParts[0]) : null;
+        this.dbaTradeName = dbaParts.length == 2 ? normalizer.normalize(dbaParts[1]) : null;
+        this.normalizedDba = dba == null ? null : normalizer.normalize(dba);
+
+        this.normalizedFundManager = normalizer.normalizeFundManager(fundManager);
+        char[] initials = new char[normalizedFundManager.length()];
+        int wordCount = 0;
+        for (int i = 0; i < normalizedFundManager.length(); i++) {
+            char c = normalizedFundManager.charAt(i);
+            boolean wordStart = i == 0 || Character.isWhitespace(normalizedFundManager.charAt(i - 1));
+            if (wordStart && !Character.isWhitespace(c)) {
+                initials[wordCount++] = Character.toLowerCase(c);
+            }
+        }
+        this.fundManagerWordCount = wordCount;
+        this.fundManagerWord = wordCount == 1 ? normalizedFundManager.trim().toLowerCase().toCharArray() : null;
+        this.fundManagerInitials = wordCount > 1 ? Arrays.copyOf(initials, wordCount) : null;
+    }
+
+    public String getNormalizedName() {
+        return normalizedName;
+    }
+
+    /**
+     * Dictionary ids of the words of the normalized name in sorted order, for order-insensitive
+     * comparison. Words the dictionary did not know are negative.
+     */
+    public int[] getTokens() {
+        return tokens.clone();
+    }
+
+    /**
+     * Whether the name carries a "DBA" trade name
+     */
+    public boolean hasDbaParts() {
+        return dbaTradeName != null;
+    }
+
+    public String getDbaLegalName() {
+        return dbaLegalName;
+    }
+
+    public String getDbaTradeName() {
+        return dbaTradeName;
+    }
+
+    /**
+     * Normalized separately extracted DBA, or null
+     */
+    public String getNormalizedDba() {
+        return normalizedDba;
+    }
+
+    public String getNormalizedFundManager() {
+        return normalizedFundManager;
+    }
+
+    /**
+     * Upper bound on the Jaro-Winkler similarity of the two normalized names.
+     * A character can only be matched by the same character, so the shared character
+     * counts bound the number of matches without running the comparison.
+     */
+    public double jaroWinklerUpperBound(NameFeatures other) {
+        if (histogram == null || other.histogram == null || normalizedName.equals(other.normalizedName)) {
+            return 1d;
+        }
+
+        int matches = 0;
+        for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+            matches += Math.min(histogram[i] & 0xFF, other.histogram[i] & 0xFF);
+        }
+
+        int prefix = 0;
+        int maxPrefix = Math.min(4, Math.min(normalizedName.length(), other.normalizedName.length()));
+        while (prefix < maxPrefix && normalizedName.charAt(prefix) == other.normalizedName.charAt(prefix)) {
+            prefix++;
+        }
+
+        return StringSimilarity.upperBound(matches, normalizedName.length(), other.normalizedName.length(), prefix);
+    }
+
+    /**
+     * Whether the normalized name may contain the other's as a substring: it must have at
+     * least as many of each character
+     */
+    public boolean mayContain(NameFeatures other) {
+        if (histogram == null || other.histogram == null) {
+            return true;
+        }
+        for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+            if ((histogram[i] & 0xFF) < (other.histogram[i] & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether both names have the same words in any order
+     */
+    public boolean hasSameWords(NameFeatures other) {
+        return tokens.length == other.tokens.length && sharedWordCount(other) == tokens.length;
+    }
+
+    /**
+     * Number of words the names share, a word repeated in both counted as often as both repeat it
+     */
+    public int sharedWordCount(NameFeatures other) {
+        return sharedTokenCount(currentTokens(), other.currentTokens());
+    }
+
+    /**
+     * Jaccard similarity of the words of the two names, counting repeated words
+     */
+    public double wordJaccard(NameFeatures other) {
+        int shared = sharedWordCount(other);
+        int union = tokens.length + other.tokens.length - shared;
+        return union == 0 ? 1d : (double) shared / union;
+    }
+
+    /**
+     * Tokens with the words unknown at lookup resolved against the current dictionary.
+     * A word unknown at lookup may have been interned since, by a LoanIQ name; they are only
+     * looked up again once the dictionary has grown.
+     */
+    private int[] currentTokens() {
+        if (words == null) {
+            return tokens;
+        }
+        ResolvedTokens current = resolved;
+        int size = dictionary.size();
+        if (current.dictionarySize != size) {
+            current = new ResolvedTokens(size, dictionary.lookup(words));
+            resolved = current;
+        }
+        return current.tokens;
+    }
+
+    /**
+     * Size of the multiset intersection of two sorted token arrays, in one merge walk.
+     * Negative ids stand for words unknown to the dictionary and never match.
+     */
+    static int sharedTokenCount(int[] a, int[] b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length && a[i] < 0) {
+            i++;
+        }
+        while (j < b.length && b[j] < 0) {
+            j++;
+        }
+        int shared = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                shared++;
+                i++;
+                j++;
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Whether one fund manager is a single word spelling the initials of the other
+     */
+    public boolean isFundManagerAcronymOf(NameFeatures other) {
+        return fundManagerWord != null && other.fundManagerInitials != null &&
+               Arrays.equals(fundManagerWord, other.fundManagerInitials);
+    }
+
+    /**
+     * Words of a normalized name
+     */
+    static String[] words(String normalizedName) {
+        return normalizedName.split("\\s+");
+    }
+
+    /**
+     * Character counts of a name, or null if one of them does not fit in a byte
+     */
+    private static byte[] histogram(String name) {
+        int[] counts = new int[HISTOGRAM_SIZE];
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            int slot;
+            if (c >= 'a' && c <= 'z') {
+                slot = c - 'a';
+            } else if (c >= '0' && c <= '9') {
+                slot = 26 + c - '0';
+            } else {
+                slot = HISTOGRAM_SIZE - 1;
+            }
+            counts[slot]++;
+        }
+
+        byte[] histogram = new byte[HISTOGRAM_SIZE];
+        for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+            if (counts[i] > 255) {
+                return null;
+            }
+            histogram[i] = (byte) counts[i];
+        }
+        return histogram;
+    }
+
+    /**
+     * Tokens of the name as resolved when the dictionary had the given size
+     */
+    private static final class ResolvedTokens {
+        final int dictionarySize;
+        final int[] tokens;
+
+        ResolvedTokens(int dictionarySize, int[] tokens) {
+            this.dictionarySize = dictionarySize;
+            this.tokens = tokens;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.loantrading.matching.engine;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.loantrading.matching.extraction.CharacterNormalizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,10 +13,18 @@ import java.util.regex.Pattern;
 /**
  * Normalizes entity names for comparison by applying general character normalization
  * and then specific business rules for names.
+ * Names are tokenized once and abbreviations, corporate forms and articles are handled per
+ * token with hash lookups; results are memoized since the same names recur across candidates.
  */
 public class NameNormalizer {
     private static final Logger logger = LoggerFactory.getLogger(NameNormalizer.class);
+    
+    // Distinct names kept per memo
+    private static final int MEMO_SIZE = 10_000;
+    
     private final CharacterNormalizer characterNormalizer;
+    private final Cache<String, String> normalized;
+    private final Cache<String, String> normalizedFundManagers;
     
     // Comprehensive corporate forms
     private static final Set<String> CORPORATE_FORMS = new HashSet<>(Arrays.asList(
@@ -34,13 +44,19 @@ public class NameNormalizer {
         "partners", "partnership", "investments", "capital", "ventures",
         "equity", "credit", "asset", "management", "advisors", "advisers"
     ));
-    private static final Pattern CORPORATE_FORMS_PATTERN;
+    private static final FormTrie CORPORATE_FORMS_TRIE = new FormTrie();
     private static final Map<String, String> ABBREVIATIONS = new HashMap<>();
     
+    // Articles and connectives dropped after corporate forms
+    private static final Set<String> ARTICLES = Set.of(
+        "the", "a", "an", "and", "of", "in", "for", "by", "with", "from"
+    );
+    
     static {
-        // Build the corporate forms regex pattern
-        String formsRegex = String.join("|", CORPORATE_FORMS);
-        CORPORATE_FORMS_PATTERN = Pattern.compile("\\b(" + formsRegex + ")\\b", Pattern.CASE_INSENSITIVE);
+        // Multi-word forms ("gmbh co kg") are matched token by token
+        for (String form : CORPORATE_FORMS) {
+            CORPORATE_FORMS_TRIE.add(form.split(" "));
+        }
 
         // Common abbreviations
         ABBREVIATIONS.put("intl", "international");
@@ -100,6 +116,8 @@ public class NameNormalizer {
 
     public NameNormalizer() {
         this.characterNormalizer = new CharacterNormalizer();
+        this.normalized = Caffeine.newBuilder().maximumSize(MEMO_SIZE).build();
+        this.normalizedFundManagers = Caffeine.newBuilder().maximumSize(MEMO_SIZE).build();
     }
     
     /**
@@ -109,31 +127,99 @@ public class NameNormalizer {
         if (name == null) {
             return "";
         }
-        
+        return normalized.get(name, this::normalizeName);
+    }
+    
+    private String normalizeName(String name) {
         // 1. Perform general character-level normalization (handles diacritics, smart quotes, etc.)
-        String normalized = characterNormalizer.normalizeUnicodeAndPunctuation(name);
-
         // 2. Convert to lowercase for case-insensitive matching.
-        normalized = normalized.toLowerCase();
+        String lower = characterNormalizer.normalizeUnicodeAndPunctuation(name).toLowerCase();
         
-        // 3. Filter to the character set required for name matching (removes quotes, etc.)
-        normalized = normalized.replaceAll("[^a-z0-9\\s-']", " ");
-        
-        // 4. Expand common abbreviations specific to names
-        for (Map.Entry<String, String> abbr : ABBREVIATIONS.entrySet()) {
-            normalized = normalized.replaceAll("\\b" + abbr.getKey() + "\\b", abbr.getValue());
+        // 3. Split into words (runs of a-z0-9) and the separators between them. Other characters
+        // outside the name character set (quotes, punctuation) become spaces; '-' and '\''
+        // separate words but are kept.
+        List<String> words = new ArrayList<>();
+        List<String> separators = new ArrayList<>();
+        StringBuilder separator = new StringBuilder();
+        int i = 0;
+        while (i < lower.length()) {
+            char c = lower.charAt(i);
+            if (isWordChar(c)) {
+                int start = i;
+                while (i < lower.length() && isWordChar(lower.charAt(i))) {
+                    i++;
+                }
+                separators.add(separator.toString());
+                separator.setLength(0);
+                
+                // 4. Expand common abbreviations specific to names
+                String word = lower.substring(start, i);
+                words.add(ABBREVIATIONS.getOrDefault(word, word));
+            } else {
+                separator.append(c == '-' || c == '\'' ? c : ' ');
+                i++;
+            }
         }
+        separators.add(separator.toString());
         
-        // 5. Remove corporate forms
-        normalized = CORPORATE_FORMS_PATTERN.matcher(normalized).replaceAll("");
+        // 5. Remove corporate forms, the longest form starting at each word; the words
+        // of a multi-word form must be separated by a single space
+        boolean[] removed = new boolean[words.size()];
+        for (int w = 0; w < words.size(); w++) {
+            int length = CORPORATE_FORMS_TRIE.match(words, separators, w);
+            for (int k = 0; k < length; k++) {
+                removed[w + k] = true;
+                if (k > 0) {
+                    separators.set(w + k, "");
+                }
+            }
+            if (length > 0) {
+                w += length - 1;
+            }
+        }
         
         // 6. Remove articles
-        normalized = normalized.replaceAll("\\b(the|a|an|and|of|in|for|by|with|from)\\b", "");
+        for (int w = 0; w < words.size(); w++) {
+            if (ARTICLES.contains(words.get(w))) {
+                removed[w] = true;
+            }
+        }
         
-        // 7. Final whitespace cleanup
-        normalized = normalized.replaceAll("\\s+", " ").trim();
+        // 7. Reassemble with whitespace runs collapsed and trimmed
+        StringBuilder result = new StringBuilder(lower.length());
+        boolean pendingSpace = false;
+        for (int w = 0; w <= words.size(); w++) {
+            String sep = separators.get(w);
+            for (int k = 0; k < sep.length(); k++) {
+                char c = sep.charAt(k);
+                if (c == ' ') {
+                    pendingSpace = result.length() > 0;
+                } else {
+                    pendingSpace = appendPendingSpace(result, pendingSpace);
+                    result.append(c);
+                }
+            }
+            if (w < words.size() && !removed[w]) {
+                pendingSpace = appendPendingSpace(result, pendingSpace);
+                result.append(words.get(w));
+            }
+        }
         
-        return normalized;
+        return result.toString();
+    }
+    
+    private static boolean appendPendingSpace(StringBuilder result, boolean pendingSpace) {
+        if (pendingSpace) {
+            result.append(' ');
+        }
+        return false;
+    }
+    
+    /**
+     * Characters a regex \\b treats as word characters, as far as they survive step 3
+     */
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
     }
     
     /**
@@ -143,7 +229,10 @@ public class NameNormalizer {
         if (name == null) {
             return "";
         }
-        
+        return normalizedFundManagers.get(name, this::resolveFundManager);
+    }
+    
+    private String resolveFundManager(String name) {
         // First apply general normalization
         String normalized = normalize(name);
         
@@ -190,6 +279,43 @@ public class NameNormalizer {
         return new DBAComponents(fullName, null);
     }
     
+    /**
+     * Corporate forms as token sequences, so multi-word forms are found without a regex
+     */
+    private static class FormTrie {
+        private final Map<String, FormTrie> children = new HashMap<>();
+        private boolean terminal;
+        
+        void add(String[] tokens) {
+            FormTrie node = this;
+            for (String token : tokens) {
+                node = node.children.computeIfAbsent(token, t -> new FormTrie());
+            }
+            node.terminal = true;
+        }
+        
+        /**
+         * Number of words of the longest form starting at the given word, or 0
+         */
+        int match(List<String> words, List<String> separators, int start) {
+            FormTrie node = this;
+            int longest = 0;
+            for (int w = start; w < words.size(); w++) {
+                if (w > start && !" ".equals(separators.get(w))) {
+                    break;
+                }
+                node = node.children.get(words.get(w));
+                if (node == null) {
+                    break;
+                }
+                if (node.terminal) {
+                    longest = w - start + 1;
+                }
+            }
+            return longest;
+        }
+    }
+    
     /**
      * Container for DBA components
      */
@@ -0,0 +1,304 @@
+package com.loantrading.matching.engine;
+
+import java.util.Arrays;
+
+/**
+ * String similarity kernels for name matching.
+ * <p>
+ * Jaro-Winkler gives the same results as commons-text {@code JaroWinklerSimilarity}, and can
+ * give up early once a score threshold is out of reach. Levenshtein gives the same results as
+ * {@code LevenshteinDistance}, using Myers' bit-parallel algorithm when the shorter string has
+ * at most 64 characters. Working arrays are per-thread and reused, so steady-state calls do
+ * not allocate.
+ */
+public final class StringSimilarity {
+    private static final double SCALING_FACTOR = 0.1;
+    private static final double BOOST_THRESHOLD = 0.7;
+    private static final int MAX_PREFIX = 4;
+
+    // Absorbs rounding differences between the bound and the exact score
+    private static final double BOUND_EPSILON = 1e-9;
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private StringSimilarity() {
+    }
+
+    /**
+     * Jaro-Winkler similarity, from 0 (nothing in common) to 1 (equal)
+     */
+    public static double jaroWinkler(CharSequence first, CharSequence second) {
+        return jaroWinkler(first, second, 0);
+    }
+
+    /**
+     * Jaro-Winkler similarity, or 0 as soon as it is certain to be below {@code minScore}.
+     * Scores at or above the threshold are exact.
+     */
+    public static double jaroWinkler(CharSequence first, CharSequence second, double minScore) {
+        if (first == null || second == null) {
+            throw new IllegalArgumentException("Strings must not be null");
+        }
+        if (contentEquals(first, second)) {
+            return 1d;
+        }
+
+        int length1 = first.length();
+        int length2 = second.length();
+        int minLength = Math.min(length1, length2);
+        int maxPrefix = Math.min(MAX_PREFIX, minLength);
+        if (upperBound(minLength, length1, length2, maxPrefix) + BOUND_EPSILON < minScore) {
+            return 0d;
+        }
+
+        Buffers buffers = BUFFERS.get();
+        char[] min = buffers.chars(0, length1 > length2 ? second : first);
+        char[] max = buffers.chars(1, length1 > length2 ? first : second);
+        int maxLength = Math.max(length1, length2);
+        boolean[] minFlags = buffers.flags(0, minLength);
+        boolean[] maxFlags = buffers.flags(1, maxLength);
+
+        int range = Math.max(maxLength / 2 - 1, 0);
+        int matches = 0;
+        for (int mi = 0; mi < minLength; mi++) {
+            char c = min[mi];
+            boolean matched = false;
+            for (int xi = Math.max(mi - range, 0), xn = Math.min(mi + range + 1, maxLength); xi < xn; xi++) {
+                if (!maxFlags[xi] && c == max[xi]) {
+                    minFlags[mi] = true;
+                    maxFlags[xi] = true;
+                    matches++;
+                    matched = true;
+                    break;
+                }
+            }
+            // A miss lowers the best reachable score; stop once the threshold is out of reach
+            if (!matched && minScore > 0 &&
+                upperBound(matches + minLength - mi - 1, length1, length2, maxPrefix) + BOUND_EPSILON < minScore) {
+                return 0d;
+            }
+        }
+        if (matches == 0) {
+            return 0d;
+        }
+
+        // Matched characters of both strings in order; each differing pair is a half transposition
+        int halfTranspositions = 0;
+        for (int mi = 0, xi = 0; mi < minLength; mi++) {
+            if (minFlags[mi]) {
+                while (!maxFlags[xi]) {
+                    xi++;
+                }
+                if (min[mi] != max[xi]) {
+                    halfTranspositions++;
+                }
+                xi++;
+            }
+        }
+
+        int prefix = 0;
+        for (int i = 0; i < maxPrefix; i++) {
+            if (first.charAt(i) != second.charAt(i)) {
+                break;
+            }
+            prefix++;
+        }
+
+        double m = matches;
+        double jaro = (m / length1 + m / length2 + (m - (double) halfTranspositions / 2) / m) / 3;
+        return jaro < BOOST_THRESHOLD ? jaro : jaro + SCALING_FACTOR * prefix * (1d - jaro);
+    }
+
+    /**
+     * Levenshtein edit distance
+     */
+    public static int levenshtein(CharSequence first, CharSequence second) {
+        return levenshtein(first, second, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Levenshtein edit distance, or -1 as soon as it is certain to exceed {@code maxDistance}
+     */
+    public static int levenshtein(CharSequence first, CharSequence second, int maxDistance) {
+        if (first == null || second == null) {
+            throw new IllegalArgumentException("Strings must not be null");
+        }
+
+        CharSequence pattern = first.length() <= second.length() ? first : second;
+        CharSequence text = pattern == first ? second : first;
+        if (text.length() - pattern.length() > maxDistance) {
+            return -1;
+        }
+        if (pattern.length() == 0) {
+            return text.length();
+        }
+
+        int distance = pattern.length() <= Long.SIZE ?
+            myers(pattern, text, maxDistance) : dynamicProgramming(pattern, text, maxDistance);
+        return distance > maxDistance ? -1 : distance;
+    }
+
+    /**
+     * Myers/Hyyrö bit-vector edit distance: one column of the DP matrix per text character,
+     * held as vertical delta bit vectors of the pattern's length
+     */
+    private static int myers(CharSequence pattern, CharSequence text, int maxDistance) {
+        Buffers buffers = BUFFERS.get();
+        long[] peq = buffers.peq;
+        int m = pattern.length();
+        int n = text.length();
+        for (int i = 0; i < m; i++) {
+            char c = pattern.charAt(i);
+            if (c < peq.length) {
+                peq[c] |= 1L << i;
+            }
+        }
+
+        long last = 1L << (m - 1);
+        long pv = -1L;
+        long mv = 0L;
+        int score = m;
+        try {
+            for (int j = 0; j < n; j++) {
+                char c = text.charAt(j);
+                long eq = c < peq.length ? peq[c] : equalityMask(pattern, c);
+                long xv = eq | mv;
+                long xh = (((eq & pv) + pv) ^ pv) | eq;
+                long ph = mv | ~(xh | pv);
+                long mh = pv & xh;
+                if ((ph & last) != 0) {
+                    score++;
+                } else if ((mh & last) != 0) {
+                    score--;
+                }
+                // Each remaining text character can lower the final distance by at most one
+                if (score - (n - j - 1) > maxDistance) {
+                    return score - (n - j - 1);
+                }
+                ph = (ph << 1) | 1L;
+                mh <<= 1;
+                pv = mh | ~(xv | ph);
+                mv = ph & xv;
+            }
+            return score;
+        } finally {
+            for (int i = 0; i < m; i++) {
+                char c = pattern.charAt(i);
+                if (c < peq.length) {
+                    peq[c] = 0L;
+                }
+            }
+        }
+    }
+
+    /**
+     * Positions of a character outside the lookup table in the pattern
+     */
+    private static long equalityMask(CharSequence pattern, char c) {
+        long mask = 0L;
+        for (int i = 0; i < pattern.length(); i++) {
+            if (pattern.charAt(i) == c) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Two-row edit distance for patterns too long for one bit vector
+     */
+    private static int dynamicProgramming(CharSequence pattern, CharSequence text, int maxDistance) {
+        Buffers buffers = BUFFERS.get();
+        int m = pattern.length();
+        int[] previous = buffers.row(0, m + 1);
+        int[] current = buffers.row(1, m + 1);
+        for (int i = 0; i <= m; i++) {
+            previous[i] = i;
+        }
+
+        int n = text.length();
+        for (int j = 1; j <= n; j++) {
+            char c = text.charAt(j - 1);
+            current[0] = j;
+            int rowMin = current[0];
+            for (int i = 1; i <= m; i++) {
+                int cost = pattern.charAt(i - 1) == c ? 0 : 1;
+                current[i] = Math.min(Math.min(current[i - 1] + 1, previous[i] + 1), previous[i - 1] + cost);
+                rowMin = Math.min(rowMin, current[i]);
+            }
+            if (rowMin > maxDistance) {
+                return rowMin;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[m];
+    }
+
+    /**
+     * Best Jaro-Winkler score reachable with the given number of matches:
+     * no transpositions and the longest possible common prefix
+     */
+    static double upperBound(int matches, int length1, int length2, int maxPrefix) {
+        if (matches <= 0) {
+            return 0d;
+        }
+        double m = matches;
+        double jaro = (m / length1 + m / length2 + 1d) / 3;
+        return jaro < BOOST_THRESHOLD ? jaro : jaro + SCALING_FACTOR * maxPrefix * (1d - jaro);
+    }
+
+    private static boolean contentEquals(CharSequence first, CharSequence second) {
+        if (first instanceof String && second instanceof String) {
+            return first.equals(second);
+        }
+        if (first.length() != second.length()) {
+            return false;
+        }
+        for (int i = 0; i < first.length(); i++) {
+            if (first.charAt(i) != second.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Per-thread working arrays, grown on demand and never shrunk
+     */
+    private static final class Buffers {
+        private final char[][] chars = {new char[64], new char[64]};
+        private final boolean[][] flags = {new boolean[64], new boolean[64]};
+        private final int[][] rows = {new int[65], new int[65]};
+        // Bit masks of the pattern positions of each ASCII character; cleared after use
+        private final long[] peq = new long[128];
+
+        char[] chars(int slot, CharSequence value) {
+            if (chars[slot].length < value.length()) {
+                chars[slot] = new char[value.length()];
+            }
+            char[] buffer = chars[slot];
+            for (int i = 0; i < value.length(); i++) {
+                buffer[i] = value.charAt(i);
+            }
+            return buffer;
+        }
+
+        boolean[] flags(int slot, int length) {
+            if (flags[slot].length < length) {
+                flags[slot] = new boolean[length];
+            } else {
+                Arrays.fill(flags[slot], 0, length, false);
+            }
+            return flags[slot];
+        }
+
+        int[] row(int slot, int length) {
+            if (rows[slot].length < length) {
+                rows[slot] = new int[length];
+            }
+            return rows[slot];
+        }
+    }
+}
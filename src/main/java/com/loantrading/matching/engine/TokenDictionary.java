@@ -0,0 +1,57 @@
+package com.loantrading.matching.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dense int ids for the words of normalized names, so a name's words can be held and compared
+ * as a sorted int array instead of a sorted array of strings. Only LoanIQ names are interned, so
+ * the dictionary grows with the LoanIQ vocabulary and not with every word read from a document.
+ * Extracted names are looked up: their words unknown to the dictionary get negative ids that are
+ * only meaningful within the same lookup.
+ */
+public class TokenDictionary {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * Sorted ids of the words, interning words not seen before
+     */
+    public int[] intern(String[] words) {
+        int[] tokens = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            tokens[i] = ids.computeIfAbsent(words[i], word -> nextId.getAndIncrement());
+        }
+        Arrays.sort(tokens);
+        return tokens;
+    }
+
+    /**
+     * Sorted ids of the words without interning any. Each distinct unknown word gets its own
+     * negative id, so it never equals an interned word; ids from separate lookups are unrelated.
+     */
+    public int[] lookup(String[] words) {
+        int[] tokens = new int[words.length];
+        Map<String, Integer> unknown = null;
+        for (int i = 0; i < words.length; i++) {
+            Integer id = ids.get(words[i]);
+            if (id == null) {
+                if (unknown == null) {
+                    unknown = new HashMap<>();
+                }
+                Map<String, Integer> assigned = unknown;
+                id = assigned.computeIfAbsent(words[i], word -> -1 - assigned.size());
+            }
+            tokens[i] = id;
+        }
+        Arrays.sort(tokens);
+        return tokens;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
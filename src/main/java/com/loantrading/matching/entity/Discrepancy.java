@@ -11,6 +11,8 @@ public class Discrepancy {
     private String type;
     private DiscrepancySeverity severity;
     private String description;
+    // Values of a description pattern not yet rendered
+    private Object[] descriptionArgs;
     private Map<String, Object> details;
     private String source;
     private LocalDateTime detectedAt;
@@ -23,6 +25,28 @@ public class Discrepancy {
         this.detectedAt = LocalDateTime.now();
     }
     
+    /**
+     * Discrepancy whose description is formatted from the pattern and values only when read
+     */
+    public Discrepancy(String type, DiscrepancySeverity severity, String descriptionPattern,
+                       Object... descriptionArgs) {
+        this(type, severity, descriptionPattern);
+        this.descriptionArgs = descriptionArgs;
+    }
+    
+    /**
+     * Copy of another discrepancy with its own details map
+     */
+    public Discrepancy(Discrepancy other) {
+        this.type = other.type;
+        this.severity = other.severity;
+        this.description = other.description;
+        this.descriptionArgs = other.descriptionArgs;
+        this.details = new HashMap<>(other.details);
+        this.source = other.source;
+        this.detectedAt = other.detectedAt;
+    }
+    
     public void addDetail(String key, Object value) {
         details.put(key, value);
     }
@@ -45,11 +69,12 @@ public class Discrepancy {
     }
     
     public String getDescription() {
-        return description;
+        return descriptionArgs == null ? description : String.format(description, descriptionArgs);
     }
     
     public void setDescription(String description) {
         this.description = description;
+        this.descriptionArgs = null;
     }
     
     public Map<String, Object> getDetails() {
@@ -78,6 +103,6 @@ public class Discrepancy {
     
     @Override
     public String toString() {
-        return String.format("[%s] %s: %s", severity, type, description);
+        return String.format("[%s] %s: %s", severity, type, getDescription());
     }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.loantrading.matching.entity;
+
+/**
+ * One piece of evidence for a match: its type and the values that go into its text.
+ * Rendering is deferred to {@link #toString}, so evidence for candidates that are
+ * dropped during scoring is never formatted.
+ */
+public final class Evidence {
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final EvidenceType type;
+    private final Object[] args;
+
+    public Evidence(EvidenceType type, Object... args) {
+        this.type = type;
+        this.args = args == null ? NO_ARGS : args;
+    }
+
+    public EvidenceType getType() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return args.length == 0 ? type.getPattern() : String.format(type.getPattern(), args);
+    }
+}
@@ -0,0 +1,62 @@
+package com.loantrading.matching.entity;
+
+/**
+ * Enum representing the kinds of evidence recorded for a match, with the text each renders to
+ */
+public enum EvidenceType {
+    // Identifiers
+    IDENTIFIER_EXACT_MATCH("%s exact match: %s"),
+    ADDITIONAL_IDENTIFIER_MATCH("Additional %s match"),
+    LOCATION_OF_PARENT("Match is a location sub-entity of %s (ID: %d)"),
+    LOCATION("Match is a location sub-entity"),
+    IDENTIFIER_REPAIRED("%s %s repaired from OCR reading %s"),
+
+    // Names
+    DBA_MATCH("DBA match detected"),
+    LEGAL_NAME_EXACT("Legal name exact match after normalization"),
+    LEGAL_NAME_SUBSET("Legal name subset match"),
+    LEGAL_NAME_REORDERED("Legal name match with word reordering"),
+    LEGAL_NAME_FUZZY("Legal name fuzzy match (%.2f)"),
+    LEGAL_NAME_PARTIAL("Legal name partial match (%.2f)"),
+    FUND_MANAGER_ABBREVIATION("Fund manager abbreviation match"),
+    FUND_MANAGER_SUBSET("Fund manager subset match"),
+    FUND_MANAGER_FUZZY("Fund manager fuzzy match (%.2f)"),
+
+    // Email
+    EMAIL_DOMAIN_MATCH("Email domain match: %s"),
+
+    // Tax form
+    EIN_CONSISTENT_FORMS("EIN consistent between ADF and tax form"),
+    TAX_FORM_EIN_USED("EIN from tax form used for validation: %s"),
+    TAX_FORM_EIN_MATCHES_LOANIQ("Tax form EIN matches LoanIQ"),
+    LEGAL_NAME_HIGHLY_CONSISTENT_FORMS("Legal name highly consistent across forms"),
+    LEGAL_NAME_CONSISTENT_FORMS("Legal name consistent across forms"),
+    TAX_FORM_NAME_MATCHES_LOANIQ("Tax form name matches LoanIQ"),
+    COUNTRY_CONSISTENT_FORMS("Country consistent across forms"),
+    TAX_COUNTRY_DIFFERS("Tax country differs from legal country: %s"),
+    TAX_FORM_ADDITIONAL_LEI("Additional LEI from tax form: %s"),
+    TAX_FORM_LEI_MATCHES_LOANIQ("Tax form LEI matches LoanIQ"),
+    TAX_FORM_ADDITIONAL_DEBT_DOMAIN_ID("Additional Debt Domain ID from tax form: %s"),
+    TAX_FORM_DEBT_DOMAIN_ID_MATCHES_LOANIQ("Tax form Debt Domain ID matches LoanIQ"),
+
+    // Scoring
+    GEOGRAPHIC_CONSISTENT("Geographic data consistent"),
+    MULTIPLE_IDENTIFIERS("%d identifiers matched"),
+    DUPLICATES_PENALIZED("Score penalized due to %d potential duplicates."),
+
+    // Free text recorded by other strategies
+    NOTE("%s");
+
+    private final String pattern;
+
+    EvidenceType(String pattern) {
+        this.pattern = pattern;
+    }
+
+    /**
+     * {@link String#format} pattern the evidence arguments are rendered with
+     */
+    public String getPattern() {
+        return pattern;
+    }
+}
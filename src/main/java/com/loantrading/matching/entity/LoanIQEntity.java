@@ -14,6 +14,7 @@ public class LoanIQEntity {
     private String lei;
     private String ein;
     private String debtDomainId;
+    private String emailDomain;
     private String countryCode;
     private String legalAddress;
     private String taxAddress;
@@ -86,6 +87,14 @@ public class LoanIQEntity {
         this.debtDomainId = debtDomainId; 
     }
     
+    public String getEmailDomain() { 
+        return emailDomain; 
+    }
+    
+    public void setEmailDomain(String emailDomain) { 
+        this.emailDomain = emailDomain; 
+    }
+    
     public String getCountryCode() { 
         return countryCode; 
     }
@@ -1,7 +1,7 @@
 package com.loantrading.matching.entity;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -12,9 +12,11 @@ public class MatchResult {
     private LoanIQEntity matchedEntity;
     private double score;
     private ConfidenceLevel confidence;
-    private List<String> evidence;
+    private List<Evidence> evidence;
     private List<Discrepancy> discrepancies;
-    private Map<String, Double> scoreBreakdown;
+    // Score components by ordinal; a component is present when its bit is set
+    private final double[] scoreComponents;
+    private int presentComponents;
     private boolean isCompositeMatch;
     private String matchStrategy;
     private List<LoanIQEntity> potentialDuplicates;
@@ -22,10 +24,30 @@ public class MatchResult {
     public MatchResult() {
         this.evidence = new ArrayList<>();
         this.discrepancies = new ArrayList<>();
-        this.scoreBreakdown = new HashMap<>();
+        this.scoreComponents = new double[ScoreComponent.count()];
         this.potentialDuplicates = new ArrayList<>();
     }
     
+    /**
+     * Copy of another result whose lists and discrepancies can be changed independently;
+     * the matched and duplicate entities and the immutable evidence are shared
+     */
+    public MatchResult(MatchResult other) {
+        this.matchedEntity = other.matchedEntity;
+        this.score = other.score;
+        this.confidence = other.confidence;
+        this.evidence = new ArrayList<>(other.evidence);
+        this.discrepancies = new ArrayList<>(other.discrepancies.size());
+        for (Discrepancy discrepancy : other.discrepancies) {
+            this.discrepancies.add(new Discrepancy(discrepancy));
+        }
+        this.scoreComponents = other.scoreComponents.clone();
+        this.presentComponents = other.presentComponents;
+        this.isCompositeMatch = other.isCompositeMatch;
+        this.matchStrategy = other.matchStrategy;
+        this.potentialDuplicates = new ArrayList<>(other.potentialDuplicates);
+    }
+    
     // Getters and setters
     public LoanIQEntity getMatchedEntity() {
         return matchedEntity;
@@ -48,12 +70,35 @@ public class MatchResult {
         return confidence;
     }
     
+    /**
+     * Evidence rendered to text, formatted on each call
+     */
     public List<String> getEvidence() {
-        return evidence;
+        List<String> rendered = new ArrayList<>(evidence.size());
+        for (Evidence item : evidence) {
+            rendered.add(item.toString());
+        }
+        return rendered;
     }
     
+    public void addEvidence(EvidenceType type, Object... args) {
+        this.evidence.add(new Evidence(type, args));
+    }
+    
+    /**
+     * Record free-text evidence
+     */
     public void addEvidence(String evidence) {
-        this.evidence.add(evidence);
+        addEvidence(EvidenceType.NOTE, evidence);
+    }
+    
+    public boolean hasEvidence(EvidenceType type) {
+        for (Evidence item : evidence) {
+            if (item.getType() == type) {
+                return true;
+            }
+        }
+        return false;
     }
     
     public List<Discrepancy> getDiscrepancies() {
@@ -64,12 +109,33 @@ public class MatchResult {
         this.discrepancies.add(discrepancy);
     }
     
+    /**
+     * Score components present in the match by key, rendered from the score vector on each call
+     */
     public Map<String, Double> getScoreBreakdown() {
-        return scoreBreakdown;
+        Map<String, Double> breakdown = new LinkedHashMap<>();
+        for (int i = 0; i < scoreComponents.length; i++) {
+            if ((presentComponents & (1 << i)) != 0) {
+                breakdown.put(ScoreComponent.valueOf(i).getKey(), scoreComponents[i]);
+            }
+        }
+        return breakdown;
+    }
+    
+    public void addScoreComponent(ScoreComponent component, double score) {
+        this.scoreComponents[component.ordinal()] = score;
+        this.presentComponents |= component.mask();
+    }
+    
+    public boolean hasScoreComponent(ScoreComponent component) {
+        return (presentComponents & component.mask()) != 0;
     }
     
-    public void addScoreComponent(String component, double score) {
-        this.scoreBreakdown.put(component, score);
+    /**
+     * Value of a score component, or 0 if it is not present
+     */
+    public double getScoreComponent(ScoreComponent component) {
+        return scoreComponents[component.ordinal()];
     }
     
     public boolean isCompositeMatch() {
@@ -0,0 +1,49 @@
+package com.loantrading.matching.entity;
+
+/**
+ * Enum representing the components a match score is built from
+ */
+public enum ScoreComponent {
+    MEI_MATCH("mei_match"),
+    LEI_MATCH("lei_match"),
+    EIN_MATCH("ein_match"),
+    DEBT_DOMAIN_ID_MATCH("debt_domain_id_match"),
+    MEI_BOOST("mei_boost"),
+    LEI_BOOST("lei_boost"),
+    EIN_BOOST("ein_boost"),
+    DEBT_DOMAIN_ID_BOOST("debt_domain_id_boost"),
+    LEGAL_NAME_FUZZY("legal_name_fuzzy"),
+    FUND_MANAGER_FUZZY("fund_manager_fuzzy"),
+    EMAIL_DOMAIN_BOOST("email_domain_boost"),
+    TAX_FORM_VALIDATION("tax_form_validation");
+
+    private static final ScoreComponent[] VALUES = values();
+
+    private final String key;
+
+    ScoreComponent(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Name of the component in the score breakdown
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Bit of the component in a presence mask
+     */
+    int mask() {
+        return 1 << ordinal();
+    }
+
+    static ScoreComponent valueOf(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    static int count() {
+        return VALUES.length;
+    }
+}
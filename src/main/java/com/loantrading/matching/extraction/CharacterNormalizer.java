@@ -44,27 +44,48 @@ public class CharacterNormalizer {
     public String normalizeUnicodeAndPunctuation(String text) {
         if (text == null) return "";
 
-        String normalized = text;
-
         // Handle diacritics using ICU4J
-        normalized = DIACRITIC_REMOVER.transliterate(normalized);
-
-        // Apply replacements for smart quotes, dashes, and unicode spaces
-        normalized = normalized.replaceAll("[“”]", "\"");
-        normalized = normalized.replaceAll("[‘’]", "'");
-        normalized = normalized.replaceAll("[`´]", "'");
-        normalized = normalized.replaceAll("[—–]", "-");
-        normalized = normalized.replaceAll("[‒―]", "-");
-        normalized = normalized.replaceAll("[\\u00A0\\u2000-\\u200B\\u202F\\u205F\\u3000]", " ");
+        String transliterated = DIACRITIC_REMOVER.transliterate(text);
 
-        // Remove control and zero-width characters
-        normalized = normalized.replaceAll("[\\u0000-\\u001F\\u007F-\\u009F]", "");
-        normalized = normalized.replaceAll("[\\u200B-\\u200D\\uFEFF]", "");
+        // One pass for smart quotes, dashes, unicode spaces, control and zero-width
+        // characters and whitespace runs, with the same result as applying them in turn
+        StringBuilder normalized = new StringBuilder(transliterated.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < transliterated.length(); i++) {
+            char c = transliterated.charAt(i);
+            switch (c) {
+                case '\u201C': case '\u201D':
+                    c = '"';
+                    break;
+                case '\u2018': case '\u2019': case '`': case '\u00B4':
+                    c = '\'';
+                    break;
+                case '\u2014': case '\u2013': case '\u2012': case '\u2015':
+                    c = '-';
+                    break;
+                default:
+                    if (c == '\u00A0' || (c >= '\u2000' && c <= '\u200B') || c == '\u202F' ||
+                        c == '\u205F' || c == '\u3000') {
+                        c = ' ';
+                    } else if (c <= '\u001F' || (c >= '\u007F' && c <= '\u009F') ||
+                               c == '\u200C' || c == '\u200D' || c == '\uFEFF') {
+                        // Removed outright, so tabs and line breaks do not separate words
+                        continue;
+                    }
+            }
 
-        // Normalize standard whitespace
-        normalized = normalized.replaceAll("\\s+", " ");
+            if (c == ' ') {
+                pendingSpace = normalized.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    normalized.append(' ');
+                    pendingSpace = false;
+                }
+                normalized.append(c);
+            }
+        }
 
-        return normalized.trim();
+        return normalized.toString();
     }
 
     /**
@@ -4,10 +4,14 @@ import com.loantrading.matching.detection.EntityTypeDetector;
 import com.loantrading.matching.engine.MatchingEngine;
 import com.loantrading.matching.entity.*;
 import com.loantrading.matching.extraction.MultiFormatDocumentExtractor;
+import com.loantrading.matching.repository.DuplicateClusters;
+import com.loantrading.matching.repository.RepositoryConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
 
@@ -21,19 +25,50 @@ public class EntityMatchingOrchestrator {
     private final EntityTypeDetector typeDetector;
     private final MatchingEngine matchingEngine;
     private final ExecutorService executorService;
+    private volatile Duration interactiveTimeBudget;
     
     public EntityMatchingOrchestrator(Connection dbConnection) {
+        this(dbConnection, new RepositoryConfig());
+    }
+    
+    public EntityMatchingOrchestrator(Connection dbConnection, RepositoryConfig repositoryConfig) {
+        this(new MatchingEngine(dbConnection, repositoryConfig));
+    }
+    
+    public EntityMatchingOrchestrator(DataSource dataSource, RepositoryConfig repositoryConfig) {
+        this(new MatchingEngine(dataSource, repositoryConfig));
+    }
+    
+    private EntityMatchingOrchestrator(MatchingEngine matchingEngine) {
         this.extractor = new MultiFormatDocumentExtractor();
         this.typeDetector = new EntityTypeDetector();
-        this.matchingEngine = new MatchingEngine(dbConnection);
+        this.matchingEngine = matchingEngine;
         this.executorService = Executors.newFixedThreadPool(4);
     }
     
+    /**
+     * Time allowed for matching a single submission, or null for no limit.
+     * Batch processing is never time-bounded.
+     */
+    public Duration getInteractiveTimeBudget() {
+        return interactiveTimeBudget;
+    }
+    
+    public void setInteractiveTimeBudget(Duration interactiveTimeBudget) {
+        this.interactiveTimeBudget = interactiveTimeBudget;
+    }
+    
     /**
      * Process documents and return matching results
      */
     public ProcessingResult processDocuments(byte[] adfContent, String adfFilename,
                                             byte[] taxFormContent, String taxFormFilename) {
+        return processDocuments(adfContent, adfFilename, taxFormContent, taxFormFilename, interactiveTimeBudget);
+    }
+    
+    private ProcessingResult processDocuments(byte[] adfContent, String adfFilename,
+                                             byte[] taxFormContent, String taxFormFilename,
+                                             Duration matchingTimeBudget) {
         ProcessingResult result = new ProcessingResult();
         long startTime = System.currentTimeMillis();
         
@@ -86,7 +121,7 @@ public class EntityMatchingOrchestrator {
             
             // Stage 4: Find matches
             result.addAuditEntry("Starting entity matching");
-            List<MatchResult> matches = matchingEngine.findMatches(adfData, taxFormData);
+            List<MatchResult> matches = matchingEngine.findMatches(adfData, taxFormData, matchingTimeBudget);
             
             // Add top 5 matches to result
             for (int i = 0; i < Math.min(5, matches.size()); i++) {
@@ -159,7 +194,7 @@ public class EntityMatchingOrchestrator {
             Future<ProcessingResult> future = executorService.submit(() -> {
                 ProcessingResult result = processDocuments(
                     pair.getAdfContent(), pair.getAdfFilename(),
-                    pair.getTaxFormContent(), pair.getTaxFormFilename()
+                    pair.getTaxFormContent(), pair.getTaxFormFilename(), null
                 );
                 result.addMetadata("reference_id", pair.getReferenceId());
                 return result;
@@ -257,6 +292,13 @@ public class EntityMatchingOrchestrator {
         }
     }
     
+    /**
+     * Duplicate clusters over all LoanIQ entities, for data quality reporting
+     */
+    public DuplicateClusters getDuplicateClusters() {
+        return matchingEngine.getDuplicateClusters();
+    }
+    
     /**
      * Shutdown the orchestrator
      */
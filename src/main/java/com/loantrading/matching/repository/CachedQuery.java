@@ -0,0 +1,32 @@
+package com.loantrading.matching.repository;
+
+/**
+ * Repository lookups that are cached, each in its own cache with its own size and TTL
+ */
+public enum CachedQuery {
+    MEI(5_000),
+    LEI(5_000),
+    EIN(5_000),
+    DEBT_DOMAIN_ID(2_000),
+    ID(10_000),
+    CLEANED_SHORT_NAME(2_000),
+    NAME(1_000),
+    EMAIL_DOMAIN(500);
+
+    private final long defaultMaximumSize;
+
+    CachedQuery(long defaultMaximumSize) {
+        this.defaultMaximumSize = defaultMaximumSize;
+    }
+
+    public long getDefaultMaximumSize() {
+        return defaultMaximumSize;
+    }
+
+    /**
+     * Name used in -Dloaniq.cache.&lt;name&gt;.* system properties, e.g. "debt-domain-id"
+     */
+    public String getPropertyName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
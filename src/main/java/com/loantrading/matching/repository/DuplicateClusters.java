@@ -0,0 +1,234 @@
+package com.loantrading.matching.repository;
+
+import com.loantrading.matching.entity.LoanIQEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Groups of LoanIQ entities that look like duplicates of each other, computed once over a
+ * whole {@link EntitySnapshot} with union-find. Two entities end up in the same cluster when a
+ * chain of shared keys connects them: an MEI, LEI or EIN (including location identifiers),
+ * a cleaned short name, or a full name with the same words after normalization. Names that
+ * only contain one another are not linked, as containment would chain unrelated entities
+ * through short common names; {@code DuplicateDetector} still searches for those per entity.
+ */
+public class DuplicateClusters {
+
+    /**
+     * Kind of key two members of a cluster were found to share
+     */
+    public enum Reason {
+        MEI, LEI, EIN, SHORT_NAME, NAME
+    }
+
+    private final Map<Long, Cluster> clustersByEntityId;
+    private final List<Cluster> clusters;
+    private final int entityCount;
+
+    public DuplicateClusters(EntitySnapshot snapshot) {
+        List<LoanIQEntity> entities = new ArrayList<>(snapshot.getEntities());
+        Map<Long, Integer> indexes = new HashMap<>(entities.size() * 4 / 3 + 1);
+        for (int i = 0; i < entities.size(); i++) {
+            indexes.put(entities.get(i).getEntityId(), i);
+        }
+
+        UnionFind unionFind = new UnionFind(entities.size());
+        // First entity seen per key, one map per reason
+        Map<Reason, Map<String, Integer>> firstByKey = new EnumMap<>(Reason.class);
+        for (Reason reason : Reason.values()) {
+            firstByKey.put(reason, new HashMap<>());
+        }
+        // Entities that shared a key, with the reason, to label clusters once they are final
+        List<int[]> shared = new ArrayList<>();
+
+        for (int i = 0; i < entities.size(); i++) {
+            LoanIQEntity entity = entities.get(i);
+            link(unionFind, firstByKey, shared, Reason.MEI, entity.getMei(), i);
+            link(unionFind, firstByKey, shared, Reason.LEI, entity.getLei(), i);
+            link(unionFind, firstByKey, shared, Reason.EIN, EntitySnapshot.normalizeEin(entity.getEin()), i);
+            String shortName = EntitySnapshot.cleanShortName(entity.getShortName());
+            link(unionFind, firstByKey, shared, Reason.SHORT_NAME,
+                shortName == null || shortName.isEmpty() ? null : shortName, i);
+            link(unionFind, firstByKey, shared, Reason.NAME, nameKey(entity.getFullName()), i);
+        }
+        for (EntityLocation location : snapshot.getLocations()) {
+            Integer i = indexes.get(location.getLocationId());
+            if (i != null) {
+                link(unionFind, firstByKey, shared, Reason.MEI, location.getMei(), i);
+                link(unionFind, firstByKey, shared, Reason.LEI, location.getLei(), i);
+                link(unionFind, firstByKey, shared, Reason.EIN, EntitySnapshot.normalizeEin(location.getEin()), i);
+            }
+        }
+
+        Map<Integer, List<LoanIQEntity>> membersByRoot = new HashMap<>();
+        for (int i = 0; i < entities.size(); i++) {
+            membersByRoot.computeIfAbsent(unionFind.find(i), root -> new ArrayList<>(2)).add(entities.get(i));
+        }
+        Map<Integer, Set<Reason>> reasonsByRoot = new HashMap<>();
+        for (int[] link : shared) {
+            reasonsByRoot.computeIfAbsent(unionFind.find(link[0]), root -> EnumSet.noneOf(Reason.class))
+                .add(Reason.values()[link[1]]);
+        }
+
+        Map<Long, Cluster> byEntityId = new HashMap<>();
+        List<Cluster> all = new ArrayList<>();
+        for (Map.Entry<Integer, List<LoanIQEntity>> entry : membersByRoot.entrySet()) {
+            if (entry.getValue().size() < 2) {
+                continue;
+            }
+            Cluster cluster = new Cluster(entry.getValue(), reasonsByRoot.get(entry.getKey()));
+            all.add(cluster);
+            for (LoanIQEntity member : entry.getValue()) {
+                byEntityId.put(member.getEntityId(), cluster);
+            }
+        }
+        all.sort((a, b) -> Integer.compare(b.getSize(), a.getSize()));
+
+        this.clustersByEntityId = byEntityId;
+        this.clusters = Collections.unmodifiableList(all);
+        this.entityCount = entities.size();
+    }
+
+    /**
+     * The other members of the entity's cluster, or an empty list if it has no duplicates
+     */
+    public List<LoanIQEntity> getDuplicates(Long entityId) {
+        Cluster cluster = clustersByEntityId.get(entityId);
+        if (cluster == null) {
+            return List.of();
+        }
+        List<LoanIQEntity> duplicates = new ArrayList<>(cluster.getSize() - 1);
+        for (LoanIQEntity member : cluster.getEntities()) {
+            if (!member.getEntityId().equals(entityId)) {
+                duplicates.add(member);
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * Clusters of two or more entities, largest first
+     */
+    public List<Cluster> getClusters() {
+        return clusters;
+    }
+
+    /**
+     * Number of entities that belong to some cluster
+     */
+    public int getDuplicatedEntityCount() {
+        return clustersByEntityId.size();
+    }
+
+    public int getEntityCount() {
+        return entityCount;
+    }
+
+    /**
+     * Words of the full name in sorted order, after the same normalization as
+     * {@code DuplicateDetector}, so that reordered names share a key
+     */
+    static String nameKey(String fullName) {
+        if (fullName == null) {
+            return null;
+        }
+        String normalized = fullName.toLowerCase()
+            .replaceAll("[^a-z0-9\\s]", " ")
+            .replaceAll("\\s+", " ")
+            .trim();
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        String[] words = normalized.split(" ");
+        Arrays.sort(words);
+        return String.join(" ", words);
+    }
+
+    private static void link(UnionFind unionFind, Map<Reason, Map<String, Integer>> firstByKey,
+                             List<int[]> shared, Reason reason, String key, int index) {
+        if (key == null) {
+            return;
+        }
+        Integer first = firstByKey.get(reason).putIfAbsent(key, index);
+        if (first != null && first != index) {
+            unionFind.union(first, index);
+            shared.add(new int[] {index, reason.ordinal()});
+        }
+    }
+
+    /**
+     * Entities that share a chain of keys
+     */
+    public static class Cluster {
+        private final List<LoanIQEntity> entities;
+        private final Set<Reason> reasons;
+
+        Cluster(List<LoanIQEntity> entities, Set<Reason> reasons) {
+            this.entities = Collections.unmodifiableList(entities);
+            this.reasons = Collections.unmodifiableSet(reasons);
+        }
+
+        public List<LoanIQEntity> getEntities() {
+            return entities;
+        }
+
+        /**
+         * Kinds of keys shared within the cluster
+         */
+        public Set<Reason> getReasons() {
+            return reasons;
+        }
+
+        public int getSize() {
+            return entities.size();
+        }
+    }
+
+    /**
+     * Disjoint sets over entity positions, with union by size and path halving
+     */
+    private static class UnionFind {
+        private final int[] parent;
+        private final int[] size;
+
+        UnionFind(int count) {
+            parent = new int[count];
+            size = new int[count];
+            for (int i = 0; i < count; i++) {
+                parent[i] = i;
+                size[i] = 1;
+            }
+        }
+
+        int find(int i) {
+            while (parent[i] != i) {
+                parent[i] = parent[parent[i]];
+                i = parent[i];
+            }
+            return i;
+        }
+
+        void union(int a, int b) {
+            int rootA = find(a);
+            int rootB = find(b);
+            if (rootA == rootB) {
+                return;
+            }
+            if (size[rootA] < size[rootB]) {
+                int swap = rootA;
+                rootA = rootB;
+                rootB = swap;
+            }
+            parent[rootB] = rootA;
+            size[rootA] += size[rootB];
+        }
+    }
+}
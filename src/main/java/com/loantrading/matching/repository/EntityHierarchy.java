@@ -0,0 +1,129 @@
+package com.loantrading.matching.repository;
+
+import java.util.*;
+
+/**
+ * Immutable customer/location structure built from the entity_locations table:
+ * customer to its locations, location to its parent customer, and the location-level
+ * MEI, LEI and EIN. A location hit resolves its parent and siblings from here
+ * instead of joining entity_locations again.
+ */
+public class EntityHierarchy {
+    private final Map<Long, EntityLocation> locationsById;
+    private final Map<Long, List<Long>> locationIdsByCustomer;
+    private final Map<String, List<EntityLocation>> byMei;
+    private final Map<String, List<EntityLocation>> byLei;
+    private final Map<String, List<EntityLocation>> byEin;
+
+    public EntityHierarchy(Collection<EntityLocation> locations) {
+        Map<Long, EntityLocation> ids = new LinkedHashMap<>();
+        Map<Long, List<Long>> customers = new HashMap<>();
+        Map<String, List<EntityLocation>> mei = new HashMap<>();
+        Map<String, List<EntityLocation>> lei = new HashMap<>();
+        Map<String, List<EntityLocation>> ein = new HashMap<>();
+
+        for (EntityLocation location : locations) {
+            ids.put(location.getLocationId(), location);
+            if (location.getParentCustomerId() != null) {
+                customers.computeIfAbsent(location.getParentCustomerId(), k -> new ArrayList<>(2))
+                        .add(location.getLocationId());
+            }
+            index(mei, location.getMei(), location);
+            index(lei, location.getLei(), location);
+            index(ein, EntitySnapshot.normalizeEin(location.getEin()), location);
+        }
+
+        this.locationsById = Collections.unmodifiableMap(ids);
+        this.locationIdsByCustomer = freeze(customers);
+        this.byMei = freeze(mei);
+        this.byLei = freeze(lei);
+        this.byEin = freeze(ein);
+    }
+
+    /**
+     * Build a new hierarchy in which the location rows of changed entities are replaced
+     * by the ones supplied, the same way {@link EntitySnapshot#withChanges} applies them
+     */
+    public EntityHierarchy withChanges(Collection<Long> changedEntityIds,
+                                       Collection<EntityLocation> changedLocations) {
+        Map<Long, EntityLocation> locations = new LinkedHashMap<>(locationsById);
+        changedEntityIds.forEach(locations::remove);
+        for (EntityLocation location : changedLocations) {
+            locations.put(location.getLocationId(), location);
+        }
+        return new EntityHierarchy(locations.values());
+    }
+
+    public EntityLocation getLocation(Long locationId) {
+        return locationId == null ? null : locationsById.get(locationId);
+    }
+
+    /**
+     * Parent customer of a location, or null if the ID is not a location or has no parent
+     */
+    public Long getParentCustomerId(Long locationId) {
+        EntityLocation location = getLocation(locationId);
+        return location == null ? null : location.getParentCustomerId();
+    }
+
+    /**
+     * Locations registered under a customer, in table order
+     */
+    public List<Long> getLocationIds(Long customerId) {
+        return customerId == null ? List.of() : locationIdsByCustomer.getOrDefault(customerId, List.of());
+    }
+
+    /**
+     * The other locations of the same parent customer
+     */
+    public List<Long> getSiblingLocationIds(Long locationId) {
+        List<Long> siblings = new ArrayList<>(getLocationIds(getParentCustomerId(locationId)));
+        siblings.remove(locationId);
+        return siblings;
+    }
+
+    public List<EntityLocation> findByMEI(String mei) {
+        return lookup(byMei, mei);
+    }
+
+    public List<EntityLocation> findByLEI(String lei) {
+        return lookup(byLei, lei);
+    }
+
+    public List<EntityLocation> findByEIN(String ein) {
+        return lookup(byEin, EntitySnapshot.normalizeEin(ein));
+    }
+
+    public Collection<EntityLocation> getLocations() {
+        return locationsById.values();
+    }
+
+    public int getLocationCount() {
+        return locationsById.size();
+    }
+
+    public int getCustomerCount() {
+        return locationIdsByCustomer.size();
+    }
+
+    private static <T> void index(Map<String, List<T>> index, String key, T value) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new ArrayList<>(1)).add(value);
+        }
+    }
+
+    private static <K, T> Map<K, List<T>> freeze(Map<K, List<T>> index) {
+        Map<K, List<T>> frozen = new HashMap<>(index.size() * 4 / 3 + 1);
+        for (Map.Entry<K, List<T>> entry : index.entrySet()) {
+            frozen.put(entry.getKey(), List.copyOf(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(frozen);
+    }
+
+    private static <T> List<T> lookup(Map<String, List<T>> index, String key) {
+        if (key == null) {
+            return List.of();
+        }
+        return index.getOrDefault(key, List.of());
+    }
+}
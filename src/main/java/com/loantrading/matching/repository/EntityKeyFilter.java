@@ -0,0 +1,131 @@
+package com.loantrading.matching.repository;
+
+import com.loantrading.matching.entity.LoanIQEntity;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Bloom filters over every identifier and name token in the entities and entity_locations tables.
+ * A negative answer means a lookup cannot return rows and the round trip can be skipped;
+ * a positive answer may be a false positive (about 1%) and the query runs as usual.
+ * Keys can be added as rows change but never removed, so stale keys only cost false positives.
+ */
+public class EntityKeyFilter {
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final BloomFilter<CharSequence> identifiers;
+    private final BloomFilter<CharSequence> nameTokens;
+    private final long expectedEntities;
+
+    /**
+     * @param expectedEntities number of entity and location rows the filters are sized for
+     */
+    public EntityKeyFilter(long expectedEntities) {
+        this.expectedEntities = Math.max(1000, expectedEntities);
+        // Up to four identifiers and a handful of name tokens per row
+        this.identifiers = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                this.expectedEntities * 4, FALSE_POSITIVE_RATE);
+        this.nameTokens = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                this.expectedEntities * 8, FALSE_POSITIVE_RATE);
+    }
+
+    public void add(LoanIQEntity entity) {
+        addIdentifiers(entity.getMei(), entity.getLei(), entity.getEin());
+        if (entity.getDebtDomainId() != null) {
+            identifiers.put("DDID:" + entity.getDebtDomainId());
+        }
+        addNameTokens(entity.getFullName());
+        addNameTokens(entity.getShortName());
+        addNameTokens(entity.getUltimateParent());
+    }
+
+    public void add(EntityLocation location) {
+        addIdentifiers(location.getMei(), location.getLei(), location.getEin());
+    }
+
+    public boolean mightContainMEI(String mei) {
+        return identifiers.mightContain("MEI:" + mei);
+    }
+
+    public boolean mightContainLEI(String lei) {
+        return identifiers.mightContain("LEI:" + lei);
+    }
+
+    public boolean mightContainEIN(String ein) {
+        return identifiers.mightContain("EIN:" + EntitySnapshot.normalizeEin(ein));
+    }
+
+    public boolean mightContainDebtDomainId(String debtDomainId) {
+        return identifiers.mightContain("DDID:" + debtDomainId);
+    }
+
+    /**
+     * Whether findByName could return rows for this legal name and fund manager.
+     * The query matches '%name%' against full_name and short_name and '%fundManager%' against
+     * ultimate_parent. A pattern with three or more space-separated words can only be contained
+     * in a value whose own space-separated words include each interior word of the pattern,
+     * so an interior word missing from the filter rules the pattern out. Shorter patterns
+     * can match inside words and are always treated as possible.
+     */
+    public boolean mightMatchName(String legalName, String fundManager) {
+        String fmPattern = fundManager != null ? fundManager : legalName;
+        return mightContainPattern(legalName) || mightContainPattern(fmPattern);
+    }
+
+    /**
+     * Whether more keys have been added than the filters were sized for, so the
+     * false positive rate has drifted and the filters should be rebuilt
+     */
+    public boolean isSaturated() {
+        return identifiers.approximateElementCount() > expectedEntities * 4 ||
+               nameTokens.approximateElementCount() > expectedEntities * 8;
+    }
+
+    private void addIdentifiers(String mei, String lei, String ein) {
+        if (mei != null) identifiers.put("MEI:" + mei);
+        if (lei != null) identifiers.put("LEI:" + lei);
+        if (ein != null) identifiers.put("EIN:" + EntitySnapshot.normalizeEin(ein));
+    }
+
+    private void addNameTokens(String value) {
+        if (value == null) {
+            return;
+        }
+        for (String token : value.toLowerCase(Locale.ROOT).split(" ")) {
+            if (!token.isEmpty()) {
+                nameTokens.put(token);
+            }
+        }
+    }
+
+    private boolean mightContainPattern(String pattern) {
+        String[] words = pattern.toLowerCase(Locale.ROOT).split(" ", -1);
+        for (int i = 1; i < words.length - 1; i++) {
+            String word = words[i];
+            if (isComparable(word) && !nameTokens.mightContain(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Words with LIKE wildcards or escapes, or with characters the database may lower-case
+     * differently, cannot be ruled out by exact token membership
+     */
+    private static boolean isComparable(String word) {
+        if (word.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c > 127 || c == '%' || c == '_' || c == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,50 @@
+package com.loantrading.matching.repository;
+
+/**
+ * A row of the LoanIQ entity_locations table.
+ * The location itself is also stored in the entities table under entity_id = locationId.
+ */
+public class EntityLocation {
+    private final Long locationId;
+    private final Long parentCustomerId;
+    private final String mei;
+    private final String lei;
+    private final String ein;
+
+    public EntityLocation(Long locationId, Long parentCustomerId, String mei, String lei, String ein) {
+        this.locationId = locationId;
+        this.parentCustomerId = parentCustomerId;
+        this.mei = mei;
+        this.lei = lei;
+        this.ein = ein;
+    }
+
+    public Long getLocationId() {
+        return locationId;
+    }
+
+    public Long getParentCustomerId() {
+        return parentCustomerId;
+    }
+
+    public String getMei() {
+        return mei;
+    }
+
+    public String getLei() {
+        return lei;
+    }
+
+    public String getEin() {
+        return ein;
+    }
+
+    @Override
+    public String toString() {
+        return "EntityLocation{" +
+                "locationId=" + locationId +
+                ", parentCustomerId=" + parentCustomerId +
+                ", mei='" + mei + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,103 @@
+package com.loantrading.matching.repository;
+
+import com.loantrading.matching.entity.LoanIQEntity;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps entities rows to {@link LoanIQEntity} by column index.
+ * The column positions are resolved once per result set from its metadata, so rows are read
+ * without name lookups, and columns a query does not select (record_type, parent_customer_id,
+ * last_modified, ...) are simply skipped instead of being probed for an SQLException per row.
+ */
+class EntityRowMapper {
+    private final int entityId;
+    private final int fullName;
+    private final int shortName;
+    private final int ultimateParent;
+    private final int mei;
+    private final int lei;
+    private final int ein;
+    private final int debtDomainId;
+    private final int emailDomain;
+    private final int countryCode;
+    private final int legalAddress;
+    private final int taxAddress;
+    private final int recordType;
+    private final int parentCustomerId;
+    private final int lastModified;
+
+    EntityRowMapper(ResultSetMetaData metaData) throws SQLException {
+        Map<String, Integer> columns = columnIndexes(metaData);
+        this.entityId = columns.getOrDefault("entity_id", 0);
+        this.fullName = columns.getOrDefault("full_name", 0);
+        this.shortName = columns.getOrDefault("short_name", 0);
+        this.ultimateParent = columns.getOrDefault("ultimate_parent", 0);
+        this.mei = columns.getOrDefault("mei", 0);
+        this.lei = columns.getOrDefault("lei", 0);
+        this.ein = columns.getOrDefault("ein", 0);
+        this.debtDomainId = columns.getOrDefault("debt_domain_id", 0);
+        this.emailDomain = columns.getOrDefault("email_domain", 0);
+        this.countryCode = columns.getOrDefault("country_code", 0);
+        this.legalAddress = columns.getOrDefault("legal_address", 0);
+        this.taxAddress = columns.getOrDefault("tax_address", 0);
+        this.recordType = columns.getOrDefault("record_type", 0);
+        this.parentCustomerId = columns.getOrDefault("parent_customer_id", 0);
+        this.lastModified = columns.getOrDefault("last_modified", 0);
+    }
+
+    /**
+     * Lower-cased column label to 1-based index; the first occurrence wins, as with findColumn
+     */
+    static Map<String, Integer> columnIndexes(ResultSetMetaData metaData) throws SQLException {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = metaData.getColumnCount(); i >= 1; i--) {
+            columns.put(metaData.getColumnLabel(i).toLowerCase(), i);
+        }
+        return columns;
+    }
+
+    LoanIQEntity map(ResultSet rs) throws SQLException {
+        LoanIQEntity entity = new LoanIQEntity();
+
+        if (entityId > 0) entity.setEntityId(rs.getLong(entityId));
+        if (fullName > 0) entity.setFullName(rs.getString(fullName));
+        if (shortName > 0) entity.setShortName(rs.getString(shortName));
+        if (ultimateParent > 0) entity.setUltimateParent(rs.getString(ultimateParent));
+        if (mei > 0) entity.setMei(rs.getString(mei));
+        if (lei > 0) entity.setLei(rs.getString(lei));
+        if (ein > 0) entity.setEin(rs.getString(ein));
+        if (debtDomainId > 0) entity.setDebtDomainId(rs.getString(debtDomainId));
+        if (emailDomain > 0) entity.setEmailDomain(rs.getString(emailDomain));
+        if (countryCode > 0) entity.setCountryCode(rs.getString(countryCode));
+        if (legalAddress > 0) entity.setLegalAddress(rs.getString(legalAddress));
+        if (taxAddress > 0) entity.setTaxAddress(rs.getString(taxAddress));
+
+        // Without a record_type column the row is a main entity
+        if (recordType > 0 && "LOCATION".equals(rs.getString(recordType))) {
+            entity.setLocation(true);
+            if (parentCustomerId > 0) {
+                long parentId = rs.getLong(parentCustomerId);
+                if (!rs.wasNull()) {
+                    entity.setParentCustomerId(parentId);
+                }
+            }
+        } else {
+            entity.setLocation(false);
+        }
+
+        if (lastModified > 0) {
+            Timestamp modified = rs.getTimestamp(lastModified);
+            if (modified != null) {
+                entity.setLastModified(modified.toLocalDateTime());
+            }
+        }
+
+        return entity;
+    }
+}
@@ -0,0 +1,225 @@
+package com.loantrading.matching.repository;
+
+import com.loantrading.matching.entity.LoanIQEntity;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Immutable in-memory copy of the LoanIQ entities and entity_locations tables,
+ * indexed the same way the identifier queries in src/main/resources/sql look rows up.
+ * Lookups return the same records (main entities followed by location views) as the SQL.
+ */
+public class EntitySnapshot {
+    private final Map<Long, LoanIQEntity> entitiesById;
+    private final Map<Long, EntityLocation> locationsById;
+    private final Map<String, List<LoanIQEntity>> byMei;
+    private final Map<String, List<LoanIQEntity>> byLei;
+    private final Map<String, List<LoanIQEntity>> byEin;
+    private final Map<String, List<LoanIQEntity>> byDebtDomainId;
+    private final Map<String, List<LoanIQEntity>> byCleanedShortName;
+    private final EntityHierarchy hierarchy;
+    private final int locationViewCount;
+
+    public EntitySnapshot(Collection<LoanIQEntity> entities, Collection<EntityLocation> locations) {
+        Map<Long, LoanIQEntity> ids = new LinkedHashMap<>();
+        Map<String, List<LoanIQEntity>> mei = new HashMap<>();
+        Map<String, List<LoanIQEntity>> lei = new HashMap<>();
+        Map<String, List<LoanIQEntity>> ein = new HashMap<>();
+        Map<String, List<LoanIQEntity>> debtDomain = new HashMap<>();
+        Map<String, List<LoanIQEntity>> shortNames = new HashMap<>();
+
+        // Main records first, mirroring the first branch of the UNION ALL queries
+        for (LoanIQEntity entity : entities) {
+            ids.put(entity.getEntityId(), entity);
+            index(mei, entity.getMei(), entity);
+            index(lei, entity.getLei(), entity);
+            index(ein, normalizeEin(entity.getEin()), entity);
+            index(debtDomain, entity.getDebtDomainId(), entity);
+            index(shortNames, cleanShortName(entity.getShortName()), entity);
+        }
+
+        // Location records: the entities row of the location, keyed by the location identifiers
+        Map<Long, EntityLocation> locationIds = new LinkedHashMap<>();
+        int views = 0;
+        for (EntityLocation location : locations) {
+            locationIds.put(location.getLocationId(), location);
+            LoanIQEntity row = ids.get(location.getLocationId());
+            if (row == null) {
+                continue; // Same as the inner join in the SQL
+            }
+            LoanIQEntity view = locationView(row, location.getParentCustomerId());
+            index(mei, location.getMei(), view);
+            index(lei, location.getLei(), view);
+            index(ein, normalizeEin(location.getEin()), view);
+            views++;
+        }
+
+        this.entitiesById = Collections.unmodifiableMap(ids);
+        this.locationsById = Collections.unmodifiableMap(locationIds);
+        this.byMei = freeze(mei);
+        this.byLei = freeze(lei);
+        this.byEin = freeze(ein);
+        this.byDebtDomainId = freeze(debtDomain);
+        this.byCleanedShortName = freeze(shortNames);
+        this.hierarchy = new EntityHierarchy(locationIds.values());
+        this.locationViewCount = views;
+    }
+
+    /**
+     * Build a new snapshot with changed entity rows and their current location rows applied.
+     * Location rows previously held for a changed entity are replaced by the ones supplied.
+     * This snapshot is left untouched so readers holding it keep a consistent view.
+     */
+    public EntitySnapshot withChanges(Collection<LoanIQEntity> changedEntities,
+                                      Collection<EntityLocation> changedLocations) {
+        Map<Long, LoanIQEntity> entities = new LinkedHashMap<>(entitiesById);
+        Map<Long, EntityLocation> locations = new LinkedHashMap<>(locationsById);
+
+        for (LoanIQEntity entity : changedEntities) {
+            entities.put(entity.getEntityId(), entity);
+            locations.remove(entity.getEntityId());
+        }
+        for (EntityLocation location : changedLocations) {
+            locations.put(location.getLocationId(), location);
+        }
+
+        return new EntitySnapshot(entities.values(), locations.values());
+    }
+
+    public List<LoanIQEntity> findByMEI(String mei) {
+        return lookup(byMei, mei);
+    }
+
+    public List<LoanIQEntity> findByLEI(String lei) {
+        return lookup(byLei, lei);
+    }
+
+    public List<LoanIQEntity> findByEIN(String ein) {
+        return lookup(byEin, normalizeEin(ein));
+    }
+
+    public List<LoanIQEntity> findByDebtDomainId(String debtDomainId) {
+        return lookup(byDebtDomainId, debtDomainId);
+    }
+
+    public List<LoanIQEntity> findByCleanedShortName(String shortName) {
+        return lookup(byCleanedShortName, cleanShortName(shortName));
+    }
+
+    public LoanIQEntity findById(Long entityId) {
+        return entityId == null ? null : entitiesById.get(entityId);
+    }
+
+    /**
+     * Customer/location structure of the loaded entity_locations rows
+     */
+    public EntityHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    public Collection<LoanIQEntity> getEntities() {
+        return entitiesById.values();
+    }
+
+    public Collection<EntityLocation> getLocations() {
+        return locationsById.values();
+    }
+
+    /**
+     * Distinct MEIs of entities and locations
+     */
+    Set<String> getMeis() {
+        return byMei.keySet();
+    }
+
+    Set<String> getLeis() {
+        return byLei.keySet();
+    }
+
+    /**
+     * Distinct EINs of entities and locations, without dashes
+     */
+    Set<String> getEins() {
+        return byEin.keySet();
+    }
+
+    public int getEntityCount() {
+        return entitiesById.size();
+    }
+
+    public int getLocationCount() {
+        return locationViewCount;
+    }
+
+    /**
+     * Latest last_modified among the loaded entities, or null if none carry one
+     */
+    public LocalDateTime getMaxLastModified() {
+        LocalDateTime max = null;
+        for (LoanIQEntity entity : entitiesById.values()) {
+            LocalDateTime modified = entity.getLastModified();
+            if (modified != null && (max == null || modified.isAfter(max))) {
+                max = modified;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Same normalization as REPLACE(ein, '-', '') in findByEIN.sql
+     */
+    static String normalizeEin(String ein) {
+        return ein == null ? null : ein.replace("-", "");
+    }
+
+    /**
+     * Same normalization as REGEXP_REPLACE(LOWER(short_name), '[^a-z0-9]', '') in findByCleanedShortName.sql
+     */
+    static String cleanShortName(String shortName) {
+        return shortName == null ? null : shortName.toLowerCase().replaceAll("[^a-z0-9]", "");
+    }
+
+    /**
+     * The entities row of a location as the location branch of the lookup queries returns it
+     */
+    static LoanIQEntity locationView(LoanIQEntity row, Long parentCustomerId) {
+        LoanIQEntity view = new LoanIQEntity();
+        view.setEntityId(row.getEntityId());
+        view.setFullName(row.getFullName());
+        view.setShortName(row.getShortName());
+        view.setUltimateParent(row.getUltimateParent());
+        view.setMei(row.getMei());
+        view.setLei(row.getLei());
+        view.setEin(row.getEin());
+        view.setDebtDomainId(row.getDebtDomainId());
+        view.setCountryCode(row.getCountryCode());
+        view.setLegalAddress(row.getLegalAddress());
+        view.setTaxAddress(row.getTaxAddress());
+        view.setLastModified(row.getLastModified());
+        view.setLocation(true);
+        view.setParentCustomerId(parentCustomerId);
+        return view;
+    }
+
+    private static void index(Map<String, List<LoanIQEntity>> index, String key, LoanIQEntity entity) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new ArrayList<>(1)).add(entity);
+        }
+    }
+
+    private static Map<String, List<LoanIQEntity>> freeze(Map<String, List<LoanIQEntity>> index) {
+        Map<String, List<LoanIQEntity>> frozen = new HashMap<>(index.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<LoanIQEntity>> entry : index.entrySet()) {
+            frozen.put(entry.getKey(), List.copyOf(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(frozen);
+    }
+
+    private static List<LoanIQEntity> lookup(Map<String, List<LoanIQEntity>> index, String key) {
+        if (key == null) {
+            return List.of();
+        }
+        return index.getOrDefault(key, List.of());
+    }
+}
@@ -0,0 +1,227 @@
+package com.loantrading.matching.repository;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Symmetric-delete index over the MEIs, LEIs and EINs of a snapshot, for identifiers that OCR
+ * misread by one character. Every known identifier is stored together with each of its
+ * one-character deletions; a misread identifier shares one of those variants with the identifier
+ * it was read from, so a lookup only probes the variants of the read value.
+ * <p>
+ * Candidates are ranked by an OCR confusion cost: swapping look-alike characters (O/0, I/1, l/1,
+ * S/5, B/8, Z/2, G/6) is cheaper than any other substitution, insertion or deletion. A repair is
+ * only returned when a single identifier has the lowest cost.
+ */
+public class IdentifierRepairIndex {
+    private static final int CONFUSION_COST = 1;
+    private static final int EDIT_COST = 2;
+
+    // A variant entry packs a hash of the variant above the number of the identifier it came from
+    private static final int OWNER_BITS = 26;
+    private static final long OWNER_MASK = (1L << OWNER_BITS) - 1;
+
+    private static final String[] CONFUSABLE = {"O0", "o0", "I1", "l1", "S5", "s5", "B8", "Z2", "G6"};
+
+    private final Variants meis;
+    private final Variants leis;
+    private final Variants eins;
+
+    public IdentifierRepairIndex(EntitySnapshot snapshot) {
+        this.meis = new Variants(snapshot.getMeis());
+        this.leis = new Variants(snapshot.getLeis());
+        this.eins = new Variants(snapshot.getEins());
+    }
+
+    /**
+     * Known MEI one OCR error away from the one read, or null if there is none or no single best
+     */
+    public Repair repairMEI(String mei) {
+        return mei == null ? null : meis.repair(mei);
+    }
+
+    public Repair repairLEI(String lei) {
+        return lei == null ? null : leis.repair(lei);
+    }
+
+    /**
+     * Known EIN one OCR error away from the one read, compared without dashes
+     */
+    public Repair repairEIN(String ein) {
+        return ein == null ? null : eins.repair(EntitySnapshot.normalizeEin(ein));
+    }
+
+    public int size() {
+        return meis.identifiers.length + leis.identifiers.length + eins.identifiers.length;
+    }
+
+    /**
+     * A known identifier found for a misread one
+     */
+    public static final class Repair {
+        private final String identifier;
+        private final boolean confusion;
+
+        Repair(String identifier, boolean confusion) {
+            this.identifier = identifier;
+            this.confusion = confusion;
+        }
+
+        /**
+         * The known identifier, as stored in the snapshot
+         */
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        /**
+         * Whether the two differ only by a pair of look-alike characters
+         */
+        public boolean isConfusion() {
+            return confusion;
+        }
+    }
+
+    /**
+     * Identifiers of one kind and their deletion variants, sorted by variant hash
+     */
+    private static final class Variants {
+        private final String[] identifiers;
+        private final long[] entries;
+
+        Variants(Collection<String> keys) {
+            this.identifiers = keys.toArray(new String[0]);
+            if (identifiers.length > OWNER_MASK) {
+                throw new IllegalArgumentException("Too many identifiers to index: " + identifiers.length);
+            }
+
+            int count = 0;
+            for (String identifier : identifiers) {
+                count += identifier.length() + 1;
+            }
+            this.entries = new long[count];
+            int next = 0;
+            for (int owner = 0; owner < identifiers.length; owner++) {
+                String identifier = identifiers[owner];
+                entries[next++] = entry(hash(identifier, -1), owner);
+                for (int skip = 0; skip < identifier.length(); skip++) {
+                    entries[next++] = entry(hash(identifier, skip), owner);
+                }
+            }
+            Arrays.sort(entries);
+        }
+
+        Repair repair(String read) {
+            int bestOwner = -1;
+            int bestCost = Integer.MAX_VALUE;
+            boolean tied = false;
+            for (int skip = -1; skip < read.length(); skip++) {
+                long prefix = hash(read, skip) << OWNER_BITS;
+                int i = lowerBound(prefix);
+                for (; i < entries.length && (entries[i] & ~OWNER_MASK) == prefix; i++) {
+                    int owner = (int) (entries[i] & OWNER_MASK);
+                    if (owner == bestOwner) {
+                        continue;
+                    }
+                    // Hashes can collide, so every candidate is checked against the read value
+                    int cost = cost(read, identifiers[owner]);
+                    if (cost < 0) {
+                        continue;
+                    }
+                    if (cost == 0) {
+                        return null; // Known as read; nothing to repair
+                    }
+                    if (cost < bestCost) {
+                        bestOwner = owner;
+                        bestCost = cost;
+                        tied = false;
+                    } else if (cost == bestCost) {
+                        tied = true;
+                    }
+                }
+            }
+            if (bestOwner < 0 || tied) {
+                return null;
+            }
+            return new Repair(identifiers[bestOwner], bestCost == CONFUSION_COST);
+        }
+
+        private int lowerBound(long value) {
+            int low = 0;
+            int high = entries.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (entries[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private static long entry(long hash, int owner) {
+        return hash << OWNER_BITS | owner;
+    }
+
+    /**
+     * Hash of a value with the character at {@code skip} left out (none if negative),
+     * kept to the bits above the owner number and non-negative so entries sort by it
+     */
+    private static long hash(String value, int skip) {
+        long hash = 1125899906842597L;
+        for (int i = 0; i < value.length(); i++) {
+            if (i != skip) {
+                hash = 31 * hash + value.charAt(i);
+            }
+        }
+        hash ^= hash >>> 29;
+        hash *= 0xBF58476D1CE4E5B9L;
+        hash ^= hash >>> 32;
+        return hash >>> (OWNER_BITS + 1);
+    }
+
+    /**
+     * OCR cost of turning one identifier into the other: 0 if equal, -1 if more than one edit apart
+     */
+    private static int cost(String read, String known) {
+        int lengthDifference = read.length() - known.length();
+        if (lengthDifference == 0) {
+            int mismatch = -1;
+            for (int i = 0; i < read.length(); i++) {
+                if (read.charAt(i) != known.charAt(i)) {
+                    if (mismatch >= 0) {
+                        return -1;
+                    }
+                    mismatch = i;
+                }
+            }
+            if (mismatch < 0) {
+                return 0;
+            }
+            return isConfusable(read.charAt(mismatch), known.charAt(mismatch)) ? CONFUSION_COST : EDIT_COST;
+        }
+        if (Math.abs(lengthDifference) != 1) {
+            return -1;
+        }
+
+        String longer = lengthDifference > 0 ? read : known;
+        String shorter = lengthDifference > 0 ? known : read;
+        int i = 0;
+        while (i < shorter.length() && shorter.charAt(i) == longer.charAt(i)) {
+            i++;
+        }
+        return shorter.regionMatches(i, longer, i + 1, shorter.length() - i) ? EDIT_COST : -1;
+    }
+
+    private static boolean isConfusable(char first, char second) {
+        for (String pair : CONFUSABLE) {
+            if ((pair.charAt(0) == first && pair.charAt(1) == second) ||
+                (pair.charAt(0) == second && pair.charAt(1) == first)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
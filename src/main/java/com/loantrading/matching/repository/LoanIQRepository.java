@@ -1,13 +1,11 @@
 package com.loantrading.matching.repository;
 
 import com.loantrading.matching.entity.LoanIQEntity;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
@@ -15,76 +13,304 @@ import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import javax.sql.DataSource;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 /**
- * Repository for accessing LoanIQ database
+ * Repository for accessing LoanIQ database.
+ * Each operation borrows a connection from the data source and returns it when done,
+ * so the repository is safe to share between matching threads.
  */
 public class LoanIQRepository {
     private static final Logger logger = LoggerFactory.getLogger(LoanIQRepository.class);
     
-    private final Connection connection;
-    private final LoadingCache<String, List<LoanIQEntity>> cache;
-    private final Map<String, PreparedStatement> statements;
+    // Re-read rows this far behind the high-water mark to pick up late-committing transactions
+    private static final long REFRESH_OVERLAP_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    
+    // Keys per IN-list round trip; shorter chunks are padded so each batch query is prepared once
+    private static final int BATCH_CHUNK_SIZE = 50;
+    
+    // Same cap as the LIMIT in findByName.sql
+    private static final int NAME_CANDIDATE_LIMIT = 100;
+    
+    // Rows per round trip: lookups fit in one (name searches return up to 100 rows),
+    // bulk loads stream in large blocks instead of the driver default (10 rows on Oracle)
+    private static final int LOOKUP_FETCH_SIZE = NAME_CANDIDATE_LIMIT;
+    private static final int BULK_FETCH_SIZE = 1000;
+    
+    private final DataSource dataSource;
+    private final boolean offline;
+    private final Path snapshotFile;
+    private final QueryCaches caches;
+    private final Map<String, String> queries;
+    private final boolean keyFilterEnabled;
+    private final boolean nameIndexEnabled;
+    private final boolean phoneticIndexEnabled;
+    private final boolean identifierRepairEnabled;
+    private final boolean hierarchyEnabled;
+    private final boolean duplicateClustersEnabled;
+    private final LookupSidecar sidecar;
+    private final String sidecarSchema;
+    // DDL scripts for the sidecar tables, in the order they are applied
+    private final List<String> sidecarSchemaScripts = new ArrayList<>();
+    private final ScheduledExecutorService refresher;
+    // Rebuilds the indexes derived from the snapshot after delta refresh, off the refresh thread
+    private final ScheduledExecutorService indexer;
+    private final long indexRebuildDelaySeconds;
+    private final AtomicBoolean indexRebuildScheduled = new AtomicBoolean();
+    private final ExecutorService ioExecutor;
+    private final Map<Long, LocalDateTime> recentlyApplied;
+    private final AtomicLong dataVersion = new AtomicLong();
+    // Told of snapshot rows as they are loaded or refreshed, before lookups can return them
+    private final List<Consumer<Collection<LoanIQEntity>>> snapshotListeners = new CopyOnWriteArrayList<>();
+    private volatile EntitySnapshot snapshot;
+    private volatile EntityKeyFilter keyFilter;
+    private volatile NameTrigramIndex nameIndex;
+    private volatile PhoneticNameIndex phoneticIndex;
+    // Rows changed since the name indexes were built. Readers take it before the indexes and
+    // writers publish it after them, so a reader never pairs a pruned delta with older indexes.
+    private volatile NameIndexDelta nameIndexDelta;
+    // Counts installed snapshots, so a background rebuild never replaces newer indexes
+    private volatile long snapshotGeneration;
+    private volatile IdentifierRepairIndex repairIndex;
+    private volatile EntityHierarchy hierarchy;
+    private volatile DuplicateClusters duplicateClusters;
+    private volatile Timestamp highWaterMark;
+    private volatile boolean snapshotFileStale;
     
     public LoanIQRepository(Connection connection) {
-        this.connection = connection;
-        this.statements = new HashMap<>();
-        
-        // Initialize cache with 10 minute expiry
-        this.cache = CacheBuilder.newBuilder()
-            .maximumSize(1000)
-            .expireAfterWrite(10, TimeUnit.MINUTES)
-            .build(new CacheLoader<String, List<LoanIQEntity>>() {
-                @Override
-                public List<LoanIQEntity> load(String key) throws Exception {
-                    return loadFromDatabase(key);
-                }
-            });
+        this(connection, new RepositoryConfig());
+    }
+    
+    /**
+     * Use a single connection; operations from concurrent threads are serialized on it
+     */
+    public LoanIQRepository(Connection connection, RepositoryConfig config) {
+        this(new SingleConnectionDataSource(connection), config);
+    }
+    
+    /**
+     * Borrow a connection per operation from a pooled data source.
+     * Statement reuse is left to the pool or the driver's per-connection statement cache.
+     * A null data source runs offline from the configured snapshot file.
+     */
+    public LoanIQRepository(DataSource dataSource, RepositoryConfig config) {
+        this.dataSource = dataSource;
+        this.offline = dataSource == null;
+        if (!offline) {
+            config.validate();
+        }
+        this.snapshotFile = config.getSnapshotFile();
+        this.queries = new HashMap<>();
+        this.keyFilterEnabled = config.isKeyFilterEnabled();
+        // Offline, name searches can only be answered by the index
+        this.nameIndexEnabled = config.isNameIndexEnabled() || offline;
+        this.phoneticIndexEnabled = config.isPhoneticIndexEnabled();
+        this.identifierRepairEnabled = config.isIdentifierRepairEnabled();
+        this.hierarchyEnabled = config.isHierarchyEnabled();
+        this.duplicateClustersEnabled = config.isDuplicateClustersEnabled();
+        this.indexRebuildDelaySeconds = config.getIndexRebuildDelaySeconds();
+        this.nameIndexDelta = NameIndexDelta.empty(nameIndexEnabled, phoneticIndexEnabled);
+        this.sidecar = config.isSidecarEnabled() && !offline ? new LookupSidecar(queries) : null;
+        this.sidecarSchema = config.getSidecarSchema();
+        
+        this.recentlyApplied = new HashMap<>();
+        
+        // One cache per query type, sized and expired per RepositoryConfig
+        this.caches = new QueryCaches(config, this::loadFromDatabase);
         
         try {
-            prepareStatements();
+            loadQueries();
         } catch (SQLException e) {
-            throw new RuntimeException("Failed to prepare statements", e);
+            throw new RuntimeException("Failed to load queries", e);
+        }
+        
+        if (snapshotFile != null && Files.isRegularFile(snapshotFile)) {
+            try {
+                openSnapshotFile(snapshotFile);
+            } catch (IOException e) {
+                if (offline) {
+                    throw new IllegalStateException("Cannot open snapshot file for offline matching: " + snapshotFile, e);
+                }
+                logger.error("Failed to open snapshot file {}, loading from the database", snapshotFile, e);
+            }
+        } else if (offline) {
+            throw new IllegalStateException("Offline matching requires an existing snapshot file");
         }
+        
+        if (snapshot != null && !offline) {
+            try {
+                // Catch up with the rows changed since the file was written
+                refreshChanges();
+            } catch (SQLException e) {
+                logger.error("Failed to refresh snapshot file contents, lookups may be stale", e);
+            }
+        } else if (config.isSnapshotEnabled() && snapshot == null) {
+            try {
+                loadSnapshot();
+            } catch (SQLException e) {
+                // Lookups keep working against the database
+                logger.error("Failed to load entity snapshot, falling back to database lookups", e);
+            }
+        }
+        
+        if (config.getRefreshIntervalSeconds() > 0 && !offline && highWaterMark == null) {
+            try {
+                // Track from before the key filter and hierarchy are read, so the first poll
+                // picks up rows changed while they load or before it runs
+                seedHighWaterMark();
+            } catch (SQLException e) {
+                logger.error("Failed to read the refresh high-water mark, the first poll will start from it", e);
+            }
+        }
+        
+        if (keyFilterEnabled && keyFilter == null) {
+            try {
+                loadKeyFilter();
+            } catch (SQLException e) {
+                logger.error("Failed to build key filters, all lookups will query the database", e);
+            }
+        }
+        
+        if (hierarchyEnabled && hierarchy == null) {
+            try {
+                loadHierarchy();
+            } catch (SQLException e) {
+                logger.error("Failed to load entity hierarchy, location lookups will join entity_locations", e);
+            }
+        }
+        
+        if (sidecar != null) {
+            try {
+                syncSidecar();
+            } catch (SQLException e) {
+                // The sidecar queries cannot be trusted with stale lookup tables
+                throw new RuntimeException("Failed to synchronize lookup sidecar tables", e);
+            }
+        }
+        
+        if (config.getRefreshIntervalSeconds() > 0 && !offline) {
+            this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "loaniq-refresher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = config.getRefreshIntervalSeconds();
+            refresher.scheduleWithFixedDelay(this::refreshQuietly, interval, interval, TimeUnit.SECONDS);
+            logger.info("Delta refresh scheduled every {} seconds", interval);
+        } else {
+            this.refresher = null;
+        }
+        
+        if (!offline && (nameIndexEnabled || phoneticIndexEnabled || identifierRepairEnabled ||
+                         duplicateClustersEnabled)) {
+            this.indexer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "loaniq-indexer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.indexer = null;
+        }
+        
+        // Runs the asynchronous finders; threads mostly wait on the database
+        this.ioExecutor = Executors.newFixedThreadPool(config.getIoThreads(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "loaniq-io-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
     }
     
-    private void prepareStatements() throws SQLException {
+    private void loadQueries() throws SQLException {
         try {
-            URI uri = getClass().getClassLoader().getResource("sql").toURI();
-            try (Stream<Path> paths = Files.walk(Paths.get(uri))) {
-                paths.filter(Files::isRegularFile)
-                        .forEach(path -> {
-                            try {
-                                String query = new String(Files.readAllBytes(path));
-                                String key = path.getFileName().toString().replace(".sql", "");
-                                statements.put(key, connection.prepareStatement(query));
-                            } catch (Exception e) {
-                                throw new RuntimeException("Failed to prepare statement for: " + path, e);
-                            }
-                        });
+            Path root = Paths.get(getClass().getClassLoader().getResource("sql").toURI());
+            loadQueryDirectory(root);
+            if (sidecar != null) {
+                // Same query names rewritten against the normalized lookup tables, plus the word-indexed name queries
+                Path sidecarDir = root.resolve("sidecar");
+                loadQueryDirectory(sidecarDir);
+                queries.replaceAll((name, sql) -> sql.replace("{schema}", sidecarSchema));
+                try (Stream<Path> paths = Files.list(sidecarDir.resolve("ddl"))) {
+                    paths.filter(Files::isRegularFile)
+                            .sorted()
+                            .forEach(path -> sidecarSchemaScripts.add(
+                                    readQuery(path).replace("{schema}", sidecarSchema)));
+                }
             }
         } catch (Exception e) {
             throw new SQLException("Error loading queries from sql directory", e);
         }
     }
     
+    private void loadQueryDirectory(Path dir) throws Exception {
+        try (Stream<Path> paths = Files.list(dir)) {
+            paths.filter(Files::isRegularFile)
+                    .forEach(path -> queries.put(queryKey(path), readQuery(path)));
+        }
+        
+        // Multi-key templates: expand the {keys} placeholder to a fixed-size IN-list
+        Path batchDir = dir.resolve("batch");
+        if (Files.isDirectory(batchDir)) {
+            String placeholders = String.join(", ", Collections.nCopies(BATCH_CHUNK_SIZE, "?"));
+            try (Stream<Path> paths = Files.list(batchDir)) {
+                paths.filter(Files::isRegularFile)
+                        .forEach(path -> queries.put(queryKey(path),
+                                readQuery(path).replace("{keys}", placeholders)));
+            }
+        }
+    }
+    
+    private static String queryKey(Path path) {
+        return path.getFileName().toString().replace(".sql", "");
+    }
+    
+    private static String readQuery(Path path) {
+        try {
+            return new String(Files.readAllBytes(path));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to read query: " + path, e);
+        }
+    }
+    
     /**
      * Find entities by MEI
      */
     public List<LoanIQEntity> findByMEI(String mei) {
         if (mei == null) return new ArrayList<>();
         
-        try {
-            return cache.get("MEI:" + mei);
-        } catch (Exception e) {
-            logger.error("Error finding by MEI: {}", mei, e);
+        EntitySnapshot current = snapshot;
+        if (current != null) {
+            return current.findByMEI(mei);
+        }
+        
+        EntityKeyFilter filter = keyFilter;
+        if (filter != null && !filter.mightContainMEI(mei)) {
             return new ArrayList<>();
         }
+        
+        return cachedQuery(CachedQuery.MEI, mei);
     }
     
     /**
@@ -93,12 +319,17 @@ public class LoanIQRepository {
     public List<LoanIQEntity> findByLEI(String lei) {
         if (lei == null) return new ArrayList<>();
         
-        try {
-            return cache.get("LEI:" + lei);
-        } catch (Exception e) {
-            logger.error("Error finding by LEI: {}", lei, e);
+        EntitySnapshot current = snapshot;
+        if (current != null) {
+            return current.findByLEI(lei);
+        }
+        
+        EntityKeyFilter filter = keyFilter;
+        if (filter != null && !filter.mightContainLEI(lei)) {
             return new ArrayList<>();
         }
+        
+        return cachedQuery(CachedQuery.LEI, lei);
     }
     
     /**
@@ -107,12 +338,254 @@ public class LoanIQRepository {
     public List<LoanIQEntity> findByEIN(String ein) {
         if (ein == null) return new ArrayList<>();
         
-        try {
-            return cache.get("EIN:" + ein);
-        } catch (Exception e) {
-            logger.error("Error finding by EIN: {}", ein, e);
+        EntitySnapshot current = snapshot;
+        if (current != null) {
+            return current.findByEIN(ein);
+        }
+        
+        EntityKeyFilter filter = keyFilter;
+        if (filter != null && !filter.mightContainEIN(ein)) {
             return new ArrayList<>();
         }
+        
+        return cachedQuery(CachedQuery.EIN, EntitySnapshot.normalizeEin(ein));
+    }
+    
+    /**
+     * Known MEI one OCR error away from a MEI that found nothing, or null.
+     * Answered from the repair index only; null when it is not built.
+     */
+    public IdentifierRepairIndex.Repair repairMEI(String mei) {
+        IdentifierRepairIndex index = repairIndex;
+        return index == null ? null : index.repairMEI(mei);
+    }
+    
+    /**
+     * Known LEI one OCR error away from a LEI that found nothing, or null
+     */
+    public IdentifierRepairIndex.Repair repairLEI(String lei) {
+        IdentifierRepairIndex index = repairIndex;
+        return index == null ? null : index.repairLEI(lei);
+    }
+    
+    /**
+     * Known EIN one OCR error away from an EIN that found nothing, or null
+     */
+    public IdentifierRepairIndex.Repair repairEIN(String ein) {
+        IdentifierRepairIndex index = repairIndex;
+        return index == null ? null : index.repairEIN(ein);
+    }
+    
+    /**
+     * Find entities by MEI without blocking the caller
+     */
+    public CompletableFuture<List<LoanIQEntity>> findByMEIAsync(String mei) {
+        return supplyAsync(() -> findByMEI(mei), mei == null || snapshot != null);
+    }
+    
+    /**
+     * Find entities by LEI without blocking the caller
+     */
+    public CompletableFuture<List<LoanIQEntity>> findByLEIAsync(String lei) {
+        return supplyAsync(() -> findByLEI(lei), lei == null || snapshot != null);
+    }
+    
+    /**
+     * Find entities by EIN without blocking the caller
+     */
+    public CompletableFuture<List<LoanIQEntity>> findByEINAsync(String ein) {
+        return supplyAsync(() -> findByEIN(ein), ein == null || snapshot != null);
+    }
+    
+    /**
+     * Find entities by Debt Domain ID without blocking the caller
+     */
+    public CompletableFuture<List<LoanIQEntity>> findByDebtDomainIdAsync(String debtDomainId) {
+        return supplyAsync(() -> findByDebtDomainId(debtDomainId), debtDomainId == null || snapshot != null);
+    }
+    
+    /**
+     * Find candidates by name without blocking the caller
+     */
+    public CompletableFuture<List<LoanIQEntity>> findCandidatesByNameAsync(String legalName, String fundManager) {
+        return supplyAsync(() -> findCandidatesByName(legalName, fundManager),
+            legalName == null || nameIndex != null);
+    }
+    
+    /**
+     * Find candidates whose names sound like the given names without blocking the caller
+     */
+    public CompletableFuture<List<LoanIQEntity>> findCandidatesByPhoneticKeyAsync(String legalName,
+                                                                                  String fundManager) {
+        return CompletableFuture.completedFuture(findCandidatesByPhoneticKey(legalName, fundManager));
+    }
+    
+    /**
+     * Find entities by email domain without blocking the caller
+     */
+    public CompletableFuture<List<LoanIQEntity>> findByEmailDomainAsync(String emailDomain) {
+        return supplyAsync(() -> findByEmailDomain(emailDomain), emailDomain == null || offline);
+    }
+    
+    /**
+     * Run a lookup on the I/O executor, or inline when it is answered from memory
+     * and a thread hand-off would cost more than the lookup itself
+     */
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> lookup, boolean inMemory) {
+        if (inMemory) {
+            return CompletableFuture.completedFuture(lookup.get());
+        }
+        return CompletableFuture.supplyAsync(lookup, ioExecutor);
+    }
+    
+    /**
+     * Find entities for many MEIs at once.
+     * Keys not yet cached are resolved with chunked IN-list queries instead of one query per key.
+     *
+     * @return results keyed by the requested MEI, with an empty list for keys that matched nothing
+     */
+    public Map<String, List<LoanIQEntity>> findByMEIs(Collection<String> meis) {
+        EntitySnapshot current = snapshot;
+        if (current != null) {
+            return lookupAll(meis, current::findByMEI);
+        }
+        EntityKeyFilter filter = keyFilter;
+        return findAllCached(CachedQuery.MEI, "findByMEIs", meis, mei -> mei,
+            filter != null ? filter::mightContainMEI : key -> true);
+    }
+    
+    /**
+     * Find entities for many LEIs at once
+     *
+     * @return results keyed by the requested LEI, with an empty list for keys that matched nothing
+     */
+    public Map<String, List<LoanIQEntity>> findByLEIs(Collection<String> leis) {
+        EntitySnapshot current = snapshot;
+        if (current != null) {
+            return lookupAll(leis, current::findByLEI);
+        }
+        EntityKeyFilter filter = keyFilter;
+        return findAllCached(CachedQuery.LEI, "findByLEIs", leis, lei -> lei,
+            filter != null ? filter::mightContainLEI : key -> true);
+    }
+    
+    /**
+     * Find entities for many EINs at once. EINs are compared without dashes, as in findByEIN.
+     *
+     * @return results keyed by the requested EIN, with an empty list for keys that matched nothing
+     */
+    public Map<String, List<LoanIQEntity>> findByEINs(Collection<String> eins) {
+        EntitySnapshot current = snapshot;
+        if (current != null) {
+            return lookupAll(eins, current::findByEIN);
+        }
+        EntityKeyFilter filter = keyFilter;
+        return findAllCached(CachedQuery.EIN, "findByEINs", eins, EntitySnapshot::normalizeEin,
+            filter != null ? filter::mightContainEIN : key -> true);
+    }
+    
+    private static Map<String, List<LoanIQEntity>> lookupAll(Collection<String> keys,
+                                                             Function<String, List<LoanIQEntity>> finder) {
+        Map<String, List<LoanIQEntity>> results = new LinkedHashMap<>();
+        for (String key : keys) {
+            if (key != null) {
+                results.put(key, finder.apply(key));
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Serve the keys that are cached, drop the ones the key filter rules out,
+     * and resolve the rest in IN-list chunks, caching what was loaded
+     */
+    private Map<String, List<LoanIQEntity>> findAllCached(CachedQuery query, String statementKey,
+                                                          Collection<String> keys,
+                                                          Function<String, String> normalizer,
+                                                          Predicate<String> mightExist) {
+        Map<String, List<LoanIQEntity>> results = new LinkedHashMap<>();
+        // Normalized key -> requested keys it answers (several EIN spellings may share one)
+        Map<String, List<String>> misses = new LinkedHashMap<>();
+        
+        for (String key : keys) {
+            if (key == null || results.containsKey(key)) {
+                continue;
+            }
+            List<LoanIQEntity> cached = caches.getIfPresent(query, normalizer.apply(key));
+            if (cached != null) {
+                results.put(key, cached);
+            } else if (!mightExist.test(key)) {
+                results.put(key, new ArrayList<>());
+            } else {
+                results.put(key, null);
+                misses.computeIfAbsent(normalizer.apply(key), k -> new ArrayList<>()).add(key);
+            }
+        }
+        
+        if (misses.isEmpty()) {
+            return results;
+        }
+        
+        Map<String, List<LoanIQEntity>> loaded = new HashMap<>();
+        try {
+            loaded = executeBatchQuery(statementKey, new ArrayList<>(misses.keySet()));
+        } catch (SQLException e) {
+            logger.error("Batched {} lookup failed for {} keys", query, misses.size(), e);
+            for (List<String> requested : misses.values()) {
+                for (String key : requested) {
+                    results.put(key, new ArrayList<>());
+                }
+            }
+            return results;
+        }
+        
+        for (Map.Entry<String, List<String>> miss : misses.entrySet()) {
+            List<LoanIQEntity> found = List.copyOf(loaded.getOrDefault(miss.getKey(), List.of()));
+            caches.put(query, miss.getKey(), found);
+            for (String key : miss.getValue()) {
+                results.put(key, found);
+            }
+        }
+        
+        logger.debug("Batched {} lookup: {} keys, {} from database", query, results.size(), misses.size());
+        return results;
+    }
+    
+    /**
+     * Run a multi-key query over the keys in chunks, grouping rows by the matched_key column.
+     * Within each key, main records precede location records as in the single-key queries.
+     */
+    private Map<String, List<LoanIQEntity>> executeBatchQuery(String statementKey, List<String> keys)
+            throws SQLException {
+        Map<String, List<LoanIQEntity>> results = new HashMap<>();
+        
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(queries.get(statementKey))) {
+            stmt.setFetchSize(BULK_FETCH_SIZE);
+            for (int from = 0; from < keys.size(); from += BATCH_CHUNK_SIZE) {
+                List<String> chunk = keys.subList(from, Math.min(from + BATCH_CHUNK_SIZE, keys.size()));
+                for (int i = 0; i < BATCH_CHUNK_SIZE; i++) {
+                    // Pad with the last key; duplicates in an IN-list do not duplicate rows
+                    String value = chunk.get(Math.min(i, chunk.size() - 1));
+                    stmt.setString(i + 1, value);
+                    stmt.setString(BATCH_CHUNK_SIZE + i + 1, value);
+                }
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    EntityRowMapper mapper = new EntityRowMapper(rs.getMetaData());
+                    int matchedKey = rs.findColumn("matched_key");
+                    while (rs.next()) {
+                        results.computeIfAbsent(rs.getString(matchedKey), k -> new ArrayList<>())
+                            .add(mapper.map(rs));
+                    }
+                }
+            }
+        }
+        
+        for (List<LoanIQEntity> rows : results.values()) {
+            rows.sort(Comparator.comparing(LoanIQEntity::isLocation));
+        }
+        return results;
     }
     
     /**
@@ -121,7 +594,17 @@ public class LoanIQRepository {
     public List<LoanIQEntity> findByDebtDomainId(String debtDomainId) {
         if (debtDomainId == null) return new ArrayList<>();
         
-        return executeQuery("findByDebtDomainId", debtDomainId);
+        EntitySnapshot current = snapshot;
+        if (current != null) {
+            return current.findByDebtDomainId(debtDomainId);
+        }
+        
+        EntityKeyFilter filter = keyFilter;
+        if (filter != null && !filter.mightContainDebtDomainId(debtDomainId)) {
+            return new ArrayList<>();
+        }
+        
+        return cachedQuery(CachedQuery.DEBT_DOMAIN_ID, debtDomainId);
     }
     
     /**
@@ -131,35 +614,67 @@ public class LoanIQRepository {
         List<LoanIQEntity> candidates = new ArrayList<>();
         
         if (legalName != null) {
-            String pattern = "%" + legalName.toLowerCase() + "%";
-            String fmPattern = fundManager != null ? 
-                "%" + fundManager.toLowerCase() + "%" : pattern;
+            NameIndexDelta delta = nameIndexDelta;
+            NameTrigramIndex index = nameIndex;
+            if (index != null) {
+                return delta.searchNames(index, legalName, fundManager, NAME_CANDIDATE_LIMIT);
+            }
             
-            PreparedStatement stmt = statements.get("findByName");
-            try {
-                stmt.setString(1, pattern);
-                stmt.setString(2, pattern);
-                stmt.setString(3, fmPattern);
-                stmt.setString(4, legalName);
-                stmt.setString(5, legalName);
-                
-                candidates.addAll(executeStatement(stmt));
-            } catch (SQLException e) {
-                logger.error("Error finding candidates by name", e);
+            EntityKeyFilter filter = keyFilter;
+            if (filter != null && !filter.mightMatchName(legalName, fundManager)) {
+                logger.debug("Key filter rules out name candidates for: {}", legalName);
+                return candidates;
             }
+            
+            // NUL cannot appear in a name, so it separates the two parts of the cache key
+            String key = fundManager != null ? legalName + '\0' + fundManager : legalName;
+            candidates.addAll(cachedQuery(CachedQuery.NAME, key));
         }
         
         return candidates;
     }
     
+    /**
+     * Find candidates whose name, short name or ultimate parent words sound like those of the
+     * given names. Answered from the phonetic index only; empty when it is not built.
+     */
+    public List<LoanIQEntity> findCandidatesByPhoneticKey(String legalName, String fundManager) {
+        NameIndexDelta delta = nameIndexDelta;
+        PhoneticNameIndex index = phoneticIndex;
+        if (legalName == null || index == null) {
+            return new ArrayList<>();
+        }
+        return delta.searchPhonetic(index, legalName, fundManager, NAME_CANDIDATE_LIMIT);
+    }
+    
+    private List<LoanIQEntity> loadCandidatesByName(String key) throws SQLException {
+        int separator = key.indexOf('\0');
+        String legalName = separator < 0 ? key : key.substring(0, separator);
+        String fundManager = separator < 0 ? null : key.substring(separator + 1);
+        
+        String pattern = "%" + legalName.toLowerCase() + "%";
+        String fmPattern = fundManager != null ? 
+            "%" + fundManager.toLowerCase() + "%" : pattern;
+        
+        if (sidecar != null) {
+            // Names the word index cannot narrow down, such as single words, take the scan below
+            String word = LookupSidecar.wordPattern(legalName.toLowerCase());
+            String fmWord = fundManager != null ? LookupSidecar.wordPattern(fundManager.toLowerCase()) : word;
+            if (word != null && fmWord != null) {
+                return executeQuery("findByNameWords", word, fmWord,
+                    pattern, pattern, fmPattern, legalName, legalName);
+            }
+        }
+        return executeQuery("findByName", pattern, pattern, fmPattern, legalName, legalName);
+    }
+    
     /**
      * Find entities by email domain
      */
     public List<LoanIQEntity> findByEmailDomain(String emailDomain) {
         if (emailDomain == null) return new ArrayList<>();
         
-        String domainPattern = "%" + emailDomain.split("\\.")[0] + "%";
-        return executeQuery("findByEmailDomain", emailDomain, domainPattern, domainPattern);
+        return cachedQuery(CachedQuery.EMAIL_DOMAIN, emailDomain);
     }
     
     /**
@@ -168,8 +683,12 @@ public class LoanIQRepository {
     public List<LoanIQEntity> findByCleanedShortName(String cleanedShortName) {
         if (cleanedShortName == null) return new ArrayList<>();
         
-        return executeQuery("findByCleanedShortName",
-            cleanedShortName.toLowerCase().replaceAll("[^a-z0-9]", ""));
+        EntitySnapshot current = snapshot;
+        if (current != null) {
+            return current.findByCleanedShortName(cleanedShortName);
+        }
+        
+        return cachedQuery(CachedQuery.CLEANED_SHORT_NAME, EntitySnapshot.cleanShortName(cleanedShortName));
     }
     
     /**
@@ -178,52 +697,710 @@ public class LoanIQRepository {
     public LoanIQEntity findById(Long entityId) {
         if (entityId == null) return null;
         
-        List<LoanIQEntity> results = executeQuery("findById", entityId);
+        EntitySnapshot current = snapshot;
+        if (current != null) {
+            return current.findById(entityId);
+        }
+        
+        List<LoanIQEntity> results = cachedQuery(CachedQuery.ID, String.valueOf(entityId));
         return results.isEmpty() ? null : results.get(0);
     }
     
     /**
-     * Load data from database (called by cache)
+     * Parent customer of a location record, or null for main records and orphaned locations
+     */
+    public LoanIQEntity findParentCustomer(LoanIQEntity entity) {
+        if (entity == null || !entity.isLocation()) {
+            return null;
+        }
+        
+        Long parentId = entity.getParentCustomerId();
+        EntityHierarchy current = hierarchy;
+        if (parentId == null && current != null) {
+            parentId = current.getParentCustomerId(entity.getEntityId());
+        }
+        return findById(parentId);
+    }
+    
+    /**
+     * Location records registered under a customer
+     */
+    public List<LoanIQEntity> findLocations(Long customerId) {
+        if (customerId == null) return new ArrayList<>();
+        
+        EntityHierarchy current = hierarchy;
+        if (current == null) {
+            try {
+                return executeQuery("findLocationsByCustomer", customerId);
+            } catch (SQLException e) {
+                logger.error("Error finding locations of customer: {}", customerId, e);
+                return new ArrayList<>();
+            }
+        }
+        
+        List<LoanIQEntity> locations = new ArrayList<>();
+        for (Long locationId : current.getLocationIds(customerId)) {
+            LoanIQEntity row = findById(locationId);
+            if (row != null) {
+                locations.add(EntitySnapshot.locationView(row, customerId));
+            }
+        }
+        return locations;
+    }
+    
+    /**
+     * The other location records of a location's parent customer
      */
-    private List<LoanIQEntity> loadFromDatabase(String cacheKey) throws Exception {
-        String[] parts = cacheKey.split(":", 2);
-        if (parts.length != 2) {
+    public List<LoanIQEntity> findSiblingLocations(LoanIQEntity entity) {
+        if (entity == null || !entity.isLocation()) {
             return new ArrayList<>();
         }
         
-        String type = parts[0];
-        String value = parts[1];
+        Long parentId = entity.getParentCustomerId();
+        EntityHierarchy current = hierarchy;
+        if (parentId == null && current != null) {
+            parentId = current.getParentCustomerId(entity.getEntityId());
+        }
+        
+        List<LoanIQEntity> siblings = findLocations(parentId);
+        siblings.removeIf(location -> location.getEntityId().equals(entity.getEntityId()));
+        return siblings;
+    }
+    
+    /**
+     * Bulk-load the entities and entity_locations tables into an in-memory snapshot.
+     * Once loaded, identifier, short name and ID lookups no longer touch the database.
+     */
+    public void loadSnapshot() throws SQLException {
+        long start = System.currentTimeMillis();
+        
+        List<LoanIQEntity> entities;
+        List<EntityLocation> locations;
+        try (Connection connection = dataSource.getConnection()) {
+            entities = loadAllEntities(connection, "loadAllEntities");
+            locations = loadAllLocations(connection);
+        }
+        
+        EntitySnapshot loaded = new EntitySnapshot(entities, locations);
+        installSnapshot(loaded);
+        
+        logger.info("Loaded entity snapshot: {} entities, {} location records in {} ms",
+            loaded.getEntityCount(), loaded.getLocationCount(), System.currentTimeMillis() - start);
+        
+        if (snapshotFile != null) {
+            try {
+                exportSnapshot(snapshotFile);
+            } catch (IOException e) {
+                logger.error("Failed to write snapshot file {}", snapshotFile, e);
+            }
+        }
+    }
+    
+    /**
+     * Serve lookups from a snapshot previously written by {@link #exportSnapshot}.
+     * Delta refresh continues from the latest last_modified in the file.
+     */
+    public void openSnapshotFile(Path file) throws IOException {
+        long start = System.currentTimeMillis();
+        EntitySnapshot opened = SnapshotFile.read(file);
+        installSnapshot(opened);
+        
+        logger.info("Opened snapshot file {}: {} entities, {} location records in {} ms", file,
+            opened.getEntityCount(), opened.getLocationCount(), System.currentTimeMillis() - start);
+    }
+    
+    /**
+     * Write the loaded snapshot to a file that later processes can open instead of querying LoanIQ
+     */
+    public void exportSnapshot(Path file) throws IOException {
+        EntitySnapshot current = snapshot;
+        if (current == null) {
+            throw new IllegalStateException("No snapshot loaded");
+        }
+        
+        long start = System.currentTimeMillis();
+        SnapshotFile.write(current, file);
+        if (file.equals(snapshotFile)) {
+            snapshotFileStale = false;
+        }
+        logger.info("Wrote snapshot file {} in {} ms", file, System.currentTimeMillis() - start);
+    }
+    
+    private synchronized void installSnapshot(EntitySnapshot loaded) {
+        notifySnapshotListeners(loaded.getEntities());
+        this.snapshot = loaded;
+        this.hierarchy = loaded.getHierarchy();
+        
+        if (keyFilterEnabled) {
+            this.keyFilter = buildKeyFilter(loaded.getEntities(), loaded.getLocations());
+        }
+        if (nameIndexEnabled) {
+            this.nameIndex = buildNameIndex(loaded);
+        }
+        if (phoneticIndexEnabled) {
+            this.phoneticIndex = buildPhoneticIndex(loaded);
+        }
+        if (identifierRepairEnabled) {
+            this.repairIndex = buildRepairIndex(loaded);
+        }
+        if (duplicateClustersEnabled) {
+            this.duplicateClusters = buildDuplicateClusters(loaded);
+        }
+        this.nameIndexDelta = NameIndexDelta.empty(nameIndexEnabled, phoneticIndexEnabled);
+        snapshotGeneration++;
+        dataVersion.incrementAndGet();
+        
+        LocalDateTime maxModified = loaded.getMaxLastModified();
+        if (maxModified != null) {
+            this.highWaterMark = Timestamp.valueOf(maxModified);
+            rememberApplied(loaded.getEntities());
+        }
+    }
+    
+    /**
+     * Load the customer/location structure from entity_locations.
+     * Without a snapshot, identifier lookups then query only the entities table and
+     * add location records from the hierarchy, and parent and sibling resolution stays in memory.
+     */
+    public void loadHierarchy() throws SQLException {
+        EntitySnapshot current = snapshot;
+        if (current != null) {
+            this.hierarchy = current.getHierarchy();
+            return;
+        }
+        
+        long start = System.currentTimeMillis();
+        EntityHierarchy loaded;
+        try (Connection connection = dataSource.getConnection()) {
+            loaded = new EntityHierarchy(loadAllLocations(connection));
+        }
+        this.hierarchy = loaded;
+        dataVersion.incrementAndGet();
+        // Cached identifier results were built with the joined queries
+        caches.invalidateAll();
+        
+        logger.info("Loaded entity hierarchy: {} locations under {} customers in {} ms",
+            loaded.getLocationCount(), loaded.getCustomerCount(), System.currentTimeMillis() - start);
+    }
+    
+    /**
+     * Build the key filters from the identifiers and names currently in the database.
+     * With a snapshot loaded the filters are built from the snapshot instead.
+     */
+    public void loadKeyFilter() throws SQLException {
+        EntitySnapshot current = snapshot;
+        if (current != null) {
+            this.keyFilter = buildKeyFilter(current.getEntities(), current.getLocations());
+            return;
+        }
+        
+        try (Connection connection = dataSource.getConnection()) {
+            this.keyFilter = loadKeyFilter(connection);
+        }
+    }
+    
+    private EntityKeyFilter loadKeyFilter(Connection connection) throws SQLException {
+        // Only the key columns are selected; the mapper leaves the others unset
+        List<LoanIQEntity> entities = loadAllEntities(connection, "loadFilterKeys");
+        return buildKeyFilter(entities, loadAllLocations(connection));
+    }
+    
+    private static EntityKeyFilter buildKeyFilter(Collection<LoanIQEntity> entities,
+                                                  Collection<EntityLocation> locations) {
+        long start = System.currentTimeMillis();
+        
+        // Leave room for rows added by delta refresh before a rebuild is needed
+        EntityKeyFilter filter = new EntityKeyFilter(2L * (entities.size() + locations.size()));
+        entities.forEach(filter::add);
+        locations.forEach(filter::add);
+        
+        logger.info("Built key filters over {} entities and {} locations in {} ms",
+            entities.size(), locations.size(), System.currentTimeMillis() - start);
+        return filter;
+    }
+    
+    /**
+     * Rebuild the derived indexes once the rebuild delay has passed, unless a rebuild is already
+     * pending; changes applied until it starts are picked up by that one rebuild
+     */
+    private void scheduleIndexRebuild() {
+        if (indexer != null && indexRebuildScheduled.compareAndSet(false, true)) {
+            indexer.schedule(this::rebuildIndexesQuietly, indexRebuildDelaySeconds, TimeUnit.SECONDS);
+        }
+    }
+    
+    private void rebuildIndexesQuietly() {
+        try {
+            rebuildIndexes();
+        } catch (RuntimeException e) {
+            // The next applied change schedules another attempt; searches keep using the delta
+            logger.error("Index rebuild failed", e);
+        }
+    }
+    
+    /**
+     * Rebuild the name indexes, identifier repair index and duplicate clusters that are in use
+     * from the current snapshot, and publish them. Until then the previous ones keep serving,
+     * with name searches covering changed rows through the delta.
+     */
+    void rebuildIndexes() {
+        // Cleared first, so changes applied while this runs schedule another rebuild
+        indexRebuildScheduled.set(false);
+        long generation = snapshotGeneration;
+        EntitySnapshot source = snapshot;
+        if (source == null) {
+            return;
+        }
+        
+        NameTrigramIndex names = nameIndex != null ? buildNameIndex(source) : null;
+        PhoneticNameIndex phonetic = phoneticIndex != null ? buildPhoneticIndex(source) : null;
+        IdentifierRepairIndex repair = repairIndex != null ? buildRepairIndex(source) : null;
+        DuplicateClusters clusters = duplicateClusters != null ? buildDuplicateClusters(source) : null;
+        
+        // Serialized with refreshChanges, so no change lands between publishing and pruning the delta
+        synchronized (this) {
+            if (generation != snapshotGeneration) {
+                // A whole new snapshot was installed with indexes of its own
+                return;
+            }
+            if (names != null) {
+                this.nameIndex = names;
+            }
+            if (phonetic != null) {
+                this.phoneticIndex = phonetic;
+            }
+            if (repair != null) {
+                this.repairIndex = repair;
+            }
+            if (clusters != null) {
+                this.duplicateClusters = clusters;
+            }
+            this.nameIndexDelta = nameIndexDelta.since(source);
+        }
+    }
+    
+    private static DuplicateClusters buildDuplicateClusters(EntitySnapshot source) {
+        long start = System.currentTimeMillis();
+        DuplicateClusters clusters = new DuplicateClusters(source);
+        logger.info("Built {} duplicate clusters covering {} of {} entities in {} ms",
+            clusters.getClusters().size(), clusters.getDuplicatedEntityCount(), clusters.getEntityCount(),
+            System.currentTimeMillis() - start);
+        return clusters;
+    }
+    
+    private static NameTrigramIndex buildNameIndex(EntitySnapshot source) {
+        long start = System.currentTimeMillis();
+        NameTrigramIndex index = new NameTrigramIndex(source.getEntities());
+        logger.info("Built name trigram index over {} entities in {} ms",
+            index.size(), System.currentTimeMillis() - start);
+        return index;
+    }
+    
+    private static PhoneticNameIndex buildPhoneticIndex(EntitySnapshot source) {
+        long start = System.currentTimeMillis();
+        PhoneticNameIndex index = new PhoneticNameIndex(source.getEntities());
+        logger.info("Built phonetic name index over {} entities in {} ms",
+            index.size(), System.currentTimeMillis() - start);
+        return index;
+    }
+    
+    private static IdentifierRepairIndex buildRepairIndex(EntitySnapshot source) {
+        long start = System.currentTimeMillis();
+        IdentifierRepairIndex index = new IdentifierRepairIndex(source);
+        logger.info("Built identifier repair index over {} identifiers in {} ms",
+            index.size(), System.currentTimeMillis() - start);
+        return index;
+    }
+    
+    /**
+     * Poll for entities modified since the last high-water mark and apply them.
+     * With a snapshot loaded, a new snapshot with the changed rows is published atomically and
+     * the indexes derived from it are rebuilt later in the background (name searches see the
+     * changed rows at once through {@link NameIndexDelta});
+     * otherwise only the cache entries that reference a changed entity or one of its identifiers
+     * are evicted. Deleted rows and location rows whose entities row did not change are not
+     * detected, because entity_locations carries no last_modified column.
+     *
+     * @return number of changed entities applied
+     */
+    public synchronized int refreshChanges() throws SQLException {
+        if (offline) {
+            return 0;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            return refreshChanges(connection);
+        }
+    }
+    
+    private int refreshChanges(Connection connection) throws SQLException {
+        if (highWaterMark == null) {
+            // First poll: start tracking from the current state of the table
+            highWaterMark = queryMaxLastModified(connection);
+            if (highWaterMark == null) {
+                highWaterMark = new Timestamp(0);
+            }
+            return 0;
+        }
+        
+        Timestamp since = new Timestamp(highWaterMark.getTime() - REFRESH_OVERLAP_MILLIS);
+        
+        List<LoanIQEntity> changed = new ArrayList<>();
+        try (PreparedStatement entityStmt = prepareBulk(connection, "findEntitiesModifiedSince")) {
+            entityStmt.setTimestamp(1, since);
+            for (LoanIQEntity entity : executeStatement(entityStmt)) {
+                // Rows inside the overlap window are seen again on every poll
+                if (entity.getLastModified() == null ||
+                    !entity.getLastModified().equals(recentlyApplied.get(entity.getEntityId()))) {
+                    changed.add(entity);
+                }
+            }
+        }
+        
+        if (changed.isEmpty()) {
+            return 0;
+        }
+        
+        Set<Long> changedIds = new HashSet<>();
+        for (LoanIQEntity entity : changed) {
+            changedIds.add(entity.getEntityId());
+        }
+        
+        List<EntityLocation> changedLocations = findLocationsModifiedSince(connection, since, changedIds);
+        
+        EntitySnapshot current = snapshot;
+        if (current != null) {
+            EntitySnapshot updated = current.withChanges(changed, changedLocations);
+            if (nameIndex != null || phoneticIndex != null) {
+                this.nameIndexDelta = nameIndexDelta.withChanges(changed);
+            }
+            notifySnapshotListeners(changed);
+            this.snapshot = updated;
+            if (nameIndex != null || phoneticIndex != null || repairIndex != null || duplicateClusters != null) {
+                scheduleIndexRebuild();
+            }
+            this.hierarchy = updated.getHierarchy();
+            this.snapshotFileStale = true;
+        } else if (hierarchy != null) {
+            this.hierarchy = hierarchy.withChanges(changedIds, changedLocations);
+        }
+        caches.invalidate(changed, changedLocations);
+        if (sidecar != null) {
+            sidecar.apply(connection, changed, changedLocations);
+        }
+        dataVersion.incrementAndGet();
+        
+        EntityKeyFilter filter = keyFilter;
+        if (filter != null) {
+            changed.forEach(filter::add);
+            changedLocations.forEach(filter::add);
+            if (filter.isSaturated()) {
+                EntitySnapshot latest = snapshot;
+                this.keyFilter = latest != null ?
+                    buildKeyFilter(latest.getEntities(), latest.getLocations()) :
+                    loadKeyFilter(connection);
+            }
+        }
+        
+        advanceHighWaterMark(changed);
+        
+        logger.info("Applied {} changed entities ({} location records), high-water mark now {}",
+            changed.size(), changedLocations.size(), highWaterMark);
+        return changed.size();
+    }
+    
+    private List<EntityLocation> findLocationsModifiedSince(Connection connection, Timestamp since,
+                                                            Set<Long> entityIds) throws SQLException {
+        List<EntityLocation> locations = new ArrayList<>();
+        try (PreparedStatement stmt = prepareBulk(connection, "findLocationsModifiedSince")) {
+            stmt.setTimestamp(1, since);
+            for (EntityLocation location : executeLocationStatement(stmt)) {
+                if (entityIds.contains(location.getLocationId())) {
+                    locations.add(location);
+                }
+            }
+        }
+        return locations;
+    }
+    
+    /**
+     * Bring the lookup sidecar tables up to date: create any that are missing, then a full
+     * rebuild when they are empty, otherwise the rows changed since the latest last_modified they hold
+     */
+    private synchronized void syncSidecar() throws SQLException {
+        long start = System.currentTimeMillis();
+        
+        try (Connection connection = dataSource.getConnection()) {
+            sidecar.createTables(connection, sidecarSchemaScripts);
+            Timestamp sourceMark = queryMaxLastModified(connection);
+            Timestamp synced = sidecar.getHighWaterMark(connection);
+            
+            if (synced == null) {
+                EntitySnapshot current = snapshot;
+                Collection<LoanIQEntity> entities;
+                Collection<EntityLocation> locations;
+                if (current != null) {
+                    entities = current.getEntities();
+                    locations = current.getLocations();
+                } else {
+                    entities = loadAllEntities(connection, "loadAllEntities");
+                    locations = loadAllLocations(connection);
+                }
+                sidecar.rebuild(connection, entities, locations);
+                logger.info("Rebuilt lookup sidecar with {} entities and {} locations in {} ms",
+                    entities.size(), locations.size(), System.currentTimeMillis() - start);
+            } else {
+                Timestamp since = new Timestamp(synced.getTime() - REFRESH_OVERLAP_MILLIS);
+                List<LoanIQEntity> changed;
+                try (PreparedStatement stmt = prepareBulk(connection, "findEntitiesModifiedSince")) {
+                    stmt.setTimestamp(1, since);
+                    changed = executeStatement(stmt);
+                }
+                Set<Long> changedIds = new HashSet<>();
+                for (LoanIQEntity entity : changed) {
+                    changedIds.add(entity.getEntityId());
+                }
+                sidecar.apply(connection, changed, findLocationsModifiedSince(connection, since, changedIds));
+                logger.info("Applied {} changed entities to lookup sidecar in {} ms",
+                    changed.size(), System.currentTimeMillis() - start);
+            }
+            
+            // Delta refresh continues from where the sidecar was synchronized
+            if (highWaterMark == null && sourceMark != null) {
+                highWaterMark = sourceMark;
+            }
+        }
+    }
+    
+    private void refreshQuietly() {
+        try {
+            refreshChanges();
+        } catch (Exception e) {
+            // Keep the schedule alive; the next poll retries from the same high-water mark
+            logger.error("Delta refresh failed", e);
+        }
+    }
+    
+    private synchronized void seedHighWaterMark() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            Timestamp mark = queryMaxLastModified(connection);
+            highWaterMark = mark != null ? mark : new Timestamp(0);
+            try (PreparedStatement stmt = prepareBulk(connection, "findEntitiesModifiedSince")) {
+                stmt.setTimestamp(1, new Timestamp(highWaterMark.getTime() - REFRESH_OVERLAP_MILLIS));
+                rememberApplied(executeStatement(stmt));
+            }
+        }
+    }
+    
+    /**
+     * Record rows already reflected in memory whose last_modified falls in the overlap window,
+     * so the polls that read them again do not apply them a second time
+     */
+    private synchronized void rememberApplied(Collection<LoanIQEntity> rows) {
+        LocalDateTime horizon = highWaterMark.toLocalDateTime()
+            .minusNanos(TimeUnit.MILLISECONDS.toNanos(REFRESH_OVERLAP_MILLIS));
+        for (LoanIQEntity row : rows) {
+            LocalDateTime modified = row.getLastModified();
+            if (modified != null && !modified.isBefore(horizon)) {
+                recentlyApplied.put(row.getEntityId(), modified);
+            }
+        }
+    }
+    
+    private Timestamp queryMaxLastModified(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(queries.get("findMaxLastModified"));
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getTimestamp("last_modified") : null;
+        }
+    }
+    
+    private void advanceHighWaterMark(List<LoanIQEntity> changed) {
+        for (LoanIQEntity entity : changed) {
+            LocalDateTime modified = entity.getLastModified();
+            if (modified != null) {
+                recentlyApplied.put(entity.getEntityId(), modified);
+                if (modified.isAfter(highWaterMark.toLocalDateTime())) {
+                    highWaterMark = Timestamp.valueOf(modified);
+                }
+            }
+        }
         
-        switch (type) {
-            case "MEI":
-                return executeQuery("findByMEI", value, value);
-            case "LEI":
-                return executeQuery("findByLEI", value, value);
-            case "EIN":
-                return executeQuery("findByEIN", value, value);
+        LocalDateTime horizon = highWaterMark.toLocalDateTime()
+            .minusNanos(TimeUnit.MILLISECONDS.toNanos(REFRESH_OVERLAP_MILLIS));
+        recentlyApplied.values().removeIf(modified -> modified.isBefore(horizon));
+    }
+    
+    /**
+     * Duplicate clusters maintained over the snapshot, or null when they are not enabled
+     * or no snapshot is loaded. Rebuilt in the background after delta refresh changes the
+     * snapshot, so they may lag it by the configured index rebuild delay.
+     */
+    public DuplicateClusters getDuplicateClusters() {
+        return duplicateClusters;
+    }
+    
+    /**
+     * Compute duplicate clusters over the loaded snapshot, for one-off data quality reports
+     */
+    public DuplicateClusters computeDuplicateClusters() {
+        EntitySnapshot current = snapshot;
+        if (current == null) {
+            throw new IllegalStateException("No snapshot loaded");
+        }
+        return buildDuplicateClusters(current);
+    }
+    
+    /**
+     * Counter advanced whenever the repository applies changed LoanIQ data: a snapshot or
+     * hierarchy load, a delta refresh with changes, or a cache clear. Anything derived from
+     * lookups made at one version may be stale at another.
+     */
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+    
+    /**
+     * Whether lookups are currently served from an in-memory snapshot
+     */
+    public boolean isSnapshotLoaded() {
+        return snapshot != null;
+    }
+    
+    /**
+     * Have the listener told of snapshot entities as they are loaded or refreshed, starting with
+     * those of the current snapshot. Nothing is told while lookups go to the database.
+     */
+    public void addSnapshotListener(Consumer<Collection<LoanIQEntity>> listener) {
+        snapshotListeners.add(listener);
+        EntitySnapshot current = snapshot;
+        if (current != null) {
+            listener.accept(Collections.unmodifiableCollection(current.getEntities()));
+        }
+    }
+    
+    private void notifySnapshotListeners(Collection<LoanIQEntity> entities) {
+        Collection<LoanIQEntity> view = Collections.unmodifiableCollection(entities);
+        for (Consumer<Collection<LoanIQEntity>> listener : snapshotListeners) {
+            try {
+                listener.accept(view);
+            } catch (RuntimeException e) {
+                logger.error("Snapshot listener failed on {} entities", entities.size(), e);
+            }
+        }
+    }
+    
+    /**
+     * Run a cached query, loading it from the database on a miss.
+     * Failed loads are logged and not cached.
+     */
+    private List<LoanIQEntity> cachedQuery(CachedQuery query, String key) {
+        if (offline) {
+            // Only the snapshot answers; the remaining query types have no offline source
+            return new ArrayList<>();
+        }
+        try {
+            return caches.get(query, key);
+        } catch (Exception e) {
+            logger.error("Error running {} lookup for: {}", query, key, e);
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * Load data from database (called by the caches)
+     */
+    private List<LoanIQEntity> loadFromDatabase(CachedQuery query, String key) throws SQLException {
+        // With the hierarchy loaded, location records come from memory instead of the UNION branch
+        EntityHierarchy current = hierarchy;
+        switch (query) {
+            case MEI:
+                if (current != null) {
+                    return withLocations(executeQuery("findEntitiesByMEI", key), current.findByMEI(key));
+                }
+                return executeQuery("findByMEI", key, key);
+            case LEI:
+                if (current != null) {
+                    return withLocations(executeQuery("findEntitiesByLEI", key), current.findByLEI(key));
+                }
+                return executeQuery("findByLEI", key, key);
+            case EIN:
+                if (current != null) {
+                    return withLocations(executeQuery("findEntitiesByEIN", key), current.findByEIN(key));
+                }
+                return executeQuery("findByEIN", key, key);
+            case DEBT_DOMAIN_ID:
+                return executeQuery("findByDebtDomainId", key);
+            case ID:
+                return executeQuery("findById", Long.valueOf(key));
+            case CLEANED_SHORT_NAME:
+                return executeQuery("findByCleanedShortName", key);
+            case NAME:
+                return loadCandidatesByName(key);
+            case EMAIL_DOMAIN:
+                String root = key.split("\\.")[0];
+                String domainPattern = "%" + root + "%";
+                if (sidecar != null) {
+                    String rootWord = LookupSidecar.wordPattern(root.toLowerCase());
+                    if (rootWord != null) {
+                        return executeQuery("findByEmailDomainWords", key, rootWord,
+                            key, domainPattern, domainPattern);
+                    }
+                }
+                return executeQuery("findByEmailDomain", key, domainPattern, domainPattern);
             default:
                 return new ArrayList<>();
         }
     }
     
+    /**
+     * Append location records, in the shape the location branch of the lookup queries returns them
+     */
+    private List<LoanIQEntity> withLocations(List<LoanIQEntity> rows, List<EntityLocation> locations) {
+        for (EntityLocation location : locations) {
+            LoanIQEntity row = findById(location.getLocationId());
+            if (row != null) {
+                rows.add(EntitySnapshot.locationView(row, location.getParentCustomerId()));
+            }
+        }
+        return rows;
+    }
+    
     /**
      * Execute a query with parameters
      */
-    private List<LoanIQEntity> executeQuery(String statementKey, Object... params) {
-        PreparedStatement stmt = statements.get(statementKey);
-        if (stmt == null) {
-            logger.error("No prepared statement for key: {}", statementKey);
-            return new ArrayList<>();
+    private List<LoanIQEntity> executeQuery(String statementKey, Object... params) throws SQLException {
+        String query = queries.get(statementKey);
+        if (query == null) {
+            throw new SQLException("No query for key: " + statementKey);
         }
         
-        try {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setFetchSize(LOOKUP_FETCH_SIZE);
             for (int i = 0; i < params.length; i++) {
                 stmt.setObject(i + 1, params[i]);
             }
             return executeStatement(stmt);
-        } catch (SQLException e) {
-            logger.error("Query execution failed for: {}", statementKey, e);
-            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * Prepare a query that returns many rows, fetching them in large blocks
+     */
+    private PreparedStatement prepareBulk(Connection connection, String statementKey) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(queries.get(statementKey));
+        stmt.setFetchSize(BULK_FETCH_SIZE);
+        return stmt;
+    }
+    
+    private List<LoanIQEntity> loadAllEntities(Connection connection, String statementKey) throws SQLException {
+        try (PreparedStatement stmt = prepareBulk(connection, statementKey)) {
+            return executeStatement(stmt);
+        }
+    }
+    
+    private List<EntityLocation> loadAllLocations(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = prepareBulk(connection, "loadAllLocations")) {
+            return executeLocationStatement(stmt);
         }
     }
     
@@ -234,8 +1411,9 @@ public class LoanIQRepository {
         List<LoanIQEntity> results = new ArrayList<>();
         
         try (ResultSet rs = stmt.executeQuery()) {
+            EntityRowMapper mapper = new EntityRowMapper(rs.getMetaData());
             while (rs.next()) {
-                results.add(mapResultSetToEntity(rs));
+                results.add(mapper.map(rs));
             }
         }
         
@@ -244,64 +1422,58 @@ public class LoanIQRepository {
     }
     
     /**
-     * Map ResultSet to LoanIQEntity
+     * Execute a prepared statement returning entity_locations rows
      */
-    private LoanIQEntity mapResultSetToEntity(ResultSet rs) throws SQLException {
-        LoanIQEntity entity = new LoanIQEntity();
-        
-        entity.setEntityId(rs.getLong("entity_id"));
-        entity.setFullName(rs.getString("full_name"));
-        entity.setShortName(rs.getString("short_name"));
-        entity.setUltimateParent(rs.getString("ultimate_parent"));
-        entity.setMei(rs.getString("mei"));
-        entity.setLei(rs.getString("lei"));
-        entity.setEin(rs.getString("ein"));
-        entity.setDebtDomainId(rs.getString("debt_domain_id"));
-        entity.setCountryCode(rs.getString("country_code"));
-        entity.setLegalAddress(rs.getString("legal_address"));
-        entity.setTaxAddress(rs.getString("tax_address"));
+    private static List<EntityLocation> executeLocationStatement(PreparedStatement stmt) throws SQLException {
+        List<EntityLocation> results = new ArrayList<>();
         
-        // Check if this is a location record
-        try {
-            String recordType = rs.getString("record_type");
-            if ("LOCATION".equals(recordType)) {
-                entity.setLocation(true);
-                Long parentId = rs.getLong("parent_customer_id");
-                if (!rs.wasNull()) {
-                    entity.setParentCustomerId(parentId);
+        try (ResultSet rs = stmt.executeQuery()) {
+            Map<String, Integer> columns = EntityRowMapper.columnIndexes(rs.getMetaData());
+            int locationId = columns.get("location_id");
+            int parentCustomerId = columns.get("parent_customer_id");
+            int mei = columns.get("mei");
+            int lei = columns.get("lei");
+            int ein = columns.get("ein");
+            
+            while (rs.next()) {
+                long id = rs.getLong(locationId);
+                Long parentId = rs.getLong(parentCustomerId);
+                if (rs.wasNull()) {
+                    parentId = null;
                 }
-            } else {
-                entity.setLocation(false);
-            }
-        } catch (SQLException e) {
-            // Column doesn't exist, assume main entity
-            entity.setLocation(false);
-        }
-        
-        // Get last modified if available
-        try {
-            Timestamp lastModified = rs.getTimestamp("last_modified");
-            if (lastModified != null) {
-                entity.setLastModified(lastModified.toLocalDateTime());
+                results.add(new EntityLocation(id, parentId,
+                    rs.getString(mei), rs.getString(lei), rs.getString(ein)));
             }
-        } catch (SQLException e) {
-            // Column might not exist
         }
         
-        return entity;
+        return results;
     }
     
     /**
      * Close resources
      */
     public void close() {
-        try {
-            for (PreparedStatement stmt : statements.values()) {
-                stmt.close();
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+        if (indexer != null) {
+            indexer.shutdownNow();
+        }
+        ioExecutor.shutdown();
+        
+        if (snapshotFile != null && snapshotFileStale) {
+            try {
+                // Carry the refreshed rows over to the next process
+                exportSnapshot(snapshotFile);
+            } catch (IOException e) {
+                logger.error("Failed to update snapshot file {}", snapshotFile, e);
             }
-            
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
+        }
+        
+        try {
+            // A pooled data source belongs to the caller; a single connection handed to us is ours to close
+            if (dataSource instanceof SingleConnectionDataSource) {
+                ((SingleConnectionDataSource) dataSource).close();
             }
             
             logger.info("Repository closed successfully");
@@ -314,7 +1486,8 @@ public class LoanIQRepository {
      * Clear cache
      */
     public void clearCache() {
-        cache.invalidateAll();
+        caches.invalidateAll();
+        dataVersion.incrementAndGet();
         logger.info("Cache cleared");
     }
     
@@ -322,6 +1495,11 @@ public class LoanIQRepository {
      * Get cache statistics
      */
     public String getCacheStats() {
-        return cache.stats().toString();
+        EntitySnapshot current = snapshot;
+        if (current != null) {
+            return String.format("%s, snapshot{entities=%d, locations=%d}", caches.stats(),
+                current.getEntityCount(), current.getLocationCount());
+        }
+        return caches.stats();
     }
 }
\ No newline at end of file
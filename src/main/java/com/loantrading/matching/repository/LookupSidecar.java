@@ -0,0 +1,259 @@
+package com.loantrading.matching.repository;
+
+import com.loantrading.matching.entity.LoanIQEntity;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the em_entity_lookup, em_name_word and em_location_lookup tables in the tool's own
+ * schema, created from the scripts in sql/sidecar/ddl. They hold the normalized forms of the
+ * LoanIQ columns that the lookup queries otherwise compute per row (dash-free EIN, cleaned and
+ * lower-cased names, email domain) and the individual lower-cased words of each name column.
+ * With these in place the queries in sql/sidecar select their candidates by equality or prefix
+ * on indexed columns and join back to entities by key. The name and email domain queries then
+ * apply the original LIKE predicates to those candidates, so they return the same rows as the
+ * LoanIQ queries. The LoanIQ schema is never written.
+ */
+class LookupSidecar {
+    // Rows per JDBC batch when writing the lookup tables
+    private static final int WRITE_BATCH_SIZE = 500;
+    // Separators between the words stored in em_name_word
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+    // em_name_word.name_column values, in the order full name, short name, ultimate parent
+    private static final String[] NAME_COLUMNS = {"F", "S", "P"};
+    // Statements in a DDL script end with a semicolon at the end of a line
+    private static final Pattern STATEMENT_SEPARATOR = Pattern.compile(";\\s*(?:\\R|$)");
+    private static final Pattern COMMENT_LINE = Pattern.compile("(?m)^\\s*--.*$");
+
+    private final Map<String, String> queries;
+
+    LookupSidecar(Map<String, String> queries) {
+        this.queries = queries;
+    }
+
+    /**
+     * Create the schema and lookup tables where missing by running the DDL scripts in order.
+     * Every statement in them is idempotent, so this runs at each startup.
+     */
+    void createTables(Connection connection, List<String> scripts) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String script : scripts) {
+                for (String sql : STATEMENT_SEPARATOR.split(script)) {
+                    String statement = COMMENT_LINE.matcher(sql).replaceAll("").trim();
+                    if (!statement.isEmpty()) {
+                        stmt.execute(statement);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Latest source last_modified copied into the lookup table, or null if it is empty
+     */
+    Timestamp getHighWaterMark(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(queries.get("findLookupHighWaterMark"));
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getTimestamp("last_modified") : null;
+        }
+    }
+
+    /**
+     * Replace the lookup tables with rows derived from the given entities and locations
+     */
+    void rebuild(Connection connection, Collection<LoanIQEntity> entities,
+                 Collection<EntityLocation> locations) throws SQLException {
+        inTransaction(connection, () -> {
+            try (PreparedStatement deleteEntities = connection.prepareStatement(queries.get("deleteAllEntityLookups"));
+                 PreparedStatement deleteWords = connection.prepareStatement(queries.get("deleteAllNameWords"));
+                 PreparedStatement deleteLocations = connection.prepareStatement(queries.get("deleteAllLocationLookups"))) {
+                deleteLocations.executeUpdate();
+                deleteWords.executeUpdate();
+                deleteEntities.executeUpdate();
+            }
+            insert(connection, entities, locations);
+        });
+    }
+
+    /**
+     * Replace the lookup rows of changed entities; a changed entity's previous location
+     * row is dropped and the supplied location rows take its place
+     */
+    void apply(Connection connection, Collection<LoanIQEntity> changed,
+               Collection<EntityLocation> changedLocations) throws SQLException {
+        inTransaction(connection, () -> {
+            try (PreparedStatement deleteEntity = connection.prepareStatement(queries.get("deleteEntityLookup"));
+                 PreparedStatement deleteWords = connection.prepareStatement(queries.get("deleteNameWords"));
+                 PreparedStatement deleteLocation = connection.prepareStatement(queries.get("deleteLocationLookup"))) {
+                for (LoanIQEntity entity : changed) {
+                    deleteEntity.setLong(1, entity.getEntityId());
+                    deleteEntity.addBatch();
+                    deleteWords.setLong(1, entity.getEntityId());
+                    deleteWords.addBatch();
+                    deleteLocation.setLong(1, entity.getEntityId());
+                    deleteLocation.addBatch();
+                }
+                deleteLocation.executeBatch();
+                deleteWords.executeBatch();
+                deleteEntity.executeBatch();
+            }
+            insert(connection, changed, changedLocations);
+        });
+    }
+
+    private void insert(Connection connection, Collection<LoanIQEntity> entities,
+                        Collection<EntityLocation> locations) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(queries.get("insertEntityLookup"))) {
+            int pending = 0;
+            for (LoanIQEntity entity : entities) {
+                stmt.setLong(1, entity.getEntityId());
+                stmt.setString(2, EntitySnapshot.normalizeEin(entity.getEin()));
+                stmt.setString(3, EntitySnapshot.cleanShortName(entity.getShortName()));
+                stmt.setString(4, lower(entity.getShortName()));
+                stmt.setString(5, lower(entity.getFullName()));
+                stmt.setString(6, lower(entity.getUltimateParent()));
+                stmt.setString(7, entity.getEmailDomain());
+                if (entity.getLastModified() != null) {
+                    stmt.setTimestamp(8, Timestamp.valueOf(entity.getLastModified()));
+                } else {
+                    stmt.setNull(8, Types.TIMESTAMP);
+                }
+                stmt.addBatch();
+                if (++pending == WRITE_BATCH_SIZE) {
+                    stmt.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                stmt.executeBatch();
+            }
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement(queries.get("insertNameWord"))) {
+            int pending = 0;
+            for (LoanIQEntity entity : entities) {
+                String[] names = {entity.getFullName(), entity.getShortName(), entity.getUltimateParent()};
+                for (int column = 0; column < names.length; column++) {
+                    for (String word : words(names[column])) {
+                        stmt.setLong(1, entity.getEntityId());
+                        stmt.setString(2, NAME_COLUMNS[column]);
+                        stmt.setString(3, word);
+                        stmt.addBatch();
+                        if (++pending == WRITE_BATCH_SIZE) {
+                            stmt.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                }
+            }
+            if (pending > 0) {
+                stmt.executeBatch();
+            }
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement(queries.get("insertLocationLookup"))) {
+            int pending = 0;
+            for (EntityLocation location : locations) {
+                stmt.setLong(1, location.getLocationId());
+                stmt.setString(2, EntitySnapshot.normalizeEin(location.getEin()));
+                stmt.addBatch();
+                if (++pending == WRITE_BATCH_SIZE) {
+                    stmt.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                stmt.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Same lower-casing as the search patterns built in LoanIQRepository
+     */
+    private static String lower(String value) {
+        return value == null ? null : value.toLowerCase();
+    }
+
+    /**
+     * em_name_word pattern that every name containing the given lower-cased text matches, or
+     * null when there is none and the lookup has to scan. A word of the text with a separator
+     * on both sides inside the text is a whole word of the name, and the longest such word is
+     * taken; failing that, a word with a separator before it starts a word of the name. Text
+     * with LIKE wildcards has no pattern, as the wildcards may stand for separators.
+     */
+    static String wordPattern(String text) {
+        if (text.indexOf('%') >= 0 || text.indexOf('_') >= 0) {
+            return null;
+        }
+        String whole = null;
+        String prefix = null;
+        Matcher matcher = WORD.matcher(text);
+        while (matcher.find()) {
+            boolean separatorBefore = matcher.start() > 0;
+            boolean separatorAfter = matcher.end() < text.length();
+            if (separatorBefore && separatorAfter) {
+                if (whole == null || matcher.group().length() > whole.length()) {
+                    whole = matcher.group();
+                }
+            } else if (separatorBefore) {
+                prefix = matcher.group() + "%";
+            }
+        }
+        return whole != null ? whole : prefix;
+    }
+
+    /**
+     * Lower-cased words of a name, in order, as stored in em_name_word
+     */
+    static Set<String> words(String name) {
+        Set<String> words = new LinkedHashSet<>();
+        if (name != null) {
+            for (String word : WORD_SEPARATOR.split(name.toLowerCase())) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
+    }
+
+    private interface SqlWork {
+        void run() throws SQLException;
+    }
+
+    /**
+     * Run the work as one transaction, whatever the auto-commit mode of the pooled connection
+     */
+    private static void inTransaction(Connection connection, SqlWork work) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        if (autoCommit) {
+            connection.setAutoCommit(false);
+        }
+        try {
+            work.run();
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            if (autoCommit) {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.loantrading.matching.repository;
+
+import com.loantrading.matching.entity.LoanIQEntity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entities changed since the name indexes were last built, searched alongside them until the
+ * next rebuild. Hits the full indexes return for a changed entity are dropped, since they were
+ * found through its old names, and the changed rows are searched in small indexes of their own
+ * instead. Their hits come first: the few rows they hold cannot be ranked against the full
+ * indexes' hits, and a recently changed entity is a likely candidate.
+ */
+class NameIndexDelta {
+    private final boolean namesIndexed;
+    private final boolean phoneticIndexed;
+    private final Map<Long, LoanIQEntity> changed;
+    private final NameTrigramIndex nameIndex;
+    private final PhoneticNameIndex phoneticIndex;
+
+    private NameIndexDelta(boolean namesIndexed, boolean phoneticIndexed, Map<Long, LoanIQEntity> changed) {
+        this.namesIndexed = namesIndexed;
+        this.phoneticIndexed = phoneticIndexed;
+        this.changed = changed;
+        boolean empty = changed.isEmpty();
+        this.nameIndex = namesIndexed && !empty ? new NameTrigramIndex(changed.values()) : null;
+        this.phoneticIndex = phoneticIndexed && !empty ? new PhoneticNameIndex(changed.values()) : null;
+    }
+
+    /**
+     * No changes, for the given kinds of name index
+     */
+    static NameIndexDelta empty(boolean namesIndexed, boolean phoneticIndexed) {
+        return new NameIndexDelta(namesIndexed, phoneticIndexed, Map.of());
+    }
+
+    /**
+     * This delta with the given rows added, replacing earlier versions of the same entities
+     */
+    NameIndexDelta withChanges(Collection<LoanIQEntity> rows) {
+        Map<Long, LoanIQEntity> updated = new LinkedHashMap<>(changed);
+        for (LoanIQEntity row : rows) {
+            updated.put(row.getEntityId(), row);
+        }
+        return new NameIndexDelta(namesIndexed, phoneticIndexed, updated);
+    }
+
+    /**
+     * The changes that indexes built from the given snapshot do not hold yet: rows applied
+     * after it was taken, which it does not share with the current snapshot
+     */
+    NameIndexDelta since(EntitySnapshot source) {
+        Map<Long, LoanIQEntity> remaining = new LinkedHashMap<>();
+        for (Map.Entry<Long, LoanIQEntity> entry : changed.entrySet()) {
+            if (source.findById(entry.getKey()) != entry.getValue()) {
+                remaining.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return remaining.size() == changed.size() ? this :
+            new NameIndexDelta(namesIndexed, phoneticIndexed, remaining);
+    }
+
+    int size() {
+        return changed.size();
+    }
+
+    List<LoanIQEntity> searchNames(NameTrigramIndex base, String legalName, String fundManager, int limit) {
+        if (nameIndex == null) {
+            return base.search(legalName, fundManager, limit);
+        }
+        return merge(nameIndex.search(legalName, fundManager, limit),
+            base.search(legalName, fundManager, limit + changed.size()), limit);
+    }
+
+    List<LoanIQEntity> searchPhonetic(PhoneticNameIndex base, String legalName, String fundManager, int limit) {
+        if (phoneticIndex == null) {
+            return base.search(legalName, fundManager, limit);
+        }
+        return merge(phoneticIndex.search(legalName, fundManager, limit),
+            base.search(legalName, fundManager, limit + changed.size()), limit);
+    }
+
+    private List<LoanIQEntity> merge(List<LoanIQEntity> deltaHits, List<LoanIQEntity> baseHits, int limit) {
+        List<LoanIQEntity> merged = new ArrayList<>(Math.min(limit, deltaHits.size() + baseHits.size()));
+        for (LoanIQEntity hit : deltaHits) {
+            if (merged.size() == limit) {
+                return merged;
+            }
+            merged.add(hit);
+        }
+        for (LoanIQEntity hit : baseHits) {
+            if (merged.size() == limit) {
+                break;
+            }
+            if (!changed.containsKey(hit.getEntityId())) {
+                merged.add(hit);
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,165 @@
+package com.loantrading.matching.repository;
+
+import com.loantrading.matching.entity.LoanIQEntity;
+
+import java.util.*;
+
+/**
+ * Trigram inverted index over the full name, short name and ultimate parent of every entities row.
+ * Replaces the LIKE '%name%' scan of findByName.sql when a snapshot is loaded: candidates are ranked
+ * by the number of distinct trigrams they share with the searched names, so a name with an OCR typo
+ * still finds its entity, and the cost depends on the postings touched rather than the table size.
+ */
+public class NameTrigramIndex {
+    // Share of the searched trigrams a candidate must contain to be returned
+    private static final double MIN_SHARED_FRACTION = 0.3;
+
+    // Trigrams in more than this share of rows (" co", "ca" ...) carry little signal and are skipped
+    private static final int STOP_GRAM_DIVISOR = 20;
+    private static final int MIN_STOP_GRAM_POSTINGS = 1000;
+
+    private static final ThreadLocal<int[]> COUNTS = ThreadLocal.withInitial(() -> new int[0]);
+
+    private final LoanIQEntity[] entities;
+    private final int[] gramCounts;
+    private final Map<String, int[]> postings;
+    private final int maxPostings;
+
+    public NameTrigramIndex(Collection<LoanIQEntity> rows) {
+        this.entities = rows.toArray(new LoanIQEntity[0]);
+        this.gramCounts = new int[entities.length];
+
+        Map<String, List<Integer>> lists = new HashMap<>();
+        for (int i = 0; i < entities.length; i++) {
+            LoanIQEntity entity = entities[i];
+            Set<String> grams = new HashSet<>();
+            addTrigrams(grams, entity.getFullName());
+            addTrigrams(grams, entity.getShortName());
+            addTrigrams(grams, entity.getUltimateParent());
+            gramCounts[i] = grams.size();
+            for (String gram : grams) {
+                lists.computeIfAbsent(gram, g -> new ArrayList<>()).add(i);
+            }
+        }
+
+        this.postings = new HashMap<>(lists.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<Integer>> entry : lists.entrySet()) {
+            postings.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        this.maxPostings = Math.max(MIN_STOP_GRAM_POSTINGS, entities.length / STOP_GRAM_DIVISOR);
+    }
+
+    /**
+     * Top candidates for a legal name and optional fund manager, most shared trigrams first.
+     * Among equal counts, rows with fewer trigrams of their own (closer in length) rank higher.
+     */
+    public List<LoanIQEntity> search(String legalName, String fundManager, int limit) {
+        Set<String> queryGrams = new HashSet<>();
+        addTrigrams(queryGrams, legalName);
+        addTrigrams(queryGrams, fundManager);
+        if (queryGrams.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<int[]> selected = new ArrayList<>();
+        int[] rarest = null;
+        int stopGrams = 0;
+        for (String gram : queryGrams) {
+            int[] list = postings.get(gram);
+            if (list == null) {
+                continue;
+            }
+            if (list.length <= maxPostings) {
+                selected.add(list);
+            } else {
+                stopGrams++;
+                if (rarest == null || list.length < rarest.length) {
+                    rarest = list;
+                }
+            }
+        }
+        if (selected.isEmpty() && rarest != null) {
+            // Only common trigrams matched; fall back to the least common one
+            selected.add(rarest);
+            stopGrams--;
+        }
+
+        // Skipped common trigrams cannot be shared, so they do not count against candidates
+        int minShared = Math.max(1, (int) Math.ceil(MIN_SHARED_FRACTION * (queryGrams.size() - stopGrams)));
+
+        int[] counts = counts();
+        int[] touched = new int[Math.min(entities.length, selected.stream().mapToInt(l -> l.length).sum())];
+        int touchedCount = 0;
+        for (int[] list : selected) {
+            for (int row : list) {
+                if (counts[row]++ == 0) {
+                    touched[touchedCount++] = row;
+                }
+            }
+        }
+
+        Comparator<Integer> ranking = Comparator.<Integer>comparingInt(row -> counts[row])
+                .thenComparing(row -> -gramCounts[row]);
+        PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1, ranking);
+        for (int i = 0; i < touchedCount; i++) {
+            int row = touched[i];
+            if (counts[row] >= minShared) {
+                top.add(row);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+        }
+
+        List<LoanIQEntity> results = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            results.add(entities[top.poll()]);
+        }
+        Collections.reverse(results);
+
+        for (int i = 0; i < touchedCount; i++) {
+            counts[touched[i]] = 0;
+        }
+        return results;
+    }
+
+    public int size() {
+        return entities.length;
+    }
+
+    private int[] counts() {
+        int[] counts = COUNTS.get();
+        if (counts.length < entities.length) {
+            counts = new int[entities.length];
+            COUNTS.set(counts);
+        }
+        return counts;
+    }
+
+    /**
+     * Trigrams of a name lower-cased with punctuation folded to single spaces
+     * and padded with a space at each end, so word starts and ends form grams too
+     */
+    static void addTrigrams(Set<String> grams, String value) {
+        if (value == null) {
+            return;
+        }
+
+        StringBuilder normalized = new StringBuilder(value.length() + 2).append(' ');
+        for (int i = 0; i < value.length(); i++) {
+            char c = Character.toLowerCase(value.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(c);
+            } else if (normalized.charAt(normalized.length() - 1) != ' ') {
+                normalized.append(' ');
+            }
+        }
+        if (normalized.charAt(normalized.length() - 1) != ' ') {
+            normalized.append(' ');
+        }
+
+        for (int i = 0; i + 3 <= normalized.length(); i++) {
+            grams.add(normalized.substring(i, i + 3));
+        }
+    }
+}
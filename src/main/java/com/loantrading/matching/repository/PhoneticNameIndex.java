@@ -0,0 +1,174 @@
+package com.loantrading.matching.repository;
+
+import com.loantrading.matching.entity.LoanIQEntity;
+import org.apache.commons.codec.language.DoubleMetaphone;
+
+import java.util.*;
+
+/**
+ * Double Metaphone inverted index over the words of the full name, short name and ultimate parent
+ * of every entities row. Complements {@link NameTrigramIndex} for names mangled beyond shared
+ * substrings: words that sound alike share a code, and each pair of adjacent words is also coded
+ * as one word, so "Blak Rock" finds "BlackRock". Candidates are ranked by the number of distinct
+ * codes they share with the searched names.
+ */
+public class PhoneticNameIndex {
+    // Longer than the default of 4 so long words keep telling names apart
+    private static final int MAX_CODE_LENGTH = 6;
+
+    // Share of the searched codes a candidate must contain to be returned
+    private static final double MIN_SHARED_FRACTION = 0.3;
+
+    // Codes of very common words ("fund", "capital" ...) carry little signal and are skipped
+    private static final int STOP_CODE_DIVISOR = 20;
+    private static final int MIN_STOP_CODE_POSTINGS = 1000;
+
+    private static final ThreadLocal<int[]> COUNTS = ThreadLocal.withInitial(() -> new int[0]);
+
+    private final DoubleMetaphone encoder;
+    private final LoanIQEntity[] entities;
+    private final int[] codeCounts;
+    private final Map<String, int[]> postings;
+    private final int maxPostings;
+
+    public PhoneticNameIndex(Collection<LoanIQEntity> rows) {
+        this.encoder = new DoubleMetaphone();
+        encoder.setMaxCodeLen(MAX_CODE_LENGTH);
+        this.entities = rows.toArray(new LoanIQEntity[0]);
+        this.codeCounts = new int[entities.length];
+
+        Map<String, List<Integer>> lists = new HashMap<>();
+        for (int i = 0; i < entities.length; i++) {
+            LoanIQEntity entity = entities[i];
+            Set<String> codes = new HashSet<>();
+            addCodes(codes, entity.getFullName());
+            addCodes(codes, entity.getShortName());
+            addCodes(codes, entity.getUltimateParent());
+            codeCounts[i] = codes.size();
+            for (String code : codes) {
+                lists.computeIfAbsent(code, c -> new ArrayList<>()).add(i);
+            }
+        }
+
+        this.postings = new HashMap<>(lists.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<Integer>> entry : lists.entrySet()) {
+            postings.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        this.maxPostings = Math.max(MIN_STOP_CODE_POSTINGS, entities.length / STOP_CODE_DIVISOR);
+    }
+
+    /**
+     * Top candidates for a legal name and optional fund manager, most shared codes first.
+     * Among equal counts, rows with fewer codes of their own rank higher.
+     */
+    public List<LoanIQEntity> search(String legalName, String fundManager, int limit) {
+        Set<String> queryCodes = new HashSet<>();
+        addCodes(queryCodes, legalName);
+        addCodes(queryCodes, fundManager);
+        if (queryCodes.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<int[]> selected = new ArrayList<>();
+        int stopCodes = 0;
+        for (String code : queryCodes) {
+            int[] list = postings.get(code);
+            if (list == null) {
+                continue;
+            }
+            if (list.length <= maxPostings) {
+                selected.add(list);
+            } else {
+                stopCodes++;
+            }
+        }
+        if (selected.isEmpty()) {
+            // Nothing distinctive sounds alike; the trigram search covers the common words
+            return new ArrayList<>();
+        }
+
+        // Skipped common codes cannot be shared, so they do not count against candidates
+        int minShared = Math.max(1, (int) Math.ceil(MIN_SHARED_FRACTION * (queryCodes.size() - stopCodes)));
+
+        int[] counts = counts();
+        int[] touched = new int[Math.min(entities.length, selected.stream().mapToInt(l -> l.length).sum())];
+        int touchedCount = 0;
+        for (int[] list : selected) {
+            for (int row : list) {
+                if (counts[row]++ == 0) {
+                    touched[touchedCount++] = row;
+                }
+            }
+        }
+
+        Comparator<Integer> ranking = Comparator.<Integer>comparingInt(row -> counts[row])
+                .thenComparing(row -> -codeCounts[row]);
+        PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1, ranking);
+        for (int i = 0; i < touchedCount; i++) {
+            int row = touched[i];
+            if (counts[row] >= minShared) {
+                top.add(row);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+        }
+
+        List<LoanIQEntity> results = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            results.add(entities[top.poll()]);
+        }
+        Collections.reverse(results);
+
+        for (int i = 0; i < touchedCount; i++) {
+            counts[touched[i]] = 0;
+        }
+        return results;
+    }
+
+    public int size() {
+        return entities.length;
+    }
+
+    private int[] counts() {
+        int[] counts = COUNTS.get();
+        if (counts.length < entities.length) {
+            counts = new int[entities.length];
+            COUNTS.set(counts);
+        }
+        return counts;
+    }
+
+    /**
+     * Primary and alternate codes of each word of a name and of each pair of adjacent words
+     * run together. Words are split on anything other than letters and digits.
+     */
+    private void addCodes(Set<String> codes, String value) {
+        if (value == null) {
+            return;
+        }
+
+        String previous = null;
+        for (String word : value.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            addWordCodes(codes, word);
+            if (previous != null) {
+                addWordCodes(codes, previous + word);
+            }
+            previous = word;
+        }
+    }
+
+    private void addWordCodes(Set<String> codes, String word) {
+        String primary = encoder.doubleMetaphone(word);
+        if (primary != null && !primary.isEmpty()) {
+            codes.add(primary);
+        }
+        String alternate = encoder.doubleMetaphone(word, true);
+        if (alternate != null && !alternate.isEmpty()) {
+            codes.add(alternate);
+        }
+    }
+}
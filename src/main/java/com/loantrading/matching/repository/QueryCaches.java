@@ -0,0 +1,125 @@
+package com.loantrading.matching.repository;
+
+import com.loantrading.matching.entity.LoanIQEntity;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One Caffeine cache per {@link CachedQuery}, each sized and expired independently.
+ * Caffeine evicts by frequency as well as recency (W-TinyLFU), so a burst of one-off
+ * name searches does not flush the identifiers that every document looks up, and
+ * concurrent misses on the same key wait for a single load instead of each querying.
+ */
+class QueryCaches {
+    /**
+     * Loads the rows for one key of a cached query
+     */
+    interface Loader {
+        List<LoanIQEntity> load(CachedQuery query, String key) throws Exception;
+    }
+
+    private final Map<CachedQuery, LoadingCache<String, List<LoanIQEntity>>> caches;
+
+    QueryCaches(RepositoryConfig config, Loader loader) {
+        this.caches = new EnumMap<>(CachedQuery.class);
+        for (CachedQuery query : CachedQuery.values()) {
+            // Cached lists are shared between threads, so they are stored read-only
+            CacheLoader<String, List<LoanIQEntity>> cacheLoader = key -> List.copyOf(loader.load(query, key));
+            caches.put(query, Caffeine.newBuilder()
+                    .maximumSize(config.getCacheMaximumSize(query))
+                    .expireAfterWrite(config.getCacheExpiryMinutes(query), TimeUnit.MINUTES)
+                    .recordStats()
+                    .build(cacheLoader));
+        }
+    }
+
+    /**
+     * Cached rows for the key, loading them on a miss.
+     * A failed load is rethrown and nothing is cached.
+     */
+    List<LoanIQEntity> get(CachedQuery query, String key) {
+        return caches.get(query).get(key);
+    }
+
+    List<LoanIQEntity> getIfPresent(CachedQuery query, String key) {
+        return caches.get(query).getIfPresent(key);
+    }
+
+    void put(CachedQuery query, String key, List<LoanIQEntity> rows) {
+        caches.get(query).put(key, List.copyOf(rows));
+    }
+
+    /**
+     * Evict entries affected by changed rows: those holding a changed entity, and those keyed by
+     * a changed entity's current identifiers or short name. Name and email domain searches can
+     * start matching any changed entity, so those caches are cleared entirely.
+     */
+    void invalidate(Collection<LoanIQEntity> changed, Collection<EntityLocation> changedLocations) {
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        Set<Long> ids = new HashSet<>();
+        Map<CachedQuery, Set<String>> keys = new EnumMap<>(CachedQuery.class);
+        for (CachedQuery query : CachedQuery.values()) {
+            keys.put(query, new HashSet<>());
+        }
+
+        for (LoanIQEntity entity : changed) {
+            ids.add(entity.getEntityId());
+            addKey(keys, CachedQuery.MEI, entity.getMei());
+            addKey(keys, CachedQuery.LEI, entity.getLei());
+            addKey(keys, CachedQuery.EIN, EntitySnapshot.normalizeEin(entity.getEin()));
+            addKey(keys, CachedQuery.DEBT_DOMAIN_ID, entity.getDebtDomainId());
+            addKey(keys, CachedQuery.ID, String.valueOf(entity.getEntityId()));
+            addKey(keys, CachedQuery.CLEANED_SHORT_NAME, EntitySnapshot.cleanShortName(entity.getShortName()));
+        }
+        for (EntityLocation location : changedLocations) {
+            addKey(keys, CachedQuery.MEI, location.getMei());
+            addKey(keys, CachedQuery.LEI, location.getLei());
+            addKey(keys, CachedQuery.EIN, EntitySnapshot.normalizeEin(location.getEin()));
+        }
+
+        caches.get(CachedQuery.NAME).invalidateAll();
+        caches.get(CachedQuery.EMAIL_DOMAIN).invalidateAll();
+
+        for (CachedQuery query : EnumSet.complementOf(EnumSet.of(CachedQuery.NAME, CachedQuery.EMAIL_DOMAIN))) {
+            Set<String> affected = keys.get(query);
+            caches.get(query).asMap().entrySet().removeIf(entry ->
+                affected.contains(entry.getKey()) ||
+                entry.getValue().stream().anyMatch(e -> ids.contains(e.getEntityId())));
+        }
+    }
+
+    void invalidateAll() {
+        caches.values().forEach(LoadingCache::invalidateAll);
+    }
+
+    /**
+     * Hit/miss counts per query type
+     */
+    String stats() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<CachedQuery, LoadingCache<String, List<LoanIQEntity>>> entry : caches.entrySet()) {
+            CacheStats stats = entry.getValue().stats();
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(String.format("%s{size=%d, hits=%d, misses=%d, hitRate=%.2f, evictions=%d}",
+                entry.getKey(), entry.getValue().estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.hitRate(), stats.evictionCount()));
+        }
+        return sb.toString();
+    }
+
+    private static void addKey(Map<CachedQuery, Set<String>> keys, CachedQuery query, String key) {
+        if (key != null) {
+            keys.get(query).add(key);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.loantrading.matching.repository;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Tunable settings for {@link LoanIQRepository}
+ */
+public class RepositoryConfig {
+    // Unquoted SQL identifier, as the schema name is written into the sidecar statements
+    private static final Pattern SCHEMA_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private boolean snapshotEnabled;
+    private long refreshIntervalSeconds;
+    private long cacheExpiryMinutes = 10;
+    private boolean keyFilterEnabled;
+    private boolean nameIndexEnabled;
+    private boolean phoneticIndexEnabled;
+    private boolean identifierRepairEnabled;
+    private boolean sidecarEnabled;
+    private String sidecarSchema = "entity_matching";
+    private boolean hierarchyEnabled;
+    private boolean duplicateClustersEnabled;
+    private long indexRebuildDelaySeconds = 30;
+    private Path snapshotFile;
+    private int ioThreads = 8;
+    private long resultCacheSize;
+    private final Map<CachedQuery, Long> cacheMaximumSizes = new EnumMap<>(CachedQuery.class);
+    private final Map<CachedQuery, Long> cacheExpiries = new EnumMap<>(CachedQuery.class);
+
+    /**
+     * Build a configuration from -Dloaniq.* system properties, falling back to defaults
+     */
+    public static RepositoryConfig fromSystemProperties() {
+        RepositoryConfig config = new RepositoryConfig();
+        config.setSnapshotEnabled(Boolean.getBoolean("loaniq.snapshot.enabled"));
+        config.setRefreshIntervalSeconds(Long.getLong("loaniq.refresh.interval.seconds", 0L));
+        config.setCacheExpiryMinutes(Long.getLong("loaniq.cache.expiry.minutes", 10L));
+        config.setKeyFilterEnabled(Boolean.getBoolean("loaniq.keyfilter.enabled"));
+        config.setNameIndexEnabled(Boolean.getBoolean("loaniq.nameindex.enabled"));
+        config.setPhoneticIndexEnabled(Boolean.getBoolean("loaniq.phoneticindex.enabled"));
+        config.setIdentifierRepairEnabled(Boolean.getBoolean("loaniq.identifierrepair.enabled"));
+        config.setSidecarEnabled(Boolean.getBoolean("loaniq.sidecar.enabled"));
+        config.setSidecarSchema(System.getProperty("loaniq.sidecar.schema", "entity_matching"));
+        config.setHierarchyEnabled(Boolean.getBoolean("loaniq.hierarchy.enabled"));
+        config.setDuplicateClustersEnabled(Boolean.getBoolean("loaniq.duplicates.enabled"));
+        config.setIndexRebuildDelaySeconds(Long.getLong("loaniq.index.rebuild.delay.seconds", 30L));
+        config.setIoThreads(Integer.getInteger("loaniq.io.threads", 8));
+        config.setResultCacheSize(Long.getLong("loaniq.result.cache.size", 0L));
+        String snapshotFile = System.getProperty("loaniq.snapshot.file");
+        if (snapshotFile != null) {
+            config.setSnapshotFile(Paths.get(snapshotFile));
+        }
+        for (CachedQuery query : CachedQuery.values()) {
+            String prefix = "loaniq.cache." + query.getPropertyName();
+            Long size = Long.getLong(prefix + ".size");
+            if (size != null) {
+                config.setCacheMaximumSize(query, size);
+            }
+            Long expiry = Long.getLong(prefix + ".expiry.minutes");
+            if (expiry != null) {
+                config.setCacheExpiryMinutes(query, expiry);
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Reject combinations that would serve stale answers from the database.
+     * The key filters only learn about rows created after startup through delta refresh,
+     * so without it every lookup for a new entity would be ruled out; likewise the sidecar
+     * queries join through lookup tables that only delta refresh keeps in step with entities.
+     *
+     * @throws IllegalStateException if a setting requires delta refresh and it is disabled,
+     *                               or the sidecar schema is not a plain SQL identifier
+     */
+    public void validate() {
+        if (keyFilterEnabled && refreshIntervalSeconds <= 0) {
+            throw new IllegalStateException(
+                "loaniq.keyfilter.enabled requires loaniq.refresh.interval.seconds > 0");
+        }
+        if (sidecarEnabled && refreshIntervalSeconds <= 0) {
+            throw new IllegalStateException(
+                "loaniq.sidecar.enabled requires loaniq.refresh.interval.seconds > 0");
+        }
+        if (sidecarEnabled && (sidecarSchema == null || !SCHEMA_NAME.matcher(sidecarSchema).matches())) {
+            throw new IllegalStateException("loaniq.sidecar.schema is not a valid schema name: " + sidecarSchema);
+        }
+    }
+
+    /**
+     * Whether the entities and entity_locations tables are bulk-loaded at startup
+     * and identifier lookups are served from memory
+     */
+    public boolean isSnapshotEnabled() {
+        return snapshotEnabled;
+    }
+
+    public void setSnapshotEnabled(boolean snapshotEnabled) {
+        this.snapshotEnabled = snapshotEnabled;
+    }
+
+    /**
+     * How often to poll for rows changed since the last high-water mark; 0 disables delta refresh
+     */
+    public long getRefreshIntervalSeconds() {
+        return refreshIntervalSeconds;
+    }
+
+    public void setRefreshIntervalSeconds(long refreshIntervalSeconds) {
+        this.refreshIntervalSeconds = refreshIntervalSeconds;
+    }
+
+    /**
+     * Default time-to-live of cached lookups. With delta refresh enabled, changed entities are evicted
+     * as they are seen, so this can safely be raised well above the default.
+     */
+    public long getCacheExpiryMinutes() {
+        return cacheExpiryMinutes;
+    }
+
+    public void setCacheExpiryMinutes(long cacheExpiryMinutes) {
+        this.cacheExpiryMinutes = cacheExpiryMinutes;
+    }
+
+    /**
+     * Whether Bloom filters over all identifiers and name tokens are kept so that
+     * lookups for values absent from LoanIQ skip the database round trip.
+     * Requires delta refresh, which adds new rows to the filters.
+     */
+    public boolean isKeyFilterEnabled() {
+        return keyFilterEnabled;
+    }
+
+    public void setKeyFilterEnabled(boolean keyFilterEnabled) {
+        this.keyFilterEnabled = keyFilterEnabled;
+    }
+
+    /**
+     * Whether name candidates come from a trigram index built from the snapshot instead of
+     * the LIKE scan in findByName.sql. Only takes effect when the snapshot is enabled.
+     */
+    public boolean isNameIndexEnabled() {
+        return nameIndexEnabled;
+    }
+
+    public void setNameIndexEnabled(boolean nameIndexEnabled) {
+        this.nameIndexEnabled = nameIndexEnabled;
+    }
+
+    /**
+     * Whether a phonetic index over the words of entity names is built from the snapshot,
+     * so name matching also considers candidates whose names only sound alike.
+     * Only takes effect when a snapshot is loaded.
+     */
+    public boolean isPhoneticIndexEnabled() {
+        return phoneticIndexEnabled;
+    }
+
+    public void setPhoneticIndexEnabled(boolean phoneticIndexEnabled) {
+        this.phoneticIndexEnabled = phoneticIndexEnabled;
+    }
+
+    /**
+     * Whether MEIs, LEIs and EINs that miss by one OCR error are repaired to the known identifier
+     * they were most likely read from. Only takes effect when a snapshot is loaded.
+     */
+    public boolean isIdentifierRepairEnabled() {
+        return identifierRepairEnabled;
+    }
+
+    public void setIdentifierRepairEnabled(boolean identifierRepairEnabled) {
+        this.identifierRepairEnabled = identifierRepairEnabled;
+    }
+
+    /**
+     * Whether EIN, short name, name and email domain lookups go through the tool-owned
+     * em_entity_lookup/em_name_word/em_location_lookup tables of pre-normalized keys, which are
+     * created in {@link #getSidecarSchema()} if missing and synchronized at startup and on every
+     * delta refresh. Requires a refresh interval.
+     */
+    public boolean isSidecarEnabled() {
+        return sidecarEnabled;
+    }
+
+    public void setSidecarEnabled(boolean sidecarEnabled) {
+        this.sidecarEnabled = sidecarEnabled;
+    }
+
+    /**
+     * Schema owned by the matching tool that holds the sidecar tables, separate from the LoanIQ
+     * tables the data source reads. Created if missing when the connection may do so.
+     */
+    public String getSidecarSchema() {
+        return sidecarSchema;
+    }
+
+    public void setSidecarSchema(String sidecarSchema) {
+        this.sidecarSchema = sidecarSchema;
+    }
+
+    /**
+     * Preload the customer/location hierarchy when no snapshot is loaded;
+     * a snapshot always carries one
+     */
+    public boolean isHierarchyEnabled() {
+        return hierarchyEnabled;
+    }
+
+    public void setHierarchyEnabled(boolean hierarchyEnabled) {
+        this.hierarchyEnabled = hierarchyEnabled;
+    }
+
+    /**
+     * Whether duplicate clusters are computed over the whole snapshot and kept up to date,
+     * so duplicate detection is a lookup instead of identifier and name queries per match.
+     * Only takes effect when a snapshot is loaded.
+     */
+    public boolean isDuplicateClustersEnabled() {
+        return duplicateClustersEnabled;
+    }
+
+    public void setDuplicateClustersEnabled(boolean duplicateClustersEnabled) {
+        this.duplicateClustersEnabled = duplicateClustersEnabled;
+    }
+
+    /**
+     * How long after delta refresh applies changes the name indexes, identifier repair index and
+     * duplicate clusters are rebuilt from the snapshot, in the background. Changes applied in the
+     * meantime share that one rebuild; name searches see them at once through a small index of
+     * the changed rows.
+     */
+    public long getIndexRebuildDelaySeconds() {
+        return indexRebuildDelaySeconds;
+    }
+
+    public void setIndexRebuildDelaySeconds(long indexRebuildDelaySeconds) {
+        this.indexRebuildDelaySeconds = indexRebuildDelaySeconds;
+    }
+
+    /**
+     * Binary snapshot file opened at startup instead of bulk-loading LoanIQ, and rewritten
+     * after a load from the database or when delta refresh changed the snapshot.
+     * It is also what a repository without a data source matches against offline.
+     */
+    public Path getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public void setSnapshotFile(Path snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Threads running the asynchronous finders. Concurrent lookups beyond the
+     * connection pool size just wait for a connection, so there is little gain above it.
+     */
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    /**
+     * Maximum whole match results remembered for repeat submissions of the same entity;
+     * 0 disables the result cache. Entries expire after {@link #getCacheExpiryMinutes()}.
+     */
+    public long getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    public void setResultCacheSize(long resultCacheSize) {
+        this.resultCacheSize = resultCacheSize;
+    }
+
+    /**
+     * Maximum entries kept for one cached query type
+     */
+    public long getCacheMaximumSize(CachedQuery query) {
+        return cacheMaximumSizes.getOrDefault(query, query.getDefaultMaximumSize());
+    }
+
+    public void setCacheMaximumSize(CachedQuery query, long maximumSize) {
+        cacheMaximumSizes.put(query, maximumSize);
+    }
+
+    /**
+     * Time-to-live for one cached query type, defaulting to {@link #getCacheExpiryMinutes()}
+     */
+    public long getCacheExpiryMinutes(CachedQuery query) {
+        return cacheExpiries.getOrDefault(query, cacheExpiryMinutes);
+    }
+
+    public void setCacheExpiryMinutes(CachedQuery query, long expiryMinutes) {
+        cacheExpiries.put(query, expiryMinutes);
+    }
+}
@@ -0,0 +1,198 @@
+package com.loantrading.matching.repository;
+
+import com.loantrading.matching.entity.LoanIQEntity;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary export of an {@link EntitySnapshot}, reopened with memory-mapped I/O so a new
+ * process starts warm without querying LoanIQ, or runs fully offline when it is unavailable.
+ * <p>
+ * Layout: magic, version, a dictionary of the distinct strings, then fixed-shape entity and
+ * location records whose string fields are dictionary indexes (-1 for null). Repeated values
+ * such as country codes and ultimate parents are stored once and shared again once read.
+ * The lookup indexes are not stored; they are rebuilt from the records on open.
+ */
+class SnapshotFile {
+    private static final int MAGIC = 0x4C495153; // "LIQS"
+    private static final int VERSION = 2;
+    private static final int NULL_REF = -1;
+    private static final long NULL_LONG = Long.MIN_VALUE;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Write the snapshot to a temporary file next to the target and move it into place,
+     * so a concurrent reader never maps a partially written file
+     */
+    static void write(EntitySnapshot snapshot, Path file) throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (LoanIQEntity entity : snapshot.getEntities()) {
+            for (String value : entityStrings(entity)) {
+                intern(dictionary, strings, value);
+            }
+        }
+        for (EntityLocation location : snapshot.getLocations()) {
+            intern(dictionary, strings, location.getMei());
+            intern(dictionary, strings, location.getLei());
+            intern(dictionary, strings, location.getEin());
+        }
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+
+                out.writeInt(strings.size());
+                for (String value : strings) {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+
+                out.writeInt(snapshot.getEntities().size());
+                for (LoanIQEntity entity : snapshot.getEntities()) {
+                    out.writeLong(entity.getEntityId());
+                    for (String value : entityStrings(entity)) {
+                        out.writeInt(ref(dictionary, value));
+                    }
+                    LocalDateTime modified = entity.getLastModified();
+                    out.writeLong(modified == null ? NULL_LONG : modified.toEpochSecond(ZoneOffset.UTC));
+                    out.writeInt(modified == null ? 0 : modified.getNano());
+                }
+
+                out.writeInt(snapshot.getLocations().size());
+                for (EntityLocation location : snapshot.getLocations()) {
+                    out.writeLong(location.getLocationId());
+                    out.writeLong(location.getParentCustomerId() == null ? NULL_LONG : location.getParentCustomerId());
+                    out.writeInt(ref(dictionary, location.getMei()));
+                    out.writeInt(ref(dictionary, location.getLei()));
+                    out.writeInt(ref(dictionary, location.getEin()));
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Map the file and rebuild the snapshot from it
+     */
+    static EntitySnapshot read(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not an entity snapshot file: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot file version " + version + ": " + file);
+            }
+
+            String[] strings = new String[buffer.getInt()];
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < strings.length; i++) {
+                int length = buffer.getInt();
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+
+            int entityCount = buffer.getInt();
+            List<LoanIQEntity> entities = new ArrayList<>(entityCount);
+            for (int i = 0; i < entityCount; i++) {
+                LoanIQEntity entity = new LoanIQEntity();
+                entity.setEntityId(buffer.getLong());
+                entity.setFullName(string(strings, buffer.getInt()));
+                entity.setShortName(string(strings, buffer.getInt()));
+                entity.setUltimateParent(string(strings, buffer.getInt()));
+                entity.setMei(string(strings, buffer.getInt()));
+                entity.setLei(string(strings, buffer.getInt()));
+                entity.setEin(string(strings, buffer.getInt()));
+                entity.setDebtDomainId(string(strings, buffer.getInt()));
+                entity.setCountryCode(string(strings, buffer.getInt()));
+                entity.setLegalAddress(string(strings, buffer.getInt()));
+                entity.setTaxAddress(string(strings, buffer.getInt()));
+                entity.setEmailDomain(string(strings, buffer.getInt()));
+                long seconds = buffer.getLong();
+                int nanos = buffer.getInt();
+                if (seconds != NULL_LONG) {
+                    entity.setLastModified(LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC));
+                }
+                entity.setLocation(false);
+                entities.add(entity);
+            }
+
+            int locationCount = buffer.getInt();
+            List<EntityLocation> locations = new ArrayList<>(locationCount);
+            for (int i = 0; i < locationCount; i++) {
+                long locationId = buffer.getLong();
+                long parentId = buffer.getLong();
+                locations.add(new EntityLocation(locationId, parentId == NULL_LONG ? null : parentId,
+                        string(strings, buffer.getInt()), string(strings, buffer.getInt()),
+                        string(strings, buffer.getInt())));
+            }
+
+            return new EntitySnapshot(entities, locations);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Truncated or corrupt snapshot file: " + file, e);
+        }
+    }
+
+    /**
+     * String fields of an entity in file order
+     */
+    private static String[] entityStrings(LoanIQEntity entity) {
+        return new String[] {
+            entity.getFullName(), entity.getShortName(), entity.getUltimateParent(),
+            entity.getMei(), entity.getLei(), entity.getEin(), entity.getDebtDomainId(),
+            entity.getCountryCode(), entity.getLegalAddress(), entity.getTaxAddress(), entity.getEmailDomain()
+        };
+    }
+
+    private static void intern(Map<String, Integer> dictionary, List<String> strings, String value) {
+        if (value != null && !dictionary.containsKey(value)) {
+            dictionary.put(value, strings.size());
+            strings.add(value);
+        }
+    }
+
+    private static int ref(Map<String, Integer> dictionary, String value) {
+        return value == null ? NULL_REF : dictionary.get(value);
+    }
+
+    private static String string(String[] strings, int ref) {
+        return ref == NULL_REF ? null : strings[ref];
+    }
+}
@@ -0,0 +1,7 @@
+SELECT e.*, 'MAIN' as record_type, NULL as parent_customer_id, REPLACE(e.ein, '-', '') as matched_key
+            FROM entities e WHERE REPLACE(e.ein, '-', '') IN ({keys})
+            UNION ALL
+            SELECT e.*, 'LOCATION' as record_type, l.parent_customer_id, REPLACE(l.ein, '-', '') as matched_key
+            FROM entity_locations l
+            JOIN entities e ON l.location_id = e.entity_id
+            WHERE REPLACE(l.ein, '-', '') IN ({keys})
@@ -0,0 +1,7 @@
+SELECT e.*, 'MAIN' as record_type, NULL as parent_customer_id, e.lei as matched_key
+            FROM entities e WHERE e.lei IN ({keys})
+            UNION ALL
+            SELECT e.*, 'LOCATION' as record_type, l.parent_customer_id, l.lei as matched_key
+            FROM entity_locations l
+            JOIN entities e ON l.location_id = e.entity_id
+            WHERE l.lei IN ({keys})
@@ -0,0 +1,2 @@
+SELECT e.*, 'MAIN' as record_type, NULL as parent_customer_id
+            FROM entities e WHERE e.mei = ?
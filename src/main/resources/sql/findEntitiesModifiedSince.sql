@@ -0,0 +1,3 @@
+SELECT *, 'MAIN' as record_type, NULL as parent_customer_id
+           FROM entities WHERE last_modified > ?
+           ORDER BY last_modified
@@ -0,0 +1,4 @@
+SELECT e.*, 'LOCATION' as record_type, l.parent_customer_id
+            FROM entity_locations l
+            JOIN entities e ON l.location_id = e.entity_id
+            WHERE l.parent_customer_id = ?
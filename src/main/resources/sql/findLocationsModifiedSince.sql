@@ -0,0 +1,4 @@
+SELECT l.location_id, l.parent_customer_id, l.mei, l.lei, l.ein
+           FROM entity_locations l
+           JOIN entities e ON l.location_id = e.entity_id
+           WHERE e.last_modified > ?
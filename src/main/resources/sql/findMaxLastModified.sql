@@ -0,0 +1 @@
+SELECT MAX(last_modified) as last_modified FROM entities
@@ -0,0 +1,2 @@
+SELECT *, 'MAIN' as record_type, NULL as parent_customer_id
+           FROM entities
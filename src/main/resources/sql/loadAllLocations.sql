@@ -0,0 +1,2 @@
+SELECT location_id, parent_customer_id, mei, lei, ein
+           FROM entity_locations
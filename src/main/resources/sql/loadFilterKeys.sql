@@ -0,0 +1,2 @@
+SELECT mei, lei, ein, debt_domain_id, full_name, short_name, ultimate_parent
+            FROM entities
@@ -0,0 +1,40 @@
+-- Lookup sidecar owned by the matching tool, in its own schema (loaniq.sidecar.schema).
+-- Holds pre-normalized keys so lookups need no function on LoanIQ columns.
+-- Scripts in this directory run in name order at every startup, so each must be safe to re-run.
+
+CREATE SCHEMA IF NOT EXISTS {schema};
+
+CREATE TABLE IF NOT EXISTS {schema}.em_entity_lookup (
+    entity_id BIGINT PRIMARY KEY,
+    ein_normalized VARCHAR(20),
+    short_name_clean VARCHAR(200),
+    short_name_lower VARCHAR(200),
+    full_name_lower VARCHAR(500),
+    ultimate_parent_lower VARCHAR(500),
+    email_domain VARCHAR(100),
+    source_modified TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_lookup_ein ON {schema}.em_entity_lookup(ein_normalized);
+CREATE INDEX IF NOT EXISTS idx_lookup_short_name_clean ON {schema}.em_entity_lookup(short_name_clean);
+CREATE INDEX IF NOT EXISTS idx_lookup_full_name ON {schema}.em_entity_lookup(full_name_lower);
+CREATE INDEX IF NOT EXISTS idx_lookup_short_name ON {schema}.em_entity_lookup(short_name_lower);
+CREATE INDEX IF NOT EXISTS idx_lookup_email_domain ON {schema}.em_entity_lookup(email_domain);
+CREATE INDEX IF NOT EXISTS idx_lookup_source_modified ON {schema}.em_entity_lookup(source_modified);
+
+-- Words of each name column: F for full_name, S for short_name, P for ultimate_parent
+CREATE TABLE IF NOT EXISTS {schema}.em_name_word (
+    entity_id BIGINT NOT NULL,
+    name_column CHAR(1) NOT NULL,
+    word VARCHAR(200) NOT NULL,
+    PRIMARY KEY (name_column, word, entity_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_name_word_entity ON {schema}.em_name_word(entity_id);
+
+CREATE TABLE IF NOT EXISTS {schema}.em_location_lookup (
+    location_id BIGINT PRIMARY KEY,
+    ein_normalized VARCHAR(20)
+);
+
+CREATE INDEX IF NOT EXISTS idx_location_lookup_ein ON {schema}.em_location_lookup(ein_normalized);
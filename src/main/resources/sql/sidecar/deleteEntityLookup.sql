@@ -0,0 +1 @@
+DELETE FROM {schema}.em_entity_lookup WHERE entity_id = ?
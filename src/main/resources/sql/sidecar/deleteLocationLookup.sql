@@ -0,0 +1 @@
+DELETE FROM {schema}.em_location_lookup WHERE location_id = ?
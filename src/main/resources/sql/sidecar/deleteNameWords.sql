@@ -0,0 +1 @@
+DELETE FROM {schema}.em_name_word WHERE entity_id = ?
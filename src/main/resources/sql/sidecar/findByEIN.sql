@@ -0,0 +1,10 @@
+SELECT e.*, 'MAIN' as record_type, NULL as parent_customer_id
+            FROM {schema}.em_entity_lookup k
+            JOIN entities e ON e.entity_id = k.entity_id
+            WHERE k.ein_normalized = REPLACE(?, '-', '')
+            UNION ALL
+            SELECT e.*, 'LOCATION' as record_type, l.parent_customer_id
+            FROM {schema}.em_location_lookup kl
+            JOIN entity_locations l ON l.location_id = kl.location_id
+            JOIN entities e ON l.location_id = e.entity_id
+            WHERE kl.ein_normalized = REPLACE(?, '-', '')
@@ -0,0 +1,12 @@
+SELECT e.*, 'MAIN' as record_type, NULL as parent_customer_id
+                    FROM {schema}.em_entity_lookup k
+                    JOIN entities e ON e.entity_id = k.entity_id
+                    WHERE k.entity_id IN (
+                      SELECT d.entity_id FROM {schema}.em_entity_lookup d WHERE d.email_domain = ?
+                      UNION
+                      SELECT w.entity_id FROM {schema}.em_name_word w
+                      WHERE w.name_column IN ('F', 'P') AND w.word LIKE ?)
+                    AND (
+                      k.email_domain = ? OR
+                      k.full_name_lower LIKE ? OR
+                      k.ultimate_parent_lower LIKE ?)
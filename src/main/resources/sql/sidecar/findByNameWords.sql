@@ -0,0 +1,18 @@
+SELECT e.*, 'MAIN' as record_type, NULL as parent_customer_id
+             FROM {schema}.em_entity_lookup k
+             JOIN entities e ON e.entity_id = k.entity_id
+             WHERE k.entity_id IN (
+               SELECT w.entity_id FROM {schema}.em_name_word w
+               WHERE w.name_column IN ('F', 'S') AND w.word LIKE ?
+               UNION
+               SELECT w.entity_id FROM {schema}.em_name_word w
+               WHERE w.name_column = 'P' AND w.word LIKE ?)
+             AND (
+               k.full_name_lower LIKE ? OR
+               k.short_name_lower LIKE ? OR
+               k.ultimate_parent_lower LIKE ?)
+             ORDER BY CASE
+               WHEN k.full_name_lower = LOWER(?) THEN 1
+               WHEN k.short_name_lower = LOWER(?) THEN 2
+               ELSE 3 END
+             LIMIT 100
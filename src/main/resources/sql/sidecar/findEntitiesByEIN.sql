@@ -0,0 +1,4 @@
+SELECT e.*, 'MAIN' as record_type, NULL as parent_customer_id
+            FROM {schema}.em_entity_lookup k
+            JOIN entities e ON e.entity_id = k.entity_id
+            WHERE k.ein_normalized = REPLACE(?, '-', '')
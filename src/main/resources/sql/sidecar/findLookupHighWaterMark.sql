@@ -0,0 +1 @@
+SELECT MAX(source_modified) as last_modified FROM {schema}.em_entity_lookup
@@ -0,0 +1,3 @@
+INSERT INTO {schema}.em_entity_lookup (entity_id, ein_normalized, short_name_clean, short_name_lower,
+                              full_name_lower, ultimate_parent_lower, email_domain, source_modified)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
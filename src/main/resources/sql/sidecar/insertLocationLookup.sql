@@ -0,0 +1 @@
+INSERT INTO {schema}.em_location_lookup (location_id, ein_normalized) VALUES (?, ?)
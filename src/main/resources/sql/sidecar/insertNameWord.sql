@@ -0,0 +1 @@
+INSERT INTO {schema}.em_name_word (entity_id, name_column, word) VALUES (?, ?, ?)
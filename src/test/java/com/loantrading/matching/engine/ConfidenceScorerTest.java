@@ -0,0 +1,102 @@
+package com.loantrading.matching.engine;
+
+import com.loantrading.matching.entity.Discrepancy;
+import com.loantrading.matching.entity.DiscrepancySeverity;
+import com.loantrading.matching.entity.ExtractedEntity;
+import com.loantrading.matching.entity.LoanIQEntity;
+import com.loantrading.matching.entity.MatchResult;
+import com.loantrading.matching.entity.ScoreComponent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConfidenceScorerTest {
+
+    private ConfidenceScorer scorer;
+    private ExtractedEntity extracted;
+
+    @BeforeEach
+    void setUp() {
+        scorer = new ConfidenceScorer();
+        extracted = new ExtractedEntity();
+        extracted.setLegalName("Test Corp");
+    }
+
+    /**
+     * MEI match (40) plus a standalone legal name at 70 (21) plus geographic consistency (10)
+     */
+    private static MatchResult meiMatch() {
+        LoanIQEntity entity = new LoanIQEntity();
+        entity.setEntityId(1L);
+        entity.setFullName("Test Corp");
+        MatchResult match = new MatchResult();
+        match.setMatchedEntity(entity);
+        match.addScoreComponent(ScoreComponent.MEI_MATCH, 100);
+        match.addScoreComponent(ScoreComponent.LEGAL_NAME_FUZZY, 70);
+        return match;
+    }
+
+    private static Discrepancy discrepancy(DiscrepancySeverity severity) {
+        return new Discrepancy("TEST", severity, "Test discrepancy");
+    }
+
+    @Test
+    @DisplayName("Should score components without penalties")
+    void testBaseScore() {
+        MatchResult match = meiMatch();
+        scorer.calculateFinalScore(match, extracted);
+        assertEquals(71, match.getScore(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Should lower the score by each discrepancy's penalty")
+    void testDiscrepanciesLowerScore() {
+        MatchResult match = meiMatch();
+        match.addDiscrepancy(discrepancy(DiscrepancySeverity.HIGH));
+        match.addDiscrepancy(discrepancy(DiscrepancySeverity.MEDIUM));
+        scorer.calculateFinalScore(match, extracted);
+        assertEquals(71 - 15 - 10, match.getScore(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Should cap the discrepancy penalty at 50 points")
+    void testDiscrepancyPenaltyIsCapped() {
+        MatchResult match = meiMatch();
+        for (int i = 0; i < 4; i++) {
+            match.addDiscrepancy(discrepancy(DiscrepancySeverity.CRITICAL));
+        }
+        scorer.calculateFinalScore(match, extracted);
+        assertEquals(71 - 50, match.getScore(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Should penalize potential duplicates")
+    void testDuplicatesLowerScore() {
+        MatchResult match = meiMatch();
+        LoanIQEntity duplicate = new LoanIQEntity();
+        duplicate.setEntityId(2L);
+        match.addPotentialDuplicate(duplicate);
+        scorer.calculateFinalScore(match, extracted);
+        assertEquals(71 - 5, match.getScore(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Should bound the final score from above before enrichment")
+    void testUpperBoundCoversFinalScore() {
+        MatchResult unchanged = meiMatch();
+        double bound = scorer.calculateUpperBound(unchanged, extracted);
+        scorer.calculateFinalScore(unchanged, extracted);
+        assertEquals(bound, unchanged.getScore(), 1e-9);
+
+        MatchResult enriched = meiMatch();
+        bound = scorer.calculateUpperBound(enriched, extracted);
+        enriched.addDiscrepancy(discrepancy(DiscrepancySeverity.LOW));
+        enriched.addDiscrepancy(discrepancy(DiscrepancySeverity.CRITICAL));
+        LoanIQEntity duplicate = new LoanIQEntity();
+        duplicate.setEntityId(2L);
+        enriched.addPotentialDuplicate(duplicate);
+        scorer.calculateFinalScore(enriched, extracted);
+        assertTrue(bound >= enriched.getScore(), bound + " < " + enriched.getScore());
+    }
+}
@@ -0,0 +1,148 @@
+package com.loantrading.matching.engine;
+
+import com.loantrading.matching.entity.ExtractedEntity;
+import com.loantrading.matching.entity.LoanIQEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeatureStoreTest {
+
+    private NameNormalizer normalizer;
+    private FeatureStore features;
+
+    @BeforeEach
+    void setUp() {
+        normalizer = new NameNormalizer();
+        features = new FeatureStore(normalizer);
+    }
+
+    private static LoanIQEntity entity(long id, String fullName, String ultimateParent) {
+        LoanIQEntity entity = new LoanIQEntity();
+        entity.setEntityId(id);
+        entity.setFullName(fullName);
+        entity.setUltimateParent(ultimateParent);
+        return entity;
+    }
+
+    private static ExtractedEntity extracted(String legalName, String fundManager, String dba) {
+        ExtractedEntity extracted = new ExtractedEntity();
+        extracted.setLegalName(legalName);
+        extracted.setFundManager(fundManager);
+        extracted.setDba(dba);
+        return extracted;
+    }
+
+    @Test
+    @DisplayName("Should compute features once per entity instance")
+    void testFeaturesAreReused() {
+        LoanIQEntity entity = entity(1, "Apollo Credit Fund LP", "Apollo Global Management");
+
+        assertSame(features.of(entity), features.of(entity));
+        // A row replaced by a refresh is a new instance and gets features of its own
+        LoanIQEntity refreshed = entity(1, "Apollo Credit Fund II LP", "Apollo Global Management");
+        NameFeatures refreshedFeatures = features.of(refreshed);
+        assertNotSame(features.of(entity), refreshedFeatures);
+        assertEquals(normalizer.normalize("Apollo Credit Fund II LP"), refreshedFeatures.getNormalizedName());
+    }
+
+    @Test
+    @DisplayName("Should derive the same normalized names the normalizer gives")
+    void testNormalizedNames() {
+        NameFeatures entityFeatures = features.of(entity(1, "Apollo Credit Fund, L.P.", "Apollo Global Mgmt"));
+        NameFeatures extractedFeatures = features.of(
+            extracted("Blackstone Credit Fund", "Blackstone Inc", "Blackstone Credit"));
+
+        assertEquals(normalizer.normalize("Apollo Credit Fund, L.P."), entityFeatures.getNormalizedName());
+        assertEquals(normalizer.normalizeFundManager("Apollo Global Mgmt"), entityFeatures.getNormalizedFundManager());
+        assertNull(entityFeatures.getNormalizedDba());
+        assertEquals(normalizer.normalize("Blackstone Credit"), extractedFeatures.getNormalizedDba());
+    }
+
+    @Test
+    @DisplayName("Should split LoanIQ trade names into legal and DBA parts")
+    void testDbaParts() {
+        NameFeatures withDba = features.of(entity(1, "Smith Holdings LLC DBA Smith Capital", null));
+        NameFeatures withoutDba = features.of(entity(2, "Smith Holdings LLC", null));
+
+        assertTrue(withDba.hasDbaParts());
+        assertEquals(normalizer.normalize("Smith Holdings LLC"), withDba.getDbaLegalName());
+        assertEquals(normalizer.normalize("Smith Capital"), withDba.getDbaTradeName());
+        assertFalse(withoutDba.hasDbaParts());
+    }
+
+    @Test
+    @DisplayName("Should compare words in any order")
+    void testOrderInsensitiveFeatures() {
+        NameFeatures first = features.of(entity(1, "Harbor Apollo Ridge", null));
+        NameFeatures second = features.of(extracted("Apollo Harbor Ridge", null, null));
+        NameFeatures other = features.of(extracted("Apollo Harbor Summit", null, null));
+
+        assertTrue(second.hasSameWords(first));
+        assertFalse(other.hasSameWords(first));
+    }
+
+    @Test
+    @DisplayName("Should count shared words and their Jaccard similarity in one merge walk")
+    void testSharedWords() {
+        NameFeatures first = features.of(entity(1, "Harbor Apollo Ridge Harbor", null));
+        NameFeatures second = features.of(extracted("Apollo Harbor Summit Zephyr", null, null));
+
+        // One "harbor" pairs up, the unknown words never match
+        assertEquals(2, second.sharedWordCount(first));
+        assertEquals(2, first.sharedWordCount(second));
+        assertEquals(2d / 6, second.wordJaccard(first), 1e-12);
+        assertEquals(1d, first.wordJaccard(features.of(extracted("Ridge Harbor Harbor Apollo", null, null))), 1e-12);
+    }
+
+    @Test
+    @DisplayName("Should match sorted tokens as multisets, never matching unknown words")
+    void testSharedTokenCount() {
+        assertEquals(3, NameFeatures.sharedTokenCount(new int[] {-2, -1, 1, 3, 3, 7}, new int[] {-1, 1, 3, 3, 8}));
+        assertEquals(0, NameFeatures.sharedTokenCount(new int[] {-1}, new int[] {-1}));
+        assertEquals(0, NameFeatures.sharedTokenCount(new int[0], new int[] {1}));
+    }
+
+    @Test
+    @DisplayName("Should rule out containment only when a character is missing")
+    void testMayContain() {
+        NameFeatures longer = features.of(entity(1, "Harbor Apollo Ridge", null));
+        NameFeatures contained = features.of(extracted("Apollo Ridge", null, null));
+        NameFeatures scrambled = features.of(extracted("Ridge Lab", null, null));
+
+        assertTrue(longer.mayContain(contained));
+        assertFalse(contained.mayContain(longer));
+        // Necessary only: the characters are there, the substring is not
+        assertTrue(longer.mayContain(scrambled));
+        assertFalse(longer.getNormalizedName().contains(scrambled.getNormalizedName()));
+    }
+
+    @Test
+    @DisplayName("Should recognize a fund manager spelled as the other's initials")
+    void testFundManagerAcronym() {
+        NameFeatures acronym = features.of(extracted("Test Fund", "KKR", null));
+        NameFeatures full = features.of(entity(1, "Test Fund", "Kohlberg Kravis Roberts"));
+
+        assertTrue(acronym.isFundManagerAcronymOf(full));
+        assertFalse(full.isFundManagerAcronymOf(acronym));
+        assertFalse(features.of(extracted("Test Fund", "KKB", null)).isFundManagerAcronymOf(full));
+        assertFalse(features.of(extracted("Test Fund", null, null)).isFundManagerAcronymOf(full));
+    }
+
+    @Test
+    @DisplayName("Should bound the Jaro-Winkler similarity of the normalized names from above")
+    void testJaroWinklerUpperBound() {
+        NameFeatures extractedFeatures = features.of(extracted("Blackston Credit Oportunities Fund", null, null));
+        String[] names = {"Blackstone Credit Opportunities Fund", "Zephyr Maritime Holdings", "Credit Fund",
+            "Blackston Credit Oportunities Fund"};
+        for (int i = 0; i < names.length; i++) {
+            NameFeatures candidate = features.of(entity(i + 1, names[i], null));
+            double similarity = StringSimilarity.jaroWinkler(extractedFeatures.getNormalizedName(),
+                candidate.getNormalizedName());
+
+            assertTrue(extractedFeatures.jaroWinklerUpperBound(candidate) + 1e-9 >= similarity, names[i]);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.loantrading.matching.engine;
+
+import com.loantrading.matching.entity.EvidenceType;
+import com.loantrading.matching.entity.ExtractedEntity;
+import com.loantrading.matching.entity.LoanIQEntity;
+import com.loantrading.matching.entity.MatchResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FuzzyNameMatcherTest {
+
+    private FuzzyNameMatcher matcher;
+
+    @BeforeEach
+    void setUp() {
+        matcher = new FuzzyNameMatcher();
+    }
+
+    private static ExtractedEntity extracted(String legalName, String fundManager) {
+        ExtractedEntity entity = new ExtractedEntity();
+        entity.setLegalName(legalName);
+        entity.setFundManager(fundManager);
+        return entity;
+    }
+
+    private static LoanIQEntity candidate(long id, String fullName, String ultimateParent) {
+        LoanIQEntity entity = new LoanIQEntity();
+        entity.setEntityId(id);
+        entity.setFullName(fullName);
+        entity.setUltimateParent(ultimateParent);
+        return entity;
+    }
+
+    @Test
+    @DisplayName("Should score near-identical legal names high")
+    void testNearIdenticalNamesScoreHigh() {
+        MatchResult result = matcher.match(extracted("Blackston Credit Oportunities Fund", null),
+            candidate(1, "Blackstone Credit Opportunities Fund", null));
+
+        assertTrue(result.getScore() > 90, "score was " + result.getScore());
+        assertTrue(result.hasEvidence(EvidenceType.LEGAL_NAME_FUZZY));
+    }
+
+    @Test
+    @DisplayName("Should score unrelated legal names low")
+    void testUnrelatedNamesScoreLow() {
+        MatchResult result = matcher.match(extracted("Blackstone Credit Opportunities Fund", null),
+            candidate(1, "Zephyr Maritime Holdings", null));
+
+        assertTrue(result.getScore() < 60, "score was " + result.getScore());
+        assertFalse(result.hasEvidence(EvidenceType.LEGAL_NAME_FUZZY));
+        assertFalse(result.hasEvidence(EvidenceType.LEGAL_NAME_PARTIAL));
+    }
+
+    @Test
+    @DisplayName("Should rank a misspelled name above an unrelated one")
+    void testCloserNameScoresHigher() {
+        ExtractedEntity extracted = extracted("Oaktree Senior Loan Fund", null);
+        double close = matcher.match(extracted, candidate(1, "Oaktre Senior Loan Fnd", null)).getScore();
+        double unrelated = matcher.match(extracted, candidate(2, "Pinnacle Energy Partners", null)).getScore();
+
+        assertTrue(close > unrelated, close + " <= " + unrelated);
+    }
+
+    @Test
+    @DisplayName("Should score a misspelled fund manager as a composite match")
+    void testNearIdenticalFundManagerScoresHigh() {
+        ExtractedEntity extracted = extracted("Apollo Credit Fund I", "Apollo Global Management");
+        MatchResult close = matcher.match(extracted,
+            candidate(1, "Apollo Credit Fund I", "Apollo Global Managment"));
+        MatchResult unrelated = matcher.match(extracted,
+            candidate(2, "Apollo Credit Fund I", "Zenith Harbor Advisors"));
+
+        assertTrue(close.isCompositeMatch());
+        assertTrue(close.hasEvidence(EvidenceType.FUND_MANAGER_FUZZY));
+        assertTrue(close.getScore() > 90, "score was " + close.getScore());
+        assertFalse(unrelated.hasEvidence(EvidenceType.FUND_MANAGER_FUZZY));
+        assertTrue(unrelated.getScore() < 50, "score was " + unrelated.getScore());
+    }
+
+    @Test
+    @DisplayName("Should never prune a candidate that scores above the bound's threshold")
+    void testUpperBoundCoversScore() {
+        ExtractedEntity extracted = extracted("Blackston Credit Oportunities Fund", null);
+        LoanIQEntity candidate = candidate(1, "Blackstone Credit Opportunities Fund", null);
+        double score = matcher.match(extracted, candidate).getScore();
+
+        assertTrue(matcher.canScoreAbove(extracted, candidate, score - 1));
+        assertFalse(matcher.canScoreAbove(extracted("Blackstone Credit Opportunities Fund", null),
+            candidate(2, "Zy", null), 60));
+    }
+}
@@ -0,0 +1,50 @@
+package com.loantrading.matching.engine;
+
+import com.loantrading.matching.entity.ExtractedEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchContextTest {
+
+    private MatchContext context;
+
+    @BeforeEach
+    void setUp() {
+        ExtractedEntity extracted = new ExtractedEntity();
+        extracted.setLegalName("Blackstone Credit Fund");
+        context = new MatchContext(extracted, null, null);
+    }
+
+    @Test
+    @DisplayName("Should memoize the same similarity the kernel computes")
+    void testMemoizedSimilarityIsExact() {
+        double expected = StringSimilarity.jaroWinkler("blackstone credit", "blackston credit");
+
+        assertEquals(expected, context.jaroWinkler("blackstone credit", "blackston credit"), 1e-12);
+        assertEquals(expected, context.jaroWinkler("blackstone credit", "blackston credit"), 1e-12);
+        // Also served to thresholded callers, whatever their threshold
+        assertEquals(expected, context.jaroWinkler("blackstone credit", "blackston credit", 0.99), 1e-12);
+    }
+
+    @Test
+    @DisplayName("Should not memoize a thresholded similarity that gave up below the threshold")
+    void testBelowThresholdIsNotMemoized() {
+        double exact = StringSimilarity.jaroWinkler("apollo", "zephyr maritime holdings");
+        assertTrue(exact > 0);
+
+        assertEquals(0, context.jaroWinkler("apollo", "zephyr maritime holdings", 0.95), 1e-12);
+        assertEquals(exact, context.jaroWinkler("apollo", "zephyr maritime holdings"), 1e-12);
+    }
+
+    @Test
+    @DisplayName("Should keep similarities of the two argument orders apart")
+    void testArgumentOrderIsKept() {
+        assertEquals(StringSimilarity.jaroWinkler("oaktree", "oak tree capital"),
+            context.jaroWinkler("oaktree", "oak tree capital"), 1e-12);
+        assertEquals(StringSimilarity.jaroWinkler("oak tree capital", "oaktree"),
+            context.jaroWinkler("oak tree capital", "oaktree"), 1e-12);
+    }
+}
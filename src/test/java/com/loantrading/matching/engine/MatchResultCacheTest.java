@@ -0,0 +1,105 @@
+package com.loantrading.matching.engine;
+
+import com.loantrading.matching.entity.Discrepancy;
+import com.loantrading.matching.entity.DiscrepancySeverity;
+import com.loantrading.matching.entity.EvidenceType;
+import com.loantrading.matching.entity.ExtractedEntity;
+import com.loantrading.matching.entity.LoanIQEntity;
+import com.loantrading.matching.entity.MatchResult;
+import com.loantrading.matching.entity.ScoreComponent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchResultCacheTest {
+
+    private MatchResultCache cache;
+    private ExtractedEntity extracted;
+
+    @BeforeEach
+    void setUp() {
+        cache = new MatchResultCache(100, 60);
+        extracted = new ExtractedEntity();
+        extracted.setLegalName("Test Corp");
+        extracted.setMei("US1234567");
+    }
+
+    private static List<MatchResult> results() {
+        LoanIQEntity entity = new LoanIQEntity();
+        entity.setEntityId(1L);
+        entity.setFullName("Test Corp");
+        MatchResult match = new MatchResult();
+        match.setMatchedEntity(entity);
+        match.setScore(82);
+        match.addScoreComponent(ScoreComponent.MEI_MATCH, 100);
+        match.addEvidence(EvidenceType.LEGAL_NAME_EXACT);
+        Discrepancy discrepancy = new Discrepancy("LEI_MISMATCH", DiscrepancySeverity.HIGH, "LEI differs");
+        discrepancy.addDetail("form_lei", "LEI1");
+        match.addDiscrepancy(discrepancy);
+        List<MatchResult> results = new ArrayList<>();
+        results.add(match);
+        return results;
+    }
+
+    @Test
+    @DisplayName("Should return the cached results for the same fields and data version")
+    void testHit() {
+        cache.put(extracted, null, 7, results());
+
+        ExtractedEntity resubmitted = new ExtractedEntity();
+        resubmitted.setLegalName("Test Corp");
+        resubmitted.setMei("US1234567");
+        List<MatchResult> hit = cache.get(resubmitted, null, 7);
+
+        assertNotNull(hit);
+        assertEquals(1, hit.size());
+        assertEquals(1L, hit.get(0).getMatchedEntity().getEntityId());
+        assertEquals(82, hit.get(0).getScore(), 1e-9);
+        assertEquals(100, hit.get(0).getScoreComponent(ScoreComponent.MEI_MATCH), 1e-9);
+        assertTrue(hit.get(0).hasEvidence(EvidenceType.LEGAL_NAME_EXACT));
+        assertEquals("LEI1", hit.get(0).getDiscrepancies().get(0).getDetails().get("form_lei"));
+    }
+
+    @Test
+    @DisplayName("Should miss once the data version has moved on or the fields differ")
+    void testMiss() {
+        cache.put(extracted, null, 7, results());
+
+        assertNull(cache.get(extracted, null, 8));
+        ExtractedEntity other = new ExtractedEntity();
+        other.setLegalName("Test Corp");
+        other.setMei("US7654321");
+        assertNull(cache.get(other, null, 7));
+        assertNull(cache.get(extracted, extracted, 7));
+    }
+
+    @Test
+    @DisplayName("Should not let callers change the cached results")
+    void testResultsAreCopied() {
+        List<MatchResult> stored = results();
+        cache.put(extracted, null, 7, stored);
+        stored.get(0).setScore(10);
+        stored.get(0).getDiscrepancies().get(0).addDetail("form_lei", "CHANGED");
+
+        List<MatchResult> first = cache.get(extracted, null, 7);
+        assertEquals(82, first.get(0).getScore(), 1e-9);
+        assertEquals("LEI1", first.get(0).getDiscrepancies().get(0).getDetails().get("form_lei"));
+
+        first.get(0).setScore(20);
+        first.get(0).addEvidence(EvidenceType.DUPLICATES_PENALIZED, 1);
+        first.get(0).getDiscrepancies().clear();
+        first.clear();
+
+        List<MatchResult> second = cache.get(extracted, null, 7);
+        assertEquals(1, second.size());
+        assertNotSame(first, second);
+        assertEquals(82, second.get(0).getScore(), 1e-9);
+        assertFalse(second.get(0).hasEvidence(EvidenceType.DUPLICATES_PENALIZED));
+        assertEquals(1, second.get(0).getDiscrepancies().size());
+    }
+}
@@ -0,0 +1,398 @@
+package com.loantrading.matching.engine;
+
+import com.loantrading.matching.entity.ExtractedEntity;
+import com.loantrading.matching.entity.LoanIQEntity;
+import com.loantrading.matching.entity.MatchResult;
+import com.loantrading.matching.entity.ScoreComponent;
+import com.loantrading.matching.repository.RepositoryConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchingEngineTest {
+
+    private Connection connection;
+    private MatchingEngine engine;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:matchingengine;MODE=PostgreSQL");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE entities (" +
+                    "entity_id BIGINT PRIMARY KEY, full_name VARCHAR(500) NOT NULL, short_name VARCHAR(200), " +
+                    "ultimate_parent VARCHAR(500), mei VARCHAR(10), lei VARCHAR(20), ein VARCHAR(20), " +
+                    "debt_domain_id VARCHAR(20), email_domain VARCHAR(100), country_code VARCHAR(2), " +
+                    "legal_address TEXT, tax_address TEXT, last_modified TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+            statement.execute("CREATE TABLE entity_locations (" +
+                    "location_id BIGINT PRIMARY KEY, parent_customer_id BIGINT, " +
+                    "mei VARCHAR(10), lei VARCHAR(20), ein VARCHAR(20))");
+            // Shares an MEI with some of the matched entities, which makes them potential duplicates
+            statement.execute("INSERT INTO entities (entity_id, full_name, mei) VALUES " +
+                    "(100, 'Other Holder LLC', 'US7654321')");
+        }
+        RepositoryConfig config = new RepositoryConfig();
+        config.setResultCacheSize(100);
+        engine = new MatchingEngine(connection, config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Also closes the connection, which drops the in-memory database
+        engine.close();
+    }
+
+    /**
+     * Strategy returning fixed matches, needed while fewer than {@code neededBelow} are merged
+     */
+    private static class StubStrategy implements MatchingStrategy {
+        private final String name;
+        private final Cost cost;
+        private final int neededBelow;
+        private final List<Long> entityIds;
+        final AtomicInteger starts = new AtomicInteger();
+
+        StubStrategy(String name, Cost cost, int neededBelow, Long... entityIds) {
+            this.name = name;
+            this.cost = cost;
+            this.neededBelow = neededBelow;
+            this.entityIds = List.of(entityIds);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Cost getCost() {
+            return cost;
+        }
+
+        @Override
+        public CompletableFuture<List<MatchResult>> start(MatchContext context) {
+            starts.incrementAndGet();
+            List<MatchResult> results = new ArrayList<>();
+            for (Long id : entityIds) {
+                LoanIQEntity entity = new LoanIQEntity();
+                entity.setEntityId(id);
+                entity.setFullName("Stub " + id);
+                MatchResult match = new MatchResult();
+                match.setMatchedEntity(entity);
+                match.addScoreComponent(ScoreComponent.LEGAL_NAME_FUZZY, 80);
+                match.setScore(80);
+                results.add(match);
+            }
+            return CompletableFuture.completedFuture(results);
+        }
+
+        @Override
+        public boolean isNeeded(List<MatchResult> matches) {
+            return matches.size() < neededBelow;
+        }
+    }
+
+    /**
+     * Stub whose results never arrive, recording whether the engine gave up on them
+     */
+    private static class StalledStrategy extends StubStrategy {
+        private final CompletableFuture<List<MatchResult>> results = new CompletableFuture<>();
+
+        StalledStrategy(Cost cost) {
+            super("STALLED", cost, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public CompletableFuture<List<MatchResult>> start(MatchContext context) {
+            super.start(context);
+            return results;
+        }
+    }
+
+    private static ExtractedEntity extracted() {
+        ExtractedEntity extracted = new ExtractedEntity();
+        extracted.setLegalName("Test Fund LP");
+        extracted.setMei("US1234567");
+        extracted.setLei("LEI000001");
+        extracted.setCountryCode("US");
+        return extracted;
+    }
+
+    /**
+     * Matches whose bounds and final scores disagree in order: identifier mismatches, country
+     * mismatches and duplicates lower some of them after the bound was taken
+     */
+    private static List<MatchResult> matches() {
+        List<MatchResult> matches = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            LoanIQEntity entity = new LoanIQEntity();
+            entity.setEntityId((long) i + 1);
+            entity.setFullName("Candidate " + i);
+            entity.setMei(i % 4 == 0 ? "US7654321" : "US1234567");
+            entity.setLei(i % 5 == 0 ? "LEI999999" : "LEI000001");
+            entity.setCountryCode(i % 3 == 0 ? "GB" : "US");
+
+            MatchResult match = new MatchResult();
+            match.setMatchedEntity(entity);
+            if (i % 2 == 0) {
+                match.addScoreComponent(ScoreComponent.MEI_MATCH, 100);
+            } else if (i % 3 == 0) {
+                match.addScoreComponent(ScoreComponent.LEI_MATCH, 100);
+            }
+            match.addScoreComponent(ScoreComponent.LEGAL_NAME_FUZZY, 40 + (i * 37) % 60);
+            match.setScore(40 + (i * 37) % 60);
+            matches.add(match);
+        }
+        return matches;
+    }
+
+    @Test
+    @DisplayName("Should rank the same top matches as enriching and sorting all of them")
+    void testRankTopMatchesAgreesWithFullSort() {
+        MatchContext context = new MatchContext(extracted(), null, null);
+
+        List<MatchResult> all = matches();
+        engine.enrich(context, all);
+        List<MatchResult> sorted = new ArrayList<>(all);
+        sorted.sort(Comparator.comparingDouble(MatchResult::getScore).reversed());
+        List<MatchResult> expected = sorted.subList(0, 5);
+
+        List<MatchResult> ranked = engine.rankTopMatches(new MatchContext(extracted(), null, null), matches());
+
+        assertEquals(ids(expected), ids(ranked));
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getScore(), ranked.get(i).getScore(), 1e-9);
+        }
+    }
+
+    @Test
+    @DisplayName("Should not start an expensive strategy that cheaper results made unnecessary")
+    void testStrategyNotStartedWhenNotNeeded() {
+        StubStrategy cheap = new StubStrategy("CHEAP", MatchingStrategy.Cost.LOW, Integer.MAX_VALUE,
+            1L, 2L, 3L, 4L, 5L);
+        StubStrategy expensive = new StubStrategy("EXPENSIVE", MatchingStrategy.Cost.HIGH, 3, 6L);
+        engine.addStrategy(cheap);
+        engine.addStrategy(expensive);
+
+        List<MatchResult> matches = engine.findMatches(extracted(), null);
+
+        assertEquals(1, cheap.starts.get());
+        assertEquals(0, expensive.starts.get());
+        assertEquals(5, matches.size());
+        assertTrue(matches.stream().allMatch(match -> "CHEAP".equals(match.getMatchStrategy())));
+    }
+
+    @Test
+    @DisplayName("Should start an expensive strategy while cheaper results are too few")
+    void testStrategyStartedWhenNeeded() {
+        StubStrategy cheap = new StubStrategy("CHEAP", MatchingStrategy.Cost.LOW, Integer.MAX_VALUE, 1L);
+        StubStrategy expensive = new StubStrategy("EXPENSIVE", MatchingStrategy.Cost.HIGH, 3, 1L, 6L);
+        engine.addStrategy(cheap);
+        engine.addStrategy(expensive);
+
+        List<MatchResult> matches = engine.findMatches(extracted(), null);
+
+        assertEquals(1, expensive.starts.get());
+        assertEquals(2, matches.size());
+        // The entity found by both keeps the cheaper strategy's match
+        assertEquals(List.of("CHEAP", "EXPENSIVE"), matches.stream()
+            .sorted(Comparator.comparing(match -> match.getMatchedEntity().getEntityId()))
+            .map(MatchResult::getMatchStrategy)
+            .collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("Should start the MEDIUM tier alongside LOW and drop it when LOW results make it unnecessary")
+    void testSpeculativeStartDroppedWhenNotNeeded() {
+        StubStrategy cheap = new StubStrategy("CHEAP", MatchingStrategy.Cost.LOW, Integer.MAX_VALUE,
+            1L, 2L, 3L, 4L, 5L);
+        StalledStrategy medium = new StalledStrategy(MatchingStrategy.Cost.MEDIUM) {
+            @Override
+            public boolean isNeeded(List<MatchResult> matches) {
+                return matches.size() < 3;
+            }
+        };
+        engine.addStrategy(cheap);
+        engine.addStrategy(medium);
+        MatchContext context = new MatchContext(extracted(), null, null);
+        List<MatchResult> matches = new ArrayList<>();
+
+        engine.runStrategies(context, matches);
+
+        // Started before the LOW results were in, then cancelled without waiting for it
+        assertEquals(1, medium.starts.get());
+        assertTrue(medium.results.isCancelled());
+        assertFalse(context.isPartial());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids(matches));
+    }
+
+    @Test
+    @DisplayName("Should cancel the speculative MEDIUM tier when LOW results are conclusive")
+    void testSpeculativeStartCancelledWhenSettled() {
+        StubStrategy cheap = new StubStrategy("CHEAP", MatchingStrategy.Cost.LOW, Integer.MAX_VALUE, 1L) {
+            @Override
+            public boolean isConclusive(List<MatchResult> results) {
+                return true;
+            }
+        };
+        StalledStrategy medium = new StalledStrategy(MatchingStrategy.Cost.MEDIUM);
+        StubStrategy expensive = new StubStrategy("EXPENSIVE", MatchingStrategy.Cost.HIGH, Integer.MAX_VALUE, 2L);
+        engine.addStrategy(cheap);
+        engine.addStrategy(medium);
+        engine.addStrategy(expensive);
+        MatchContext context = new MatchContext(extracted(), null, null);
+        List<MatchResult> matches = new ArrayList<>();
+
+        engine.runStrategies(context, matches);
+
+        assertEquals(1, medium.starts.get());
+        assertTrue(medium.results.isCancelled());
+        // Only the MEDIUM tier is started early
+        assertEquals(0, expensive.starts.get());
+        assertEquals(List.of(1L), ids(matches));
+    }
+
+    @Test
+    @DisplayName("Should merge a speculatively started MEDIUM tier after LOW, keeping the cheaper match")
+    void testSpeculativeStartMergedInOrder() {
+        StubStrategy cheap = new StubStrategy("CHEAP", MatchingStrategy.Cost.LOW, Integer.MAX_VALUE, 1L);
+        StubStrategy medium = new StubStrategy("MEDIUM", MatchingStrategy.Cost.MEDIUM, Integer.MAX_VALUE, 2L, 1L);
+        engine.addStrategy(cheap);
+        engine.addStrategy(medium);
+        MatchContext context = new MatchContext(extracted(), null, null);
+        List<MatchResult> matches = new ArrayList<>();
+
+        engine.runStrategies(context, matches);
+
+        assertEquals(1, medium.starts.get());
+        assertEquals(List.of(1L, 2L), ids(matches));
+        assertEquals(List.of("CHEAP", "MEDIUM"),
+            matches.stream().map(MatchResult::getMatchStrategy).collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("Should answer a resubmitted entity from the result cache")
+    void testResubmissionIsCached() {
+        StubStrategy cheap = new StubStrategy("CHEAP", MatchingStrategy.Cost.LOW, Integer.MAX_VALUE, 1L, 2L);
+        engine.addStrategy(cheap);
+
+        List<MatchResult> first = engine.findMatches(extracted(), null);
+        first.get(0).setScore(0);
+        List<MatchResult> second = engine.findMatches(extracted(), null);
+
+        assertEquals(1, cheap.starts.get());
+        assertEquals(ids(first), ids(second));
+        assertNotSame(first.get(0), second.get(0));
+        assertTrue(second.get(0).getScore() > 0);
+    }
+
+    @Test
+    @DisplayName("Should not cache results left partial by the time budget")
+    void testPartialResultsAreNotCached() {
+        StubStrategy cheap = new StubStrategy("CHEAP", MatchingStrategy.Cost.LOW, Integer.MAX_VALUE, 1L);
+        StalledStrategy stalled = new StalledStrategy(MatchingStrategy.Cost.HIGH);
+        engine.addStrategy(cheap);
+        engine.addStrategy(stalled);
+
+        List<MatchResult> first = engine.findMatches(extracted(), null, Duration.ofMillis(200));
+        List<MatchResult> second = engine.findMatches(extracted(), null, Duration.ofMillis(200));
+
+        // The cheap results are still returned, but each request runs the pipeline again
+        assertEquals(List.of(1L), ids(first));
+        assertEquals(List.of(1L), ids(second));
+        assertEquals(2, cheap.starts.get());
+        assertEquals(2, stalled.starts.get());
+    }
+
+    @Test
+    @DisplayName("Should stop waiting for a strategy at the deadline and mark the results partial")
+    void testDeadlineMarksPartial() {
+        StubStrategy cheap = new StubStrategy("CHEAP", MatchingStrategy.Cost.LOW, Integer.MAX_VALUE, 1L);
+        StalledStrategy stalled = new StalledStrategy(MatchingStrategy.Cost.HIGH);
+        engine.addStrategy(cheap);
+        engine.addStrategy(stalled);
+        MatchContext context = new MatchContext(extracted(), null, Duration.ofMillis(200));
+        List<MatchResult> matches = new ArrayList<>();
+
+        long startNanos = System.nanoTime();
+        engine.runStrategies(context, matches);
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+
+        assertTrue(elapsedMillis < 5_000, "took " + elapsedMillis + " ms");
+        assertTrue(context.isPartial());
+        assertTrue(stalled.results.isCancelled());
+        assertEquals(List.of(1L), ids(matches));
+    }
+
+    @Test
+    @DisplayName("Should not start strategies once the time budget has run out")
+    void testExpiredBudgetSkipsStrategies() {
+        StubStrategy cheap = new StubStrategy("CHEAP", MatchingStrategy.Cost.LOW, Integer.MAX_VALUE, 1L);
+        engine.addStrategy(cheap);
+        MatchContext context = new MatchContext(extracted(), null, Duration.ZERO);
+        List<MatchResult> matches = new ArrayList<>();
+
+        engine.runStrategies(context, matches);
+
+        assertEquals(0, cheap.starts.get());
+        assertTrue(context.isPartial());
+        assertTrue(matches.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should keep other strategies' results when one fails, marking them partial")
+    void testFailedStrategyMarksPartial() {
+        StubStrategy cheap = new StubStrategy("CHEAP", MatchingStrategy.Cost.LOW, Integer.MAX_VALUE, 1L);
+        StubStrategy failing = new StubStrategy("FAILING", MatchingStrategy.Cost.MEDIUM, Integer.MAX_VALUE) {
+            @Override
+            public CompletableFuture<List<MatchResult>> start(MatchContext context) {
+                super.start(context);
+                return CompletableFuture.failedFuture(new IllegalStateException("lookup failed"));
+            }
+        };
+        engine.addStrategy(cheap);
+        engine.addStrategy(failing);
+        MatchContext context = new MatchContext(extracted(), null, null);
+        List<MatchResult> matches = new ArrayList<>();
+
+        engine.runStrategies(context, matches);
+
+        assertEquals(1, failing.starts.get());
+        assertTrue(context.isPartial());
+        assertEquals(List.of(1L), ids(matches));
+    }
+
+    @Test
+    @DisplayName("Should not mark results partial when every strategy finishes in time")
+    void testCompleteResultsAreNotPartial() {
+        StubStrategy cheap = new StubStrategy("CHEAP", MatchingStrategy.Cost.LOW, Integer.MAX_VALUE, 1L);
+        StubStrategy expensive = new StubStrategy("EXPENSIVE", MatchingStrategy.Cost.HIGH, Integer.MAX_VALUE, 2L);
+        engine.addStrategy(cheap);
+        engine.addStrategy(expensive);
+        MatchContext context = new MatchContext(extracted(), null, Duration.ofSeconds(30));
+        List<MatchResult> matches = new ArrayList<>();
+
+        engine.runStrategies(context, matches);
+
+        assertFalse(context.isPartial());
+        assertEquals(List.of(1L, 2L), ids(matches));
+    }
+
+    private static List<Long> ids(List<MatchResult> matches) {
+        return matches.stream().map(match -> match.getMatchedEntity().getEntityId()).collect(Collectors.toList());
+    }
+}
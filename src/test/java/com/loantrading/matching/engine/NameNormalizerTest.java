@@ -86,4 +86,13 @@ public class NameNormalizerTest {
         assertEquals("alpha-beta", nameNormalizer.normalize("Alpha—Beta")); // em dash
         assertEquals("gamma-delta", nameNormalizer.normalize("Gamma–Delta")); // en dash
     }
+
+    @Test
+    @DisplayName("Should remove multi-word corporate forms and articles")
+    void testMultiWordFormsAndArticles() {
+        assertEquals("muller", nameNormalizer.normalize("Muller GmbH Co KG"));
+        assertEquals("kowalski", nameNormalizer.normalize("Kowalski Sp Zoo"));
+        assertEquals("bank america", nameNormalizer.normalize("The Bank of America Corp"));
+        assertEquals("zoo keepers", nameNormalizer.normalize("Zoo Keepers Ltd"));
+    }
 }
@@ -0,0 +1,93 @@
+package com.loantrading.matching.engine;
+
+import org.apache.commons.text.similarity.JaroWinklerSimilarity;
+import org.apache.commons.text.similarity.LevenshteinDistance;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StringSimilarityTest {
+
+    private static final String[] NAMES = {
+        "", "a", "goldman sachs", "goldman sachs asset management", "gsam", "blackrock",
+        "black rock", "apex financial services", "apex finacial services", "martha", "marhta",
+        "dixon", "dicksonx", "international business machines", "jp morgan chase",
+        "societe generale", "société générale",
+        "an unusually long fund name that runs well past sixty four characters in total length",
+        "an unusually long fund name that runs well past sixty-four characters in total lenght"
+    };
+
+    @Test
+    @DisplayName("Jaro-Winkler should match commons-text exactly")
+    void testJaroWinklerMatchesCommonsText() {
+        JaroWinklerSimilarity reference = new JaroWinklerSimilarity();
+        for (String left : NAMES) {
+            for (String right : NAMES) {
+                assertEquals(reference.apply(left, right).doubleValue(), StringSimilarity.jaroWinkler(left, right),
+                    left + " / " + right);
+            }
+        }
+
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            String left = randomName(random);
+            String right = randomName(random);
+            assertEquals(reference.apply(left, right).doubleValue(), StringSimilarity.jaroWinkler(left, right),
+                left + " / " + right);
+        }
+    }
+
+    @Test
+    @DisplayName("Jaro-Winkler threshold should only cut off scores below it")
+    void testJaroWinklerThreshold() {
+        Random random = new Random(11);
+        for (int i = 0; i < 5000; i++) {
+            String left = randomName(random);
+            String right = randomName(random);
+            double exact = StringSimilarity.jaroWinkler(left, right);
+            double bounded = StringSimilarity.jaroWinkler(left, right, 0.85);
+            if (exact >= 0.85) {
+                assertEquals(exact, bounded, left + " / " + right);
+            } else {
+                assertTrue(bounded < 0.85, left + " / " + right);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Levenshtein should match commons-text exactly, including past 64 characters")
+    void testLevenshteinMatchesCommonsText() {
+        LevenshteinDistance reference = LevenshteinDistance.getDefaultInstance();
+        for (String left : NAMES) {
+            for (String right : NAMES) {
+                assertEquals(reference.apply(left, right).intValue(), StringSimilarity.levenshtein(left, right),
+                    left + " / " + right);
+            }
+        }
+
+        Random random = new Random(13);
+        for (int i = 0; i < 5000; i++) {
+            String left = randomName(random);
+            String right = randomName(random);
+            int exact = reference.apply(left, right);
+            assertEquals(exact, StringSimilarity.levenshtein(left, right), left + " / " + right);
+            assertEquals(exact <= 3 ? exact : -1, StringSimilarity.levenshtein(left, right, 3),
+                left + " / " + right);
+        }
+    }
+
+    /**
+     * Short strings over a small alphabet, so matches and transpositions are common
+     */
+    private static String randomName(Random random) {
+        int length = random.nextInt(random.nextInt(10) == 0 ? 90 : 16);
+        StringBuilder name = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            name.append("abcde é".charAt(random.nextInt(7)));
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package com.loantrading.matching.engine;
+
+import com.loantrading.matching.entity.ExtractedEntity;
+import com.loantrading.matching.entity.LoanIQEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenDictionaryTest {
+
+    private TokenDictionary dictionary;
+
+    @BeforeEach
+    void setUp() {
+        dictionary = new TokenDictionary();
+    }
+
+    private static LoanIQEntity entity(long id, String fullName) {
+        LoanIQEntity entity = new LoanIQEntity();
+        entity.setEntityId(id);
+        entity.setFullName(fullName);
+        return entity;
+    }
+
+    private static ExtractedEntity extracted(String legalName) {
+        ExtractedEntity extracted = new ExtractedEntity();
+        extracted.setLegalName(legalName);
+        return extracted;
+    }
+
+    @Test
+    @DisplayName("Should give equal words the same id in any order")
+    void testInternSharesIds() {
+        int[] first = dictionary.intern(new String[] {"credit", "fund", "apollo"});
+        int[] second = dictionary.intern(new String[] {"apollo", "credit", "fund"});
+
+        assertArrayEquals(first, second);
+        assertEquals(3, dictionary.size());
+        assertTrue(first[0] >= 0);
+    }
+
+    @Test
+    @DisplayName("Should look up unknown words as negative ids without interning them")
+    void testLookupDoesNotIntern() {
+        dictionary.intern(new String[] {"apollo", "fund"});
+
+        int[] tokens = dictionary.lookup(new String[] {"zephyr", "apollo", "zephyr", "maritime"});
+
+        assertEquals(2, dictionary.size());
+        assertEquals(4, tokens.length);
+        assertTrue(tokens[0] < 0 && tokens[1] < 0 && tokens[2] < 0);
+        // The repeated unknown word keeps one id, distinct from the other unknown word
+        assertEquals(2, (int) Arrays.stream(tokens).filter(token -> token < 0).distinct().count());
+        assertArrayEquals(dictionary.intern(new String[] {"apollo"}), new int[] {tokens[3]});
+    }
+
+    @Test
+    @DisplayName("Should keep the dictionary to LoanIQ words however many extracted names are matched")
+    void testExtractedNamesDoNotGrowDictionary() {
+        FeatureStore features = new FeatureStore(new NameNormalizer());
+        features.precompute(List.of(entity(1, "Apollo Credit Fund"), entity(2, "Oaktree Senior Loan Fund")));
+        int interned = features.getTokenCount();
+
+        for (int i = 0; i < 100; i++) {
+            features.of(extracted("Apollo Credit Fund Series " + i));
+        }
+
+        assertEquals(interned, features.getTokenCount());
+    }
+
+    @Test
+    @DisplayName("Should compare words interned after the extracted name was looked up")
+    void testSameWordsInternedLater() {
+        FeatureStore features = new FeatureStore(new NameNormalizer());
+        NameFeatures extracted = features.of(extracted("Zephyr Maritime Holdings"));
+        NameFeatures candidate = features.of(entity(1, "Holdings Zephyr Maritime"));
+        NameFeatures other = features.of(entity(2, "Zephyr Harbor Holdings"));
+
+        assertTrue(extracted.hasSameWords(candidate));
+        assertFalse(extracted.hasSameWords(other));
+    }
+}
@@ -0,0 +1,62 @@
+package com.loantrading.matching.entity;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EvidenceTest {
+
+    @Test
+    @DisplayName("Should render evidence with its arguments as the text it replaced")
+    void testRendering() {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+        try {
+            assertEquals("MEI exact match: US1234567",
+                new Evidence(EvidenceType.IDENTIFIER_EXACT_MATCH, "MEI", "US1234567").toString());
+            assertEquals("Legal name fuzzy match (0.93)",
+                new Evidence(EvidenceType.LEGAL_NAME_FUZZY, 0.9312).toString());
+            assertEquals("Match is a location sub-entity of Test Corp (ID: 42)",
+                new Evidence(EvidenceType.LOCATION_OF_PARENT, "Test Corp", 42L).toString());
+            assertEquals("Score penalized due to 2 potential duplicates.",
+                new Evidence(EvidenceType.DUPLICATES_PENALIZED, 2).toString());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    @DisplayName("Should render evidence without arguments as its pattern")
+    void testRenderingWithoutArguments() {
+        assertEquals("Legal name exact match after normalization",
+            new Evidence(EvidenceType.LEGAL_NAME_EXACT).toString());
+        assertEquals("DBA match detected", new Evidence(EvidenceType.DBA_MATCH, (Object[]) null).toString());
+    }
+
+    @Test
+    @DisplayName("Should keep free-text notes verbatim, format characters included")
+    void testNotes() {
+        MatchResult match = new MatchResult();
+        match.addEvidence("Name 100% consistent with %s placeholder");
+
+        assertTrue(match.hasEvidence(EvidenceType.NOTE));
+        assertEquals(List.of("Name 100% consistent with %s placeholder"), match.getEvidence());
+    }
+
+    @Test
+    @DisplayName("Should list evidence in the order it was recorded")
+    void testMatchResultEvidence() {
+        MatchResult match = new MatchResult();
+        match.addEvidence(EvidenceType.EMAIL_DOMAIN_MATCH, "blackstone.com");
+        match.addEvidence(EvidenceType.GEOGRAPHIC_CONSISTENT);
+
+        assertEquals(List.of("Email domain match: blackstone.com", "Geographic data consistent"),
+            match.getEvidence());
+        assertTrue(match.hasEvidence(EvidenceType.GEOGRAPHIC_CONSISTENT));
+        assertFalse(match.hasEvidence(EvidenceType.LEGAL_NAME_FUZZY));
+    }
+}
@@ -0,0 +1,86 @@
+package com.loantrading.matching.entity;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchResultTest {
+
+    @Test
+    @DisplayName("Should report only the score components that were added")
+    void testPresentComponents() {
+        MatchResult match = new MatchResult();
+        match.addScoreComponent(ScoreComponent.LEI_MATCH, 100);
+        match.addScoreComponent(ScoreComponent.TAX_FORM_VALIDATION, 0);
+
+        assertTrue(match.hasScoreComponent(ScoreComponent.LEI_MATCH));
+        // A component added with value 0 is still present
+        assertTrue(match.hasScoreComponent(ScoreComponent.TAX_FORM_VALIDATION));
+        assertFalse(match.hasScoreComponent(ScoreComponent.MEI_MATCH));
+        assertEquals(100, match.getScoreComponent(ScoreComponent.LEI_MATCH), 1e-9);
+        assertEquals(0, match.getScoreComponent(ScoreComponent.MEI_MATCH), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Should keep the last value added for a component")
+    void testComponentIsReplaced() {
+        MatchResult match = new MatchResult();
+        match.addScoreComponent(ScoreComponent.LEGAL_NAME_FUZZY, 72);
+        match.addScoreComponent(ScoreComponent.LEGAL_NAME_FUZZY, 91);
+
+        assertEquals(91, match.getScoreComponent(ScoreComponent.LEGAL_NAME_FUZZY), 1e-9);
+        assertEquals(Map.of("legal_name_fuzzy", 91d), match.getScoreBreakdown());
+    }
+
+    @Test
+    @DisplayName("Should render the breakdown by key in component order")
+    void testScoreBreakdown() {
+        MatchResult match = new MatchResult();
+        match.addScoreComponent(ScoreComponent.EMAIL_DOMAIN_BOOST, 5);
+        match.addScoreComponent(ScoreComponent.MEI_MATCH, 100);
+        match.addScoreComponent(ScoreComponent.LEGAL_NAME_FUZZY, 88.5);
+
+        Map<String, Double> breakdown = match.getScoreBreakdown();
+
+        assertEquals(List.of("mei_match", "legal_name_fuzzy", "email_domain_boost"), List.copyOf(breakdown.keySet()));
+        assertEquals(88.5, breakdown.get("legal_name_fuzzy"), 1e-9);
+        // Rendered on each call, so changing it leaves the result alone
+        breakdown.clear();
+        assertEquals(3, match.getScoreBreakdown().size());
+    }
+
+    @Test
+    @DisplayName("Should give every component its own breakdown key")
+    void testComponentKeysAreDistinct() {
+        MatchResult match = new MatchResult();
+        for (ScoreComponent component : ScoreComponent.values()) {
+            match.addScoreComponent(component, component.ordinal());
+        }
+
+        Map<String, Double> breakdown = match.getScoreBreakdown();
+
+        assertEquals(ScoreComponent.values().length, breakdown.size());
+        for (ScoreComponent component : ScoreComponent.values()) {
+            assertEquals(component.ordinal(), breakdown.get(component.getKey()), 1e-9);
+        }
+    }
+
+    @Test
+    @DisplayName("Should copy the score vector with the result")
+    void testCopyHasOwnScoreVector() {
+        MatchResult match = new MatchResult();
+        match.addScoreComponent(ScoreComponent.MEI_MATCH, 100);
+
+        MatchResult copy = new MatchResult(match);
+        copy.addScoreComponent(ScoreComponent.MEI_MATCH, 50);
+        copy.addScoreComponent(ScoreComponent.MEI_BOOST, 10);
+
+        assertEquals(100, match.getScoreComponent(ScoreComponent.MEI_MATCH), 1e-9);
+        assertFalse(match.hasScoreComponent(ScoreComponent.MEI_BOOST));
+        assertEquals(50, copy.getScoreComponent(ScoreComponent.MEI_MATCH), 1e-9);
+    }
+}
@@ -1,17 +1,29 @@
 package com.loantrading.matching.repository;
 
+import com.loantrading.matching.engine.DuplicateDetector;
 import com.loantrading.matching.entity.LoanIQEntity;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -30,6 +42,8 @@ public class DatabaseIntegrationTest {
     @AfterEach
     public void tearDown() throws SQLException {
         try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA IF EXISTS entity_matching CASCADE");
+            statement.execute("DROP SCHEMA IF EXISTS matching_test CASCADE");
             statement.execute("DROP TABLE IF EXISTS entity_locations");
             statement.execute("DROP TABLE IF EXISTS entities");
         }
@@ -64,6 +78,17 @@ public class DatabaseIntegrationTest {
         }
     }
 
+    /**
+     * Repository sharing the test connection; closing it leaves the connection open
+     */
+    private LoanIQRepository openRepository(RepositoryConfig config) {
+        return new LoanIQRepository(new SingleConnectionDataSource(connection) {
+            @Override
+            void close() {
+            }
+        }, config);
+    }
+
     private void insertTestData() throws SQLException {
         try (Statement stmt = connection.createStatement()) {
             stmt.execute("INSERT INTO entities (entity_id, full_name, short_name, mei, lei, ein) VALUES " +
@@ -103,4 +128,531 @@ public class DatabaseIntegrationTest {
         List<LoanIQEntity> entities = repository.findByEIN("EIN789");
         assertEquals(2, entities.size());
     }
+
+    @Test
+    public void testSnapshotServesIdentifierLookups() throws SQLException {
+        insertTestData();
+        repository.loadSnapshot();
+        assertTrue(repository.isSnapshotLoaded());
+
+        List<LoanIQEntity> byMei = repository.findByMEI("MEI123");
+        assertEquals(2, byMei.size());
+        assertFalse(byMei.get(0).isLocation());
+        assertTrue(byMei.get(1).isLocation());
+        assertEquals(Long.valueOf(1L), byMei.get(1).getParentCustomerId());
+
+        assertEquals(2, repository.findByLEI("LEI456").size());
+        assertEquals(2, repository.findByEIN("EIN-789").size());
+        assertEquals(1, repository.findByCleanedShortName("Test-Co").size());
+        assertEquals("Location LLC", repository.findById(2L).getFullName());
+        assertTrue(repository.findByMEI("UNKNOWN").isEmpty());
+    }
+
+    @Test
+    public void testSnapshotFileServesOfflineLookups() throws Exception {
+        insertTestData();
+        Path file = Files.createTempFile("loaniq-snapshot", ".bin");
+        try {
+            repository.loadSnapshot();
+            repository.exportSnapshot(file);
+
+            RepositoryConfig config = new RepositoryConfig();
+            config.setSnapshotFile(file);
+            LoanIQRepository offline = new LoanIQRepository((DataSource) null, config);
+            try {
+                assertTrue(offline.isSnapshotLoaded());
+                assertEquals(2, offline.findByMEI("MEI123").size());
+                assertEquals("Location LLC", offline.findById(2L).getFullName());
+                assertEquals("Test Corp", offline.findCandidatesByName("Test Corp", null).get(0).getFullName());
+            } finally {
+                offline.close();
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testBatchedIdentifierLookups() throws SQLException {
+        insertTestData();
+
+        Map<String, List<LoanIQEntity>> byMei = repository.findByMEIs(Arrays.asList("MEI123", "UNKNOWN"));
+        assertEquals(2, byMei.get("MEI123").size());
+        assertFalse(byMei.get("MEI123").get(0).isLocation());
+        assertTrue(byMei.get("MEI123").get(1).isLocation());
+        assertTrue(byMei.get("UNKNOWN").isEmpty());
+
+        assertEquals(2, repository.findByLEIs(Arrays.asList("LEI456")).get("LEI456").size());
+        assertEquals(2, repository.findByEINs(Arrays.asList("EIN-789")).get("EIN-789").size());
+    }
+
+    @Test
+    public void testAsyncLookupsAgreeWithBlockingLookups() throws Exception {
+        insertTestData();
+        CompletableFuture<List<LoanIQEntity>> byMei = repository.findByMEIAsync("MEI123");
+        CompletableFuture<List<LoanIQEntity>> byLei = repository.findByLEIAsync("LEI456");
+        CompletableFuture<List<LoanIQEntity>> byEin = repository.findByEINAsync("EIN789");
+        CompletableFuture<List<LoanIQEntity>> byName = repository.findCandidatesByNameAsync("Test Corp", null);
+
+        assertEquals(2, byMei.get(5, TimeUnit.SECONDS).size());
+        assertEquals(2, byLei.get(5, TimeUnit.SECONDS).size());
+        assertEquals(2, byEin.get(5, TimeUnit.SECONDS).size());
+        assertEquals(Long.valueOf(1L), byName.get(5, TimeUnit.SECONDS).get(0).getEntityId());
+        assertTrue(repository.findByMEIAsync(null).get(5, TimeUnit.SECONDS).isEmpty());
+
+        // Answered from memory once the snapshot is loaded, without a hand-off to the I/O executor
+        repository.loadSnapshot();
+        CompletableFuture<List<LoanIQEntity>> fromSnapshot = repository.findByMEIAsync("MEI123");
+        assertTrue(fromSnapshot.isDone());
+        assertEquals(repository.findByMEI("MEI123"), fromSnapshot.join());
+    }
+
+    @Test
+    public void testHierarchyResolvesLocationParent() throws SQLException {
+        insertTestData();
+        RepositoryConfig config = new RepositoryConfig();
+        config.setHierarchyEnabled(true);
+        LoanIQRepository hierarchical = openRepository(config);
+        try {
+            List<LoanIQEntity> byMei = hierarchical.findByMEI("MEI123");
+            assertEquals(2, byMei.size());
+            assertTrue(byMei.get(1).isLocation());
+            assertEquals("Test Corp", hierarchical.findParentCustomer(byMei.get(1)).getFullName());
+            assertNull(hierarchical.findParentCustomer(byMei.get(0)));
+            assertEquals(1, hierarchical.findLocations(1L).size());
+            assertTrue(hierarchical.findSiblingLocations(byMei.get(1)).isEmpty());
+        } finally {
+            hierarchical.close();
+        }
+    }
+
+    @Test
+    public void testNameIndexFindsCandidatesDespiteTypo() throws SQLException {
+        insertTestData();
+        RepositoryConfig config = new RepositoryConfig();
+        config.setSnapshotEnabled(true);
+        config.setNameIndexEnabled(true);
+        LoanIQRepository indexed = openRepository(config);
+        try {
+            List<LoanIQEntity> candidates = indexed.findCandidatesByName("Tset Corp", null);
+            assertFalse(candidates.isEmpty());
+            assertEquals("Test Corp", candidates.get(0).getFullName());
+        } finally {
+            indexed.close();
+        }
+    }
+
+    @Test
+    public void testPhoneticIndexFindsSoundAlikeNames() throws SQLException {
+        insertTestData();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("INSERT INTO entities (entity_id, full_name, short_name) VALUES " +
+                    "(3, 'BlackRock Credit Fund', 'BRCF')");
+        }
+        RepositoryConfig config = new RepositoryConfig();
+        config.setSnapshotEnabled(true);
+        config.setPhoneticIndexEnabled(true);
+        LoanIQRepository indexed = openRepository(config);
+        try {
+            List<LoanIQEntity> candidates = indexed.findCandidatesByPhoneticKey("Blak Rock Credit", null);
+            assertEquals(1, candidates.size());
+            assertEquals("BlackRock Credit Fund", candidates.get(0).getFullName());
+        } finally {
+            indexed.close();
+        }
+    }
+
+    @Test
+    public void testIdentifierRepairFindsMisreadMei() throws SQLException {
+        insertTestData();
+        RepositoryConfig config = new RepositoryConfig();
+        config.setSnapshotEnabled(true);
+        config.setIdentifierRepairEnabled(true);
+        LoanIQRepository indexed = openRepository(config);
+        try {
+            IdentifierRepairIndex.Repair repair = indexed.repairMEI("MEII23");
+            assertNotNull(repair);
+            assertEquals("MEI123", repair.getIdentifier());
+            assertTrue(repair.isConfusion());
+            assertNull(indexed.repairMEI("MEI123"));
+            assertNull(indexed.repairMEI("XYZ999"));
+        } finally {
+            indexed.close();
+        }
+    }
+
+    @Test
+    public void testDuplicateClustersGroupSharedKeys() throws SQLException {
+        insertTestData();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("INSERT INTO entities (entity_id, full_name, short_name) VALUES " +
+                    "(3, 'Corp Test', 'Other'), (4, 'Unrelated Fund', 'Unrelated')");
+        }
+        RepositoryConfig config = new RepositoryConfig();
+        config.setSnapshotEnabled(true);
+        config.setDuplicateClustersEnabled(true);
+        LoanIQRepository clustered = openRepository(config);
+        try {
+            DuplicateClusters clusters = clustered.getDuplicateClusters();
+            assertEquals(1, clusters.getClusters().size());
+            assertEquals(3, clusters.getClusters().get(0).getSize());
+            assertTrue(clusters.getClusters().get(0).getReasons().contains(DuplicateClusters.Reason.MEI));
+            assertTrue(clusters.getClusters().get(0).getReasons().contains(DuplicateClusters.Reason.NAME));
+            assertEquals(2, clusters.getDuplicates(1L).size());
+            assertTrue(clusters.getDuplicates(4L).isEmpty());
+        } finally {
+            clustered.close();
+        }
+    }
+
+    @Test
+    public void testClusteredDuplicatesKeepNameContainment() throws SQLException {
+        insertTestData();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("INSERT INTO entities (entity_id, full_name, short_name) VALUES " +
+                    "(3, 'Test Corp Holdings', 'TCH'), (4, 'Unrelated Fund', 'Unrelated')");
+        }
+        RepositoryConfig config = new RepositoryConfig();
+        config.setSnapshotEnabled(true);
+        config.setDuplicateClustersEnabled(true);
+        LoanIQRepository clustered = openRepository(config);
+        try {
+            // The cluster links only the shared MEI; the name that contains the other is searched for
+            assertEquals(List.of(2L), clustered.getDuplicateClusters().getDuplicates(1L).stream()
+                    .map(LoanIQEntity::getEntityId).collect(Collectors.toList()));
+            DuplicateDetector detector = new DuplicateDetector(clustered);
+            List<Long> expected = new DuplicateDetector(repository).findPotentialDuplicates(repository.findById(1L))
+                    .stream().map(LoanIQEntity::getEntityId).sorted().collect(Collectors.toList());
+
+            assertEquals(List.of(2L, 3L), expected);
+            assertEquals(expected, detector.findPotentialDuplicates(clustered.findById(1L)).stream()
+                    .map(LoanIQEntity::getEntityId).sorted().collect(Collectors.toList()));
+            assertEquals(expected, detector.findPotentialDuplicates(List.of(clustered.findById(1L))).get(1L).stream()
+                    .map(LoanIQEntity::getEntityId).sorted().collect(Collectors.toList()));
+        } finally {
+            clustered.close();
+        }
+    }
+
+    private int countTables(String schema) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES " +
+                "WHERE TABLE_SCHEMA = ? AND TABLE_NAME LIKE 'EM\\_%' ESCAPE '\\'")) {
+            stmt.setString(1, schema);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    @Test
+    public void testSidecarServesNormalizedLookups() throws SQLException {
+        insertTestData();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("INSERT INTO entities (entity_id, full_name, short_name, ultimate_parent, email_domain) VALUES " +
+                    "(3, 'Acme Global Credit Fund', 'AcmeGCF', 'Acme Asset Management', 'acmeam.com')");
+        }
+        RepositoryConfig config = new RepositoryConfig();
+        config.setSidecarEnabled(true);
+        config.setRefreshIntervalSeconds(3600);
+        LoanIQRepository sidecarRepository = openRepository(config);
+        try {
+            assertEquals(2, sidecarRepository.findByEIN("EIN-789").size());
+            assertEquals(1, sidecarRepository.findByCleanedShortName("Test-Co").size());
+            assertEquals("Test Corp", sidecarRepository.findCandidatesByName("test corp", null).get(0).getFullName());
+            assertEquals("Test Corp", sidecarRepository.findCandidatesByName("Test Co", null).get(0).getFullName());
+            assertEquals(1, sidecarRepository.findCandidatesByName("Global Credit Fund", null).size());
+            assertTrue(sidecarRepository.findCandidatesByName("Global Equity Fund", null).isEmpty());
+            assertEquals(1, sidecarRepository.findCandidatesByName("Other Fund", "Acme Asset").size());
+
+            // Matched by its exact email domain and, separately, by a name containing the domain root
+            assertEquals(1, sidecarRepository.findByEmailDomain("acmeam.com").size());
+            assertTrue(sidecarRepository.findByEmailDomain("acmeam.co.uk").isEmpty());
+            assertEquals(1, sidecarRepository.findByEmailDomain("acme.com").size());
+            assertTrue(sidecarRepository.findByEmailDomain("unrelated.com").isEmpty());
+        } finally {
+            sidecarRepository.close();
+        }
+    }
+
+    @Test
+    public void testSidecarReturnsSameRowsAsLoanIQQueries() throws SQLException {
+        insertTestData();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("INSERT INTO entities (entity_id, full_name, short_name, ultimate_parent, email_domain) VALUES " +
+                    "(3, 'Acme Global Credit Fund', 'AcmeGCF', 'Acme Asset Management', 'acmeam.com'), " +
+                    "(4, 'Blackacme Partners LP', 'Global Credit', NULL, 'blackacme.com'), " +
+                    "(5, 'Zenith Holdings', 'ZH', 'North Acme-Asset Group', 'acme.co.uk'), " +
+                    "(6, 'Credit Opportunities (Global) Fund', NULL, 'Other Parent', NULL)");
+        }
+        RepositoryConfig config = new RepositoryConfig();
+        config.setSidecarEnabled(true);
+        config.setRefreshIntervalSeconds(3600);
+        LoanIQRepository sidecarRepository = openRepository(config);
+        try {
+            String[][] names = {{"acme", null}, {"Global Credit", null}, {"global credit fund", null},
+                {"Test Co", null}, {"credit", "acme asset"}, {"Zenith", "Acme-Asset"}, {"(Global)", null},
+                {"Other Fund", "Acme Asset"}, {"acme_global", null}, {"Blackacme Partners", null}};
+            for (String[] name : names) {
+                assertEquals(ids(repository.findCandidatesByName(name[0], name[1])),
+                    ids(sidecarRepository.findCandidatesByName(name[0], name[1])), name[0] + " / " + name[1]);
+            }
+            for (String domain : new String[] {"acme.com", "acmeam.com", "acme.co.uk", "blackacme.com",
+                    "north-acme.com", "Acme.com", "unrelated.com"}) {
+                assertEquals(ids(repository.findByEmailDomain(domain)),
+                    ids(sidecarRepository.findByEmailDomain(domain)), domain);
+            }
+            // A single word also matches inside longer words, as the LoanIQ query's LIKE does
+            assertEquals(List.of(3L, 4L, 5L), ids(sidecarRepository.findCandidatesByName("acme", null)));
+        } finally {
+            sidecarRepository.close();
+        }
+    }
+
+    private static List<Long> ids(List<LoanIQEntity> entities) {
+        return entities.stream().map(LoanIQEntity::getEntityId).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSidecarTablesLiveInOwnSchema() throws SQLException {
+        insertTestData();
+        RepositoryConfig config = new RepositoryConfig();
+        config.setSidecarEnabled(true);
+        config.setSidecarSchema("matching_test");
+        config.setRefreshIntervalSeconds(3600);
+        LoanIQRepository sidecarRepository = openRepository(config);
+        try {
+            assertEquals(3, countTables("MATCHING_TEST"));
+            assertEquals(0, countTables("PUBLIC"));
+            assertEquals(2, sidecarRepository.findByEIN("EIN-789").size());
+        } finally {
+            sidecarRepository.close();
+        }
+
+        // Existing tables are kept, and the rows in them brought up to date
+        LoanIQRepository reopened = openRepository(config);
+        try {
+            assertEquals(3, countTables("MATCHING_TEST"));
+            assertEquals(1, reopened.findByCleanedShortName("Test-Co").size());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testSidecarSchemaMustBeIdentifier() {
+        RepositoryConfig config = new RepositoryConfig();
+        config.setSidecarEnabled(true);
+        config.setRefreshIntervalSeconds(3600);
+        config.setSidecarSchema("matching; DROP TABLE entities");
+        assertThrows(IllegalStateException.class, () -> openRepository(config));
+    }
+
+    @Test
+    public void testSidecarRequiresDeltaRefresh() {
+        RepositoryConfig config = new RepositoryConfig();
+        config.setSidecarEnabled(true);
+        assertThrows(IllegalStateException.class, () -> openRepository(config));
+    }
+
+    @Test
+    public void testSidecarFollowsRowsAddedAfterStartup() throws SQLException {
+        insertTestData();
+        RepositoryConfig config = new RepositoryConfig();
+        config.setSidecarEnabled(true);
+        config.setRefreshIntervalSeconds(3600);
+        LoanIQRepository sidecarRepository = openRepository(config);
+        try {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("INSERT INTO entities (entity_id, full_name, short_name, ein, last_modified) VALUES " +
+                        "(3, 'Brand New Fund LP', 'NewFund', 'EIN777', DATEADD('SECOND', 5, CURRENT_TIMESTAMP))");
+                stmt.execute("UPDATE entities SET full_name = 'Renamed Corp', " +
+                        "last_modified = DATEADD('SECOND', 5, CURRENT_TIMESTAMP) WHERE entity_id = 1");
+            }
+            assertTrue(sidecarRepository.findByEIN("EIN777").isEmpty());
+
+            assertEquals(2, sidecarRepository.refreshChanges());
+            assertEquals(1, sidecarRepository.findByEIN("EIN777").size());
+            assertEquals("Brand New Fund LP",
+                sidecarRepository.findCandidatesByName("Brand New Fund", null).get(0).getFullName());
+            assertEquals("Renamed Corp",
+                sidecarRepository.findCandidatesByName("Renamed Corp", null).get(0).getFullName());
+            assertTrue(sidecarRepository.findCandidatesByName("Test Corp", null).isEmpty());
+        } finally {
+            sidecarRepository.close();
+        }
+    }
+
+    @Test
+    public void testRefreshAppliesChangedRowsToSnapshot() throws SQLException {
+        insertTestData();
+        RepositoryConfig config = new RepositoryConfig();
+        config.setSnapshotEnabled(true);
+        LoanIQRepository refreshed = openRepository(config);
+        try {
+            long version = refreshed.getDataVersion();
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("INSERT INTO entities (entity_id, full_name, short_name, mei, last_modified) VALUES " +
+                        "(3, 'New Parent Inc', 'NewParent', 'MEI777', DATEADD('SECOND', 5, CURRENT_TIMESTAMP))");
+                stmt.execute("UPDATE entity_locations SET parent_customer_id = 3 WHERE location_id = 2");
+                stmt.execute("UPDATE entities SET full_name = 'Location Renamed LLC', " +
+                        "last_modified = DATEADD('SECOND', 5, CURRENT_TIMESTAMP) WHERE entity_id = 2");
+            }
+            assertEquals("Location LLC", refreshed.findById(2L).getFullName());
+
+            assertEquals(2, refreshed.refreshChanges());
+            // The next poll reads the same rows again inside the overlap window
+            assertEquals(0, refreshed.refreshChanges());
+            assertEquals(version + 1, refreshed.getDataVersion());
+
+            assertEquals("Location Renamed LLC", refreshed.findById(2L).getFullName());
+            assertEquals(1, refreshed.findByMEI("MEI777").size());
+            List<LoanIQEntity> byMei = refreshed.findByMEI("MEI123");
+            assertEquals(2, byMei.size());
+            assertEquals("New Parent Inc", refreshed.findParentCustomer(byMei.get(1)).getFullName());
+            assertTrue(refreshed.findLocations(1L).isEmpty());
+            assertEquals(1, refreshed.findLocations(3L).size());
+        } finally {
+            refreshed.close();
+        }
+    }
+
+    @Test
+    public void testSnapshotListenersSeeLoadedAndRefreshedRows() throws SQLException {
+        insertTestData();
+        RepositoryConfig config = new RepositoryConfig();
+        config.setSnapshotEnabled(true);
+        LoanIQRepository refreshed = openRepository(config);
+        try {
+            Set<LoanIQEntity> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            refreshed.addSnapshotListener(seen::addAll);
+            assertTrue(seen.contains(refreshed.findById(1L)));
+            assertTrue(seen.contains(refreshed.findById(2L)));
+
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("UPDATE entities SET full_name = 'Test Corp Renamed', " +
+                        "last_modified = DATEADD('SECOND', 5, CURRENT_TIMESTAMP) WHERE entity_id = 1");
+            }
+            assertEquals(1, refreshed.refreshChanges());
+
+            // The refreshed row was handed over before lookups could return it
+            LoanIQEntity renamed = refreshed.findById(1L);
+            assertEquals("Test Corp Renamed", renamed.getFullName());
+            assertTrue(seen.contains(renamed));
+        } finally {
+            refreshed.close();
+        }
+    }
+
+    @Test
+    public void testRefreshEvictsChangedRowsFromCache() throws SQLException {
+        insertTestData();
+        RepositoryConfig config = new RepositoryConfig();
+        config.setHierarchyEnabled(true);
+        config.setRefreshIntervalSeconds(3600);
+        LoanIQRepository refreshed = openRepository(config);
+        try {
+            assertEquals(2, refreshed.findByMEI("MEI123").size());
+            assertEquals("Test Corp", refreshed.findById(1L).getFullName());
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("UPDATE entities SET full_name = 'Test Corp Renamed', mei = 'MEI999', " +
+                        "last_modified = DATEADD('SECOND', 5, CURRENT_TIMESTAMP) WHERE entity_id = 1");
+            }
+            assertEquals("Test Corp", refreshed.findById(1L).getFullName());
+            long version = refreshed.getDataVersion();
+
+            // Tracking started when the repository was created, so the first poll already applies the change
+            assertEquals(1, refreshed.refreshChanges());
+            assertEquals(0, refreshed.refreshChanges());
+            assertEquals(version + 1, refreshed.getDataVersion());
+
+            assertEquals("Test Corp Renamed", refreshed.findById(1L).getFullName());
+            List<LoanIQEntity> byOldMei = refreshed.findByMEI("MEI123");
+            assertEquals(1, byOldMei.size());
+            assertTrue(byOldMei.get(0).isLocation());
+            assertEquals("Test Corp Renamed", refreshed.findParentCustomer(byOldMei.get(0)).getFullName());
+            assertEquals(1, refreshed.findByMEI("MEI999").size());
+        } finally {
+            refreshed.close();
+        }
+    }
+
+    @Test
+    public void testRefreshedRowsAreSearchableBeforeIndexRebuild() throws SQLException {
+        insertTestData();
+        RepositoryConfig config = new RepositoryConfig();
+        config.setSnapshotEnabled(true);
+        config.setNameIndexEnabled(true);
+        config.setPhoneticIndexEnabled(true);
+        config.setDuplicateClustersEnabled(true);
+        config.setRefreshIntervalSeconds(3600);
+        config.setIndexRebuildDelaySeconds(3600);
+        LoanIQRepository indexed = openRepository(config);
+        try {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("INSERT INTO entities (entity_id, full_name, short_name, mei, last_modified) VALUES " +
+                        "(3, 'BlackRock Credit Fund', 'BRCF', 'MEI123', DATEADD('SECOND', 5, CURRENT_TIMESTAMP))");
+                stmt.execute("UPDATE entities SET full_name = 'Quantum Ridge Partners', short_name = 'QRP', " +
+                        "last_modified = DATEADD('SECOND', 5, CURRENT_TIMESTAMP) WHERE entity_id = 1");
+            }
+            assertEquals(2, indexed.refreshChanges());
+
+            // Served by the delta until the rebuild runs
+            assertEquals(Long.valueOf(3L), indexed.findCandidatesByName("BlackRock Credit", null).get(0).getEntityId());
+            assertEquals(Long.valueOf(3L), indexed.findCandidatesByPhoneticKey("Blak Rock Credit", null).get(0).getEntityId());
+            assertEquals("Quantum Ridge Partners",
+                indexed.findCandidatesByName("Quantum Ridge Partners", null).get(0).getFullName());
+            assertTrue(indexed.findCandidatesByName("Test Corp", null).stream()
+                .noneMatch(entity -> entity.getEntityId() == 1L));
+            assertTrue(indexed.getDuplicateClusters().getDuplicates(3L).isEmpty());
+
+            indexed.rebuildIndexes();
+
+            assertEquals(Long.valueOf(3L), indexed.findCandidatesByName("BlackRock Credit", null).get(0).getEntityId());
+            assertEquals(Long.valueOf(3L), indexed.findCandidatesByPhoneticKey("Blak Rock Credit", null).get(0).getEntityId());
+            assertEquals("Quantum Ridge Partners",
+                indexed.findCandidatesByName("Quantum Ridge Partners", null).get(0).getFullName());
+            assertTrue(indexed.findCandidatesByName("Test Corp", null).stream()
+                .noneMatch(entity -> entity.getEntityId() == 1L));
+            // Entity 1 and its location share the new row's MEI
+            assertEquals(2, indexed.getDuplicateClusters().getDuplicates(3L).size());
+        } finally {
+            indexed.close();
+        }
+    }
+
+    @Test
+    public void testKeyFilterRequiresDeltaRefresh() {
+        RepositoryConfig config = new RepositoryConfig();
+        config.setKeyFilterEnabled(true);
+        assertThrows(IllegalStateException.class, () -> openRepository(config));
+    }
+
+    @Test
+    public void testKeyFilterAdmitsRowsAddedAfterStartup() throws SQLException {
+        insertTestData();
+        RepositoryConfig config = new RepositoryConfig();
+        config.setKeyFilterEnabled(true);
+        config.setRefreshIntervalSeconds(3600);
+        LoanIQRepository filtered = openRepository(config);
+        try {
+            assertTrue(filtered.findByMEI("MEI777").isEmpty());
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("INSERT INTO entities (entity_id, full_name, short_name, mei, lei, ein, debt_domain_id, " +
+                        "last_modified) VALUES (3, 'Brand New Fund LP', 'NewFund', 'MEI777', 'LEI777', 'EIN777', " +
+                        "'DD777', DATEADD('SECOND', 5, CURRENT_TIMESTAMP))");
+            }
+
+            assertEquals(1, filtered.refreshChanges());
+            assertEquals(1, filtered.findByMEI("MEI777").size());
+            assertEquals(1, filtered.findByLEI("LEI777").size());
+            assertEquals(1, filtered.findByEIN("EIN777").size());
+            assertEquals(1, filtered.findByDebtDomainId("DD777").size());
+            assertEquals("Brand New Fund LP",
+                filtered.findCandidatesByName("Brand New Fund", null).get(0).getFullName());
+        } finally {
+            filtered.close();
+        }
+    }
 }